@@ -12,6 +12,7 @@ import com.example.authservice.service.EmailVerificationService;
 import com.example.authservice.service.RefreshTokenService;
 import com.example.authservice.dto.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -25,13 +26,18 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.view.RedirectView;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -39,6 +45,9 @@ import java.util.Optional;
 @RequestMapping("/api/auth")
 public class AuthController {
 
+    private static final int MAX_BATCH_LOOKUP_SIZE = 1000;
+    private static final String SERVICE_TOKEN_HEADER = "X-Service-Token";
+
     @Autowired
     private AuthenticationManager authenticationManager;
 
@@ -66,6 +75,9 @@ public class AuthController {
     @Autowired
     private RefreshTokenService refreshTokenService;
 
+    @Value("${internal.service.token}")
+    private String serviceToken;
+
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@RequestBody LoginRequest loginRequest) {
         try {
@@ -188,16 +200,51 @@ public class AuthController {
         userInfo.put("id", user.getId());
         userInfo.put("name", user.getName());
         userInfo.put("email", user.getEmail());
-        // Add /minio prefix to profile image URL if it exists
-        String profileImageUrl = user.getProfileImageUrl();
-        if (profileImageUrl != null && !profileImageUrl.isEmpty() && !profileImageUrl.startsWith("http")) {
-            profileImageUrl = "/minio" + (profileImageUrl.startsWith("/") ? "" : "/") + profileImageUrl;
-        }
-        userInfo.put("profileImageUrl", profileImageUrl);
+        userInfo.put("profileImageUrl", toPublicImageUrl(user.getProfileImageUrl()));
         
         return ResponseEntity.ok(userInfo);
     }
 
+    // Internal to the other services: it returns emails, so callers must present the shared service token
+    @PostMapping("/users/batch")
+    public ResponseEntity<?> getUsersByIds(@RequestHeader(value = SERVICE_TOKEN_HEADER, required = false) String token,
+                                           @RequestBody UserBatchRequest request) {
+        if (!isServiceToken(token)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("A valid service token is required"));
+        }
+        List<Long> ids = request.getIds();
+        if (ids == null || ids.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        if (ids.size() > MAX_BATCH_LOOKUP_SIZE) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("At most " + MAX_BATCH_LOOKUP_SIZE + " ids can be looked up at once"));
+        }
+        
+        // Single IN query against a projection; unknown ids are simply absent from the result
+        List<UserSummary> users = userRepository.findSummariesByIdIn(new HashSet<>(ids));
+        users.forEach(user -> user.setProfileImageUrl(toPublicImageUrl(user.getProfileImageUrl())));
+        
+        return ResponseEntity.ok(users);
+    }
+
+    private boolean isServiceToken(String token) {
+        if (token == null || serviceToken == null || serviceToken.isBlank()) {
+            return false;
+        }
+        // Constant-time, so the token cannot be guessed byte by byte from response times
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), serviceToken.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Add /minio prefix to profile image URL if it exists
+    private String toPublicImageUrl(String profileImageUrl) {
+        if (profileImageUrl != null && !profileImageUrl.isEmpty() && !profileImageUrl.startsWith("http")) {
+            return "/minio" + (profileImageUrl.startsWith("/") ? "" : "/") + profileImageUrl;
+        }
+        return profileImageUrl;
+    }
+
     @PostMapping("/refresh-token")
     public ResponseEntity<?> refreshToken(@RequestBody RefreshTokenRequest request) {
         try {
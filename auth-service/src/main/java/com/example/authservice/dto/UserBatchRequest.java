@@ -0,0 +1,10 @@
+package com.example.authservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UserBatchRequest {
+    private List<Long> ids;
+}
@@ -0,0 +1,18 @@
+package com.example.authservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Public profile fields other services need to display a user.
+ * Loaded with a constructor expression so the User entity and its
+ * associations are never materialized.
+ */
+@Data
+@AllArgsConstructor
+public class UserSummary {
+    private Long id;
+    private String name;
+    private String email;
+    private String profileImageUrl;
+}
@@ -1,9 +1,19 @@
 package com.example.authservice.repository;
 
+import com.example.authservice.dto.UserSummary;
 import com.example.authservice.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     User findByEmail(String email);
     User findByProviderAndProviderId(String provider, String providerId);
-}
\ No newline at end of file
+
+    @Query("SELECT new com.example.authservice.dto.UserSummary(u.id, u.name, u.email, u.profileImageUrl) " +
+           "FROM User u WHERE u.id IN :ids")
+    List<UserSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+}
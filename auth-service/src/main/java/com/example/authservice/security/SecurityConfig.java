@@ -44,7 +44,7 @@ public class SecurityConfig {
                 .requestMatchers("/api/auth/login", "/api/auth/register", "/api/auth/forgot-password", 
                                 "/api/auth/reset-password", "/api/auth/verify-email", "/api/auth/resend-verification",
                                 "/api/auth/refresh-token", "/api/auth/logout",
-                                "/api/auth/user/**", "/oauth2/**", "/login/oauth2/**").permitAll()
+                                "/api/auth/user/**", "/api/auth/users/batch", "/oauth2/**", "/login/oauth2/**").permitAll()
                 .anyRequest().authenticated()
             )
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
@@ -0,0 +1,128 @@
+package com.example.chatservice.ai;
+
+import com.example.chatservice.model.CaroGame;
+import com.example.chatservice.model.GameRules;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks moves for the computer opponent.
+ *
+ * Searches run on a small pool of their own with a bounded queue, so however
+ * many single-player games are in progress they cannot take threads from the
+ * WebSocket or game lanes. Each search stops at its time budget; when the pool
+ * is saturated the move is chosen with a one-ply search instead of waiting.
+ */
+@Component
+public class AiPlayer {
+    private static final Logger logger = LoggerFactory.getLogger(AiPlayer.class);
+
+    private static final ThreadLocal<TranspositionTable> TABLES =
+        ThreadLocal.withInitial(() -> new TranspositionTable(16));
+
+    private final ThreadPoolExecutor pool;
+    private final long timeBudgetNanos;
+    private final int maxDepth;
+
+    private final Timer moveLatency;
+    private final DistributionSummary nodesPerSecond;
+    private final DistributionSummary searchDepth;
+
+    public AiPlayer(MeterRegistry meterRegistry,
+                    @Value("${chat.ai.threads:2}") int threads,
+                    @Value("${chat.ai.queue-capacity:64}") int queueCapacity,
+                    @Value("${chat.ai.time-budget-ms:500}") long timeBudgetMs,
+                    @Value("${chat.ai.max-depth:6}") int maxDepth) {
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+        this.maxDepth = maxDepth;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "caro-ai-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        this.moveLatency = Timer.builder("chat.ai.move.latency")
+            .description("Time from a move request to the AI's answer, queueing included")
+            .register(meterRegistry);
+        this.nodesPerSecond = DistributionSummary.builder("chat.ai.search.nodes-per-second")
+            .description("Search throughput per move")
+            .register(meterRegistry);
+        this.searchDepth = DistributionSummary.builder("chat.ai.search.depth")
+            .description("Deepest completed iteration per move")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Chooses a move for the player to move in the game. Must be called on
+     * the game's command lane: the board is copied before this returns and
+     * the search then runs on the AI pool. Completes with null if the game has
+     * no bounded board or no empty cell.
+     */
+    public CompletableFuture<SearchResult> chooseMove(CaroGame game) {
+        GameRules rules = game.getRules();
+        if (rules.isUnbounded()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        int size = rules.boardSize();
+        byte[] cells = new byte[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                String symbol = game.getCell(row, col);
+                if (symbol != null) {
+                    cells[row * size + col] = (byte) ("X".equals(symbol) ? 1 : 2);
+                }
+            }
+        }
+        int player = "X".equals(game.getCurrentPlayer()) ? 1 : 2;
+        int winLength = rules.winLength();
+        long requestedAt = System.nanoTime();
+
+        try {
+            return CompletableFuture.supplyAsync(
+                () -> search(size, winLength, cells, player, requestedAt, maxDepth, TABLES.get()), pool);
+        } catch (RejectedExecutionException e) {
+            logger.warn("AI pool saturated, answering game {} with a shallow search", game.getGameId());
+            TranspositionTable table = new TranspositionTable(8);
+            return CompletableFuture.completedFuture(search(size, winLength, cells, player, requestedAt, 1, table));
+        }
+    }
+
+    private SearchResult search(int size, int winLength, byte[] cells, int player, long requestedAt, int depth,
+                                TranspositionTable table) {
+        // The budget counts from the request, so time spent queued is not added on top
+        long deadline = requestedAt + timeBudgetNanos;
+        AlphaBetaSearch search = new AlphaBetaSearch(size, winLength, cells, table, deadline, depth);
+        SearchResult result = search.search(player);
+
+        moveLatency.record(System.nanoTime() - requestedAt, TimeUnit.NANOSECONDS);
+        if (result != null) {
+            searchDepth.record(result.depth());
+            if (result.elapsedNanos() > 0) {
+                nodesPerSecond.record(result.nodes() * 1_000_000_000.0 / result.elapsedNanos());
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,390 @@
+package com.example.chatservice.ai;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Iterative-deepening alpha-beta (negamax) search for a single Caro move.
+ *
+ * The board is scored incrementally over every window of winLength cells: a
+ * window holding only one player's stones is worth weights[count] to that
+ * player, so placing a stone only re-scores the windows through that cell.
+ * Only empty cells within two of an existing stone are searched, ordered by
+ * how much they add for either side (the transposition table's best move
+ * first), and only the most promising few are expanded at each node.
+ *
+ * The deadline is checked every 1024 nodes; when it passes, the move from the
+ * last completed depth is returned. Win detection follows free-style rules
+ * (winLength or more in a row); the game itself enforces any stricter rule.
+ *
+ * Not thread-safe: a search is created, run once and discarded.
+ */
+final class AlphaBetaSearch {
+    private static final long WIN = 1L << 60;
+    private static final long INFINITY = Long.MAX_VALUE / 2;
+    private static final int[] DIRECTION_ROWS = {0, 1, 1, 1};
+    private static final int[] DIRECTION_COLS = {1, 0, 1, -1};
+    private static final int NEIGHBOURHOOD = 2;
+    private static final int MAX_BREADTH = 12;
+
+    private static final Map<Integer, long[]> ZOBRIST_KEYS = new ConcurrentHashMap<>();
+    private static final long[] SIDE_KEYS = {0L, 0x5DEECE66DL * 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL};
+
+    private final int size;
+    private final int winLength;
+    private final byte[] cells;
+    private final int[] nearby; // stones within NEIGHBOURHOOD of each cell
+    private final long[] zobrist;
+    private final long[] weights;
+    private final TranspositionTable table;
+    private final long deadline;
+    private final int maxDepth;
+
+    private final long[] score = new long[3]; // indexed by player 1 (X) and 2 (O)
+    private long hash;
+    private int stones;
+    private int minRow;
+    private int maxRow;
+    private int minCol;
+    private int maxCol;
+
+    private final int[][] moveBuffers;
+    private final long[][] priorityBuffers;
+    private long nodes;
+    private boolean aborted;
+    private int rootMove;
+
+    /**
+     * @param cells row-major board, 0 for empty, 1 for X and 2 for O
+     */
+    AlphaBetaSearch(int size, int winLength, byte[] cells, TranspositionTable table, long deadline, int maxDepth) {
+        this.size = size;
+        this.winLength = winLength;
+        this.cells = new byte[size * size];
+        this.nearby = new int[size * size];
+        this.zobrist = ZOBRIST_KEYS.computeIfAbsent(size, AlphaBetaSearch::newZobristKeys);
+        this.table = table;
+        this.deadline = deadline;
+        this.maxDepth = maxDepth;
+        this.moveBuffers = new int[maxDepth + 1][];
+        this.priorityBuffers = new long[maxDepth + 1][];
+
+        this.weights = new long[winLength + 1];
+        for (int count = 1; count <= winLength; count++) {
+            weights[count] = 1L << Math.min(3 * (count - 1), 48);
+        }
+
+        // The win length changes every score, so it is part of the position key
+        this.hash = winLength * 0x9E3779B97F4A7C15L;
+        this.minRow = size;
+        this.minCol = size;
+        this.maxRow = -1;
+        this.maxCol = -1;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] != 0) {
+                place(cell, cells[cell]);
+            }
+        }
+    }
+
+    private static long[] newZobristKeys(int size) {
+        // Fixed seed: keys must not change between searches sharing a table
+        SplittableRandom random = new SplittableRandom(size * 31L + 17);
+        long[] keys = new long[size * size * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+        return keys;
+    }
+
+    /**
+     * Searches for the best move for {@code player}, or returns null if the
+     * board is full.
+     */
+    SearchResult search(int player) {
+        long start = System.nanoTime();
+        if (stones == size * size) {
+            return null;
+        }
+
+        int bestMove = -1;
+        int completedDepth = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            rootMove = -1;
+            long value = negamax(depth, -INFINITY, INFINITY, player, 0);
+            if (aborted) {
+                // A partial first iteration is still better than no move
+                if (bestMove < 0) {
+                    bestMove = rootMove;
+                }
+                break;
+            }
+            bestMove = rootMove;
+            completedDepth = depth;
+            if (Math.abs(value) >= WIN - maxDepth) {
+                break; // Forced result found, deeper search will not change it
+            }
+        }
+
+        if (bestMove < 0) {
+            bestMove = firstEmptyCell();
+        }
+        return new SearchResult(bestMove / size, bestMove % size, completedDepth, nodes, System.nanoTime() - start);
+    }
+
+    private long negamax(int depth, long alpha, long beta, int player, int ply) {
+        if ((++nodes & 1023) == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        long key = hash ^ SIDE_KEYS[player];
+        long originalAlpha = alpha;
+        int tableMove = -1;
+        int slot = table.probe(key);
+        if (slot >= 0) {
+            tableMove = table.move(slot);
+            if (ply > 0 && table.depth(slot) >= depth) {
+                long value = table.value(slot);
+                byte flag = table.flag(slot);
+                if (flag == TranspositionTable.EXACT) {
+                    return value;
+                } else if (flag == TranspositionTable.LOWER_BOUND) {
+                    alpha = Math.max(alpha, value);
+                } else {
+                    beta = Math.min(beta, value);
+                }
+                if (alpha >= beta) {
+                    return value;
+                }
+            }
+        }
+
+        if (depth == 0) {
+            return score[player] - score[3 - player];
+        }
+
+        int count = generateMoves(ply, player, tableMove);
+        if (count == 0) {
+            return 0; // Board full: draw
+        }
+
+        int[] moves = moveBuffers[ply];
+        long best = -INFINITY;
+        int bestMove = moves[0];
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+
+            long savedHash = hash;
+            long savedScoreX = score[1];
+            long savedScoreO = score[2];
+            int savedMinRow = minRow;
+            int savedMaxRow = maxRow;
+            int savedMinCol = minCol;
+            int savedMaxCol = maxCol;
+
+            boolean win = place(cell, player);
+            long value = win ? WIN - ply : -negamax(depth - 1, -beta, -alpha, 3 - player, ply + 1);
+
+            remove(cell);
+            hash = savedHash;
+            score[1] = savedScoreX;
+            score[2] = savedScoreO;
+            minRow = savedMinRow;
+            maxRow = savedMaxRow;
+            minCol = savedMinCol;
+            maxCol = savedMaxCol;
+
+            if (aborted) {
+                return 0;
+            }
+            if (value > best) {
+                best = value;
+                bestMove = cell;
+                if (ply == 0) {
+                    rootMove = cell;
+                }
+            }
+            if (value > alpha) {
+                alpha = value;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        byte flag = best <= originalAlpha ? TranspositionTable.UPPER_BOUND
+            : best >= beta ? TranspositionTable.LOWER_BOUND
+            : TranspositionTable.EXACT;
+        table.store(key, depth, best, flag, bestMove);
+        return best;
+    }
+
+    /**
+     * Fills moveBuffers[ply] with the most promising candidate cells, best
+     * first, and returns how many there are.
+     */
+    private int generateMoves(int ply, int player, int tableMove) {
+        if (moveBuffers[ply] == null) {
+            moveBuffers[ply] = new int[size * size];
+            priorityBuffers[ply] = new long[size * size];
+        }
+        int[] moves = moveBuffers[ply];
+        long[] priorities = priorityBuffers[ply];
+
+        if (stones == 0) {
+            moves[0] = (size / 2) * size + size / 2;
+            return 1;
+        }
+
+        int count = 0;
+        int rowFrom = Math.max(0, minRow - NEIGHBOURHOOD);
+        int rowTo = Math.min(size - 1, maxRow + NEIGHBOURHOOD);
+        int colFrom = Math.max(0, minCol - NEIGHBOURHOOD);
+        int colTo = Math.min(size - 1, maxCol + NEIGHBOURHOOD);
+        for (int row = rowFrom; row <= rowTo; row++) {
+            for (int col = colFrom; col <= colTo; col++) {
+                int cell = row * size + col;
+                if (cells[cell] == 0 && nearby[cell] > 0) {
+                    moves[count] = cell;
+                    priorities[count] = cell == tableMove
+                        ? Long.MAX_VALUE
+                        : potential(cell, player) + potential(cell, 3 - player);
+                    count++;
+                }
+            }
+        }
+
+        // Partial selection sort: only the first MAX_BREADTH positions are searched
+        int limit = Math.min(count, MAX_BREADTH);
+        for (int i = 0; i < limit; i++) {
+            int best = i;
+            for (int j = i + 1; j < count; j++) {
+                if (priorities[j] > priorities[best]) {
+                    best = j;
+                }
+            }
+            int move = moves[i];
+            moves[i] = moves[best];
+            moves[best] = move;
+            long priority = priorities[i];
+            priorities[i] = priorities[best];
+            priorities[best] = priority;
+        }
+        return limit;
+    }
+
+    // Score the player would gain by playing the cell
+    private long potential(int cell, int player) {
+        int row = cell / size;
+        int col = cell % size;
+        long gain = 0;
+        for (int d = 0; d < 4; d++) {
+            int dr = DIRECTION_ROWS[d];
+            int dc = DIRECTION_COLS[d];
+            for (int start = -(winLength - 1); start <= 0; start++) {
+                int r0 = row + start * dr;
+                int c0 = col + start * dc;
+                if (!inBoard(r0, c0) || !inBoard(r0 + (winLength - 1) * dr, c0 + (winLength - 1) * dc)) {
+                    continue;
+                }
+                int mine = 0;
+                int theirs = 0;
+                for (int k = 0; k < winLength; k++) {
+                    byte value = cells[(r0 + k * dr) * size + c0 + k * dc];
+                    if (value == player) {
+                        mine++;
+                    } else if (value != 0) {
+                        theirs++;
+                    }
+                }
+                if (theirs == 0) {
+                    gain += weights[mine + 1] - weights[mine];
+                }
+            }
+        }
+        return gain;
+    }
+
+    /**
+     * Places a stone, updating scores, hash, bounding box and neighbour counts.
+     * Returns true if it completes winLength in a row.
+     */
+    private boolean place(int cell, int player) {
+        int row = cell / size;
+        int col = cell % size;
+        int opponent = 3 - player;
+        boolean win = false;
+        for (int d = 0; d < 4; d++) {
+            int dr = DIRECTION_ROWS[d];
+            int dc = DIRECTION_COLS[d];
+            for (int start = -(winLength - 1); start <= 0; start++) {
+                int r0 = row + start * dr;
+                int c0 = col + start * dc;
+                if (!inBoard(r0, c0) || !inBoard(r0 + (winLength - 1) * dr, c0 + (winLength - 1) * dc)) {
+                    continue;
+                }
+                int mine = 0;
+                int theirs = 0;
+                for (int k = 0; k < winLength; k++) {
+                    byte value = cells[(r0 + k * dr) * size + c0 + k * dc];
+                    if (value == player) {
+                        mine++;
+                    } else if (value == opponent) {
+                        theirs++;
+                    }
+                }
+                if (theirs == 0) {
+                    score[player] += weights[mine + 1] - weights[mine];
+                    if (mine + 1 == winLength) {
+                        win = true;
+                    }
+                } else if (mine == 0) {
+                    // The window was the opponent's; it is now dead for both
+                    score[opponent] -= weights[theirs];
+                }
+            }
+        }
+
+        cells[cell] = (byte) player;
+        hash ^= zobrist[cell * 2 + player - 1];
+        stones++;
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+        adjustNearby(row, col, 1);
+        return win;
+    }
+
+    // Scores, hash and bounding box are restored by the caller from saved copies
+    private void remove(int cell) {
+        cells[cell] = 0;
+        stones--;
+        adjustNearby(cell / size, cell % size, -1);
+    }
+
+    private void adjustNearby(int row, int col, int delta) {
+        for (int r = Math.max(0, row - NEIGHBOURHOOD); r <= Math.min(size - 1, row + NEIGHBOURHOOD); r++) {
+            for (int c = Math.max(0, col - NEIGHBOURHOOD); c <= Math.min(size - 1, col + NEIGHBOURHOOD); c++) {
+                nearby[r * size + c] += delta;
+            }
+        }
+    }
+
+    private int firstEmptyCell() {
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] == 0) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    private boolean inBoard(int row, int col) {
+        return row >= 0 && row < size && col >= 0 && col < size;
+    }
+}
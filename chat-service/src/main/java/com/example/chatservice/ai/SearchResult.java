@@ -0,0 +1,10 @@
+package com.example.chatservice.ai;
+
+/**
+ * The move picked by a search and what it cost.
+ *
+ * @param depth deepest iteration that completed within the time budget
+ * @param nodes positions visited across all iterations
+ */
+public record SearchResult(int row, int col, int depth, long nodes, long elapsedNanos) {
+}
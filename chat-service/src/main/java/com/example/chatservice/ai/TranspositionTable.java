@@ -0,0 +1,63 @@
+package com.example.chatservice.ai;
+
+/**
+ * Fixed-size, always-replace transposition table keyed by Zobrist hash.
+ *
+ * Entries live in parallel primitive arrays so probing allocates nothing.
+ * The table is owned by one search thread at a time and is reused across
+ * searches: a key identifies the position, side to move and win length, so an
+ * entry left by an earlier search is still valid.
+ */
+final class TranspositionTable {
+    static final byte EXACT = 0;
+    static final byte LOWER_BOUND = 1;
+    static final byte UPPER_BOUND = 2;
+
+    private final long[] keys;
+    private final long[] values;
+    private final byte[] depths;
+    private final byte[] flags;
+    private final int[] moves;
+    private final int mask;
+
+    TranspositionTable(int bits) {
+        int size = 1 << bits;
+        this.keys = new long[size];
+        this.values = new long[size];
+        this.depths = new byte[size];
+        this.flags = new byte[size];
+        this.moves = new int[size];
+        this.mask = size - 1;
+    }
+
+    // Returns the slot holding this key, or -1
+    int probe(long key) {
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        return keys[slot] == key ? slot : -1;
+    }
+
+    void store(long key, int depth, long value, byte flag, int move) {
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        keys[slot] = key;
+        values[slot] = value;
+        depths[slot] = (byte) depth;
+        flags[slot] = flag;
+        moves[slot] = move;
+    }
+
+    long value(int slot) {
+        return values[slot];
+    }
+
+    int depth(int slot) {
+        return depths[slot];
+    }
+
+    byte flag(int slot) {
+        return flags[slot];
+    }
+
+    int move(int slot) {
+        return moves[slot];
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.chatservice.cluster;
+
+/**
+ * Carries {@link ClusterMessage}s between chat-service nodes.
+ *
+ * A node is up once messages can be sent to it; when it comes up the other
+ * side usually sends it whatever state it needs to catch up. Messages from one
+ * node arrive in the order they were sent. Nothing is retried: a message to a
+ * node that is down is dropped.
+ */
+public interface ClusterBus {
+
+    interface Listener {
+        void onMessage(ClusterMessage message);
+
+        void onNodeUp(int nodeId);
+
+        void onNodeDown(int nodeId);
+    }
+
+    int getNodeId();
+
+    /**
+     * Starts delivering messages and node changes to the listener.
+     */
+    void start(Listener listener);
+
+    void send(int nodeId, ClusterMessage message);
+
+    // To every other node that is up
+    void broadcast(ClusterMessage message);
+}
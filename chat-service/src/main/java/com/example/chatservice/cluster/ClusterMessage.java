@@ -0,0 +1,60 @@
+package com.example.chatservice.cluster;
+
+import com.example.chatservice.model.ChatMessage;
+import com.example.chatservice.websocket.protocol.InboundFrame;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * A message between nodes. Which fields are set depends on the type:
+ * <ul>
+ *   <li>presence_up, presence_down: userId connected to or left the source node</li>
+ *   <li>presence_sync: userIds, every user connected to the source node</li>
+ *   <li>deliver: a frame (frameType, data) for userId's sessions on the target node</li>
+ *   <li>game_command: a frame from userId for a game the target node owns</li>
+ *   <li>message_sent: a chat message sent through the source node</li>
+ *   <li>read_mark: userId has read senderId's messages up to readUpTo</li>
+ * </ul>
+ */
+public record ClusterMessage(
+    String type,
+    int sourceNode,
+    Long userId,
+    List<Long> userIds,
+    String frameType,
+    JsonNode data,
+    InboundFrame command,
+    ChatMessage message,
+    Long senderId,
+    Long readUpTo
+) {
+
+    public static ClusterMessage presenceUp(int sourceNode, Long userId) {
+        return new ClusterMessage("presence_up", sourceNode, userId, null, null, null, null, null, null, null);
+    }
+
+    public static ClusterMessage presenceDown(int sourceNode, Long userId) {
+        return new ClusterMessage("presence_down", sourceNode, userId, null, null, null, null, null, null, null);
+    }
+
+    public static ClusterMessage presenceSync(int sourceNode, List<Long> userIds) {
+        return new ClusterMessage("presence_sync", sourceNode, null, userIds, null, null, null, null, null, null);
+    }
+
+    public static ClusterMessage deliver(int sourceNode, Long userId, String frameType, JsonNode data) {
+        return new ClusterMessage("deliver", sourceNode, userId, null, frameType, data, null, null, null, null);
+    }
+
+    public static ClusterMessage gameCommand(int sourceNode, Long userId, InboundFrame command) {
+        return new ClusterMessage("game_command", sourceNode, userId, null, null, null, command, null, null, null);
+    }
+
+    public static ClusterMessage messageSent(int sourceNode, ChatMessage message) {
+        return new ClusterMessage("message_sent", sourceNode, null, null, null, null, null, message, null, null);
+    }
+
+    public static ClusterMessage readMark(int sourceNode, Long readerId, Long senderId, long readUpTo) {
+        return new ClusterMessage("read_mark", sourceNode, readerId, null, null, null, null, null, senderId, readUpTo);
+    }
+}
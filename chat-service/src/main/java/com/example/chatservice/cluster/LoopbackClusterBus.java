@@ -0,0 +1,91 @@
+package com.example.chatservice.cluster;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bus between nodes in the same JVM. Messages are handed to the target's
+ * listener on the sending thread, without being serialized.
+ *
+ * This is the default: on its own hub a node is a cluster of one, and every
+ * broadcast goes nowhere. Tests put several nodes on one {@link Hub} to run a
+ * cluster in process.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.bus", havingValue = "loopback", matchIfMissing = true)
+public class LoopbackClusterBus implements ClusterBus {
+
+    public static final class Hub {
+        private final Map<Integer, LoopbackClusterBus> nodes = new ConcurrentHashMap<>();
+    }
+
+    private final Hub hub;
+    private final int nodeId;
+    private volatile Listener listener;
+
+    @Autowired
+    public LoopbackClusterBus(@Value("${chat.node-id:0}") int nodeId) {
+        this(new Hub(), nodeId);
+    }
+
+    public LoopbackClusterBus(Hub hub, int nodeId) {
+        this.hub = hub;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        synchronized (hub) {
+            if (hub.nodes.putIfAbsent(nodeId, this) != null) {
+                throw new IllegalStateException("Node " + nodeId + " is already on the hub");
+            }
+            for (LoopbackClusterBus other : hub.nodes.values()) {
+                if (other != this) {
+                    other.listener.onNodeUp(nodeId);
+                    listener.onNodeUp(other.nodeId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void send(int targetNode, ClusterMessage message) {
+        LoopbackClusterBus target = hub.nodes.get(targetNode);
+        if (target != null && target != this) {
+            target.listener.onMessage(message);
+        }
+    }
+
+    @Override
+    public void broadcast(ClusterMessage message) {
+        for (LoopbackClusterBus target : hub.nodes.values()) {
+            if (target != this) {
+                target.listener.onMessage(message);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (hub) {
+            if (!hub.nodes.remove(nodeId, this)) {
+                return;
+            }
+            for (LoopbackClusterBus other : hub.nodes.values()) {
+                other.listener.onNodeDown(nodeId);
+            }
+        }
+    }
+}
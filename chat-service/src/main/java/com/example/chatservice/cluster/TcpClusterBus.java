@@ -0,0 +1,385 @@
+package com.example.chatservice.cluster;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bus over plain TCP connections between the nodes listed in
+ * {@code chat.cluster.peers} ({@code id@host:port}, comma-separated).
+ *
+ * Every node dials every peer and only writes on the connection it dialled;
+ * what it receives arrives on the connections its peers dialled. A peer is up
+ * once our connection to it is open, and down when its connection to us
+ * closes, at which point ours is dropped too so the next reconnect starts the
+ * pair over. Messages are length-prefixed JSON.
+ *
+ * Sending never touches the socket: messages go onto a bounded queue per
+ * connection that its own writer thread drains, so a peer that is slow or
+ * half-open only backs up its own queue. When that queue is full the
+ * connection is dropped, and the peer is resynced once it is back.
+ *
+ * A connection opens with the dialling node's id and the shared
+ * {@code chat.cluster.token}. The listening side closes it unless the id is
+ * one of the configured peers and the token matches, so only those peers can
+ * forward frames and game commands into this node.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.bus", havingValue = "tcp")
+public class TcpClusterBus implements ClusterBus {
+    private static final Logger logger = LoggerFactory.getLogger(TcpClusterBus.class);
+    private static final int MAX_MESSAGE_BYTES = 1 << 20;
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    // A connection that has not sent its id and token by then is closed
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    private static final int WRITE_BATCH_SIZE = 64;
+
+    private static final class Peer {
+        final int nodeId;
+        final InetSocketAddress address;
+        // Guarded by this; null while the peer is down
+        Connection connection;
+
+        Peer(int nodeId, InetSocketAddress address) {
+            this.nodeId = nodeId;
+            this.address = address;
+        }
+    }
+
+    // A connection we dialled, and the messages waiting for its writer thread
+    private record Connection(Socket socket, DataOutputStream out, BlockingQueue<byte[]> outbox) {}
+
+    private final int nodeId;
+    private final String bindAddress;
+    private final int port;
+    private final byte[] token;
+    private final long reconnectIntervalMs;
+    private final int sendQueueCapacity;
+    private final Map<Integer, Peer> peers;
+    // The connection each peer dialled to us; only the current one may report the peer down
+    private final Map<Integer, Socket> inbound = new ConcurrentHashMap<>();
+    private final ObjectMapper mapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private final ScheduledExecutorService connector;
+
+    private volatile Listener listener;
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public TcpClusterBus(@Value("${chat.node-id:0}") int nodeId,
+                         @Value("${chat.cluster.bind-address:0.0.0.0}") String bindAddress,
+                         @Value("${chat.cluster.port:7400}") int port,
+                         @Value("${chat.cluster.peers:}") String peers,
+                         @Value("${chat.cluster.token:}") String token,
+                         @Value("${chat.cluster.reconnect-interval-ms:2000}") long reconnectIntervalMs,
+                         @Value("${chat.cluster.send-queue.capacity:10000}") int sendQueueCapacity) {
+        if (token.isBlank()) {
+            throw new IllegalArgumentException("chat.cluster.token must be set to use the tcp cluster bus");
+        }
+        this.nodeId = nodeId;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.reconnectIntervalMs = reconnectIntervalMs;
+        this.sendQueueCapacity = sendQueueCapacity;
+        this.peers = parsePeers(peers, nodeId);
+        this.connector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-connector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Map<Integer, Peer> parsePeers(String peers, int self) {
+        Map<Integer, Peer> parsed = new HashMap<>();
+        for (String entry : peers.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int at = entry.indexOf('@');
+            int colon = entry.lastIndexOf(':');
+            if (at <= 0 || colon < at) {
+                throw new IllegalArgumentException("chat.cluster.peers entries must look like id@host:port: " + entry);
+            }
+            int peerId = Integer.parseInt(entry.substring(0, at));
+            if (peerId != self) {
+                InetSocketAddress address = InetSocketAddress.createUnresolved(
+                    entry.substring(at + 1, colon), Integer.parseInt(entry.substring(colon + 1)));
+                parsed.put(peerId, new Peer(peerId, address));
+            }
+        }
+        return Map.copyOf(parsed);
+    }
+
+    @Override
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        try {
+            serverSocket = new ServerSocket(port, 0, InetAddress.getByName(bindAddress));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not listen for cluster peers on " + bindAddress + ":" + port, e);
+        }
+        running = true;
+        Thread acceptor = new Thread(this::acceptPeers, "cluster-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        connector.scheduleWithFixedDelay(this::connectPeers, 0, reconnectIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Node {} listening for cluster peers on {}:{}, peers: {}", nodeId, bindAddress, port,
+            peers.keySet());
+    }
+
+    @Override
+    public void send(int targetNode, ClusterMessage message) {
+        Peer peer = peers.get(targetNode);
+        if (peer != null) {
+            enqueue(peer, encode(message));
+        }
+    }
+
+    @Override
+    public void broadcast(ClusterMessage message) {
+        if (peers.isEmpty()) {
+            return;
+        }
+        byte[] bytes = encode(message);
+        for (Peer peer : peers.values()) {
+            enqueue(peer, bytes);
+        }
+    }
+
+    private byte[] encode(ClusterMessage message) {
+        try {
+            return mapper.writeValueAsBytes(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error encoding " + message.type() + " cluster message", e);
+        }
+    }
+
+    private void enqueue(Peer peer, byte[] bytes) {
+        synchronized (peer) {
+            Connection connection = peer.connection;
+            if (connection == null) {
+                return; // Down; the peer resyncs once it is back
+            }
+            if (!connection.outbox().offer(bytes)) {
+                logger.warn("Send queue to node {} is full, disconnecting", peer.nodeId);
+                disconnect(peer, connection);
+            }
+        }
+    }
+
+    // Runs on the connection's own thread until the connection is dropped
+    private void writePeer(Peer peer, Connection connection) {
+        List<byte[]> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        try {
+            while (running && !connection.socket().isClosed()) {
+                byte[] first = connection.outbox().poll(reconnectIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                connection.outbox().drainTo(batch, WRITE_BATCH_SIZE - 1);
+                for (byte[] bytes : batch) {
+                    connection.out().writeInt(bytes.length);
+                    connection.out().write(bytes);
+                }
+                connection.out().flush();
+                batch.clear();
+            }
+        } catch (IOException e) {
+            if (running && !connection.socket().isClosed()) {
+                logger.warn("Lost connection to node {}: {}", peer.nodeId, e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            disconnect(peer, connection);
+        }
+    }
+
+    private void connectPeers() {
+        for (Peer peer : peers.values()) {
+            synchronized (peer) {
+                if (peer.connection != null || !running) {
+                    continue;
+                }
+            }
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(peer.address.getHostString(), peer.address.getPort()),
+                    CONNECT_TIMEOUT_MS);
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeInt(nodeId);
+                out.writeUTF(new String(token, StandardCharsets.UTF_8));
+                out.flush();
+                Connection connection = new Connection(socket, out, new ArrayBlockingQueue<>(sendQueueCapacity));
+                synchronized (peer) {
+                    peer.connection = connection;
+                }
+                Thread writer = new Thread(() -> writePeer(peer, connection), "cluster-writer-" + peer.nodeId);
+                writer.setDaemon(true);
+                writer.start();
+                logger.info("Connected to node {} at {}", peer.nodeId, peer.address);
+                listener.onNodeUp(peer.nodeId);
+            } catch (IOException e) {
+                closeQuietly(socket);
+                logger.debug("Node {} at {} is not reachable: {}", peer.nodeId, peer.address, e.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Error bringing up node {}: ", peer.nodeId, e);
+            }
+        }
+    }
+
+    private void disconnect(Peer peer) {
+        synchronized (peer) {
+            if (peer.connection != null) {
+                disconnect(peer, peer.connection);
+            }
+        }
+    }
+
+    // Only if it is still the peer's current connection; closing the socket also stops its writer
+    private void disconnect(Peer peer, Connection connection) {
+        synchronized (peer) {
+            if (peer.connection == connection) {
+                peer.connection = null;
+            }
+        }
+        closeQuietly(connection.socket());
+        connection.outbox().clear();
+    }
+
+    private void acceptPeers() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread reader = new Thread(() -> readPeer(socket), "cluster-reader");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    logger.error("Error accepting cluster peer: ", e);
+                }
+            }
+        }
+    }
+
+    private void readPeer(Socket socket) {
+        int peerId = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            int claimedId = in.readInt();
+            byte[] claimedToken = in.readUTF().getBytes(StandardCharsets.UTF_8);
+            if (!peers.containsKey(claimedId) || !MessageDigest.isEqual(token, claimedToken)) {
+                logger.warn("Refused cluster connection from {} claiming to be node {}",
+                    socket.getRemoteSocketAddress(), claimedId);
+                return;
+            }
+            socket.setSoTimeout(0);
+            peerId = claimedId;
+            Socket previous = inbound.put(peerId, socket);
+            closeQuietly(previous);
+            while (running) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_MESSAGE_BYTES) {
+                    throw new IOException("Cluster message of " + length + " bytes");
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                ClusterMessage message = mapper.readValue(bytes, ClusterMessage.class);
+                if (message.sourceNode() != peerId) {
+                    logger.warn("Dropped {} from node {} claiming to come from node {}", message.type(), peerId,
+                        message.sourceNode());
+                    continue;
+                }
+                try {
+                    listener.onMessage(message);
+                } catch (RuntimeException e) {
+                    logger.error("Error handling {} from node {}: ", message.type(), peerId, e);
+                }
+            }
+        } catch (EOFException e) {
+            if (running) {
+                logger.info("Node {} closed its connection", peerId);
+            }
+        } catch (IOException e) {
+            if (running) {
+                logger.warn("Connection from node {} failed: {}", peerId, e.getMessage());
+            }
+        } finally {
+            closeQuietly(socket);
+            if (peerId >= 0 && inbound.remove(peerId, socket) && running) {
+                Peer peer = peers.get(peerId);
+                if (peer != null) {
+                    disconnect(peer);
+                }
+                listener.onNodeDown(peerId);
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        connector.shutdownNow();
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+        peers.values().forEach(this::disconnect);
+        inbound.values().forEach(TcpClusterBus::closeQuietly);
+    }
+}
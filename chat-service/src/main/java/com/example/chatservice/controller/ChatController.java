@@ -1,7 +1,9 @@
 package com.example.chatservice.controller;
 
+import com.example.chatservice.dto.MessagePage;
+import com.example.chatservice.dto.UnreadCounts;
 import com.example.chatservice.model.ChatMessage;
-import com.example.chatservice.repository.ChatMessageRepository;
+import com.example.chatservice.service.ChatService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
@@ -16,10 +18,13 @@ import java.util.List;
 public class ChatController {
     private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
     
-    private final ChatMessageRepository chatMessageRepository;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ChatService chatService;
     
-    public ChatController(ChatMessageRepository chatMessageRepository) {
-        this.chatMessageRepository = chatMessageRepository;
+    public ChatController(ChatService chatService) {
+        this.chatService = chatService;
     }
     
     @GetMapping("/messages/{userId1}/{userId2}")
@@ -31,11 +36,31 @@ public class ChatController {
         
         LocalDateTime oneDayAgo = LocalDateTime.now().minusDays(1);
         
-        List<ChatMessage> messages = chatMessageRepository.findMessagesBetweenUsersAfterTimestamp(
-            userId1, userId2, oneDayAgo);
+        List<ChatMessage> messages = chatService.getRecentMessages(userId1, userId2, oneDayAgo);
         
         logger.info("Found {} messages from last 24 hours", messages.size());
         
         return ResponseEntity.ok(messages);
     }
-}
\ No newline at end of file
+
+    /**
+     * Cursor-paginated conversation history. Pass the previous response's
+     * {@code nextCursor} as {@code before} to load older messages.
+     */
+    @GetMapping("/conversations/{userId1}/{userId2}/messages")
+    public ResponseEntity<MessagePage> getMessagePage(
+            @PathVariable Long userId1,
+            @PathVariable Long userId2,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return ResponseEntity.ok(chatService.getMessagePage(userId1, userId2, before, pageSize));
+    }
+
+    // Total and per-conversation unread counts for the user's badges
+    @GetMapping("/unread/{userId}")
+    public ResponseEntity<UnreadCounts> getUnreadCounts(@PathVariable Long userId) {
+        return ResponseEntity.ok(chatService.getUnreadCounts(userId));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.chatservice.controller;
+
+import com.example.chatservice.model.GameRecord;
+import com.example.chatservice.model.HeadToHead;
+import com.example.chatservice.service.GameHistoryService;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@RestController
+@RequestMapping("/api/games")
+@CrossOrigin(origins = "*")
+public class GameController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final GameHistoryService gameHistoryService;
+
+    public GameController(GameHistoryService gameHistoryService) {
+        this.gameHistoryService = gameHistoryService;
+    }
+
+    /**
+     * Streams a finished game as newline-delimited JSON: one line describing
+     * the game, then one line per move in play order.
+     */
+    @GetMapping("/{gameId}/replay")
+    public ResponseEntity<StreamingResponseBody> getReplay(@PathVariable String gameId) {
+        return gameHistoryService.findRecord(gameId)
+            .map(record -> ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body((StreamingResponseBody) out -> writeReplay(record, out)))
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/head-to-head/{userId1}/{userId2}")
+    public ResponseEntity<HeadToHead> getHeadToHead(@PathVariable Long userId1, @PathVariable Long userId2) {
+        return ResponseEntity.ok(gameHistoryService.getHeadToHead(userId1, userId2));
+    }
+
+    private static void writeReplay(GameRecord record, OutputStream out) throws IOException {
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            json.setRootValueSeparator(null);
+            json.writeStartObject();
+            json.writeStringField("gameId", record.gameId());
+            json.writeObjectFieldStart("player1");
+            json.writeNumberField("id", record.player1Id());
+            json.writeStringField("name", record.player1Name());
+            json.writeEndObject();
+            json.writeObjectFieldStart("player2");
+            json.writeNumberField("id", record.player2Id());
+            json.writeStringField("name", record.player2Name());
+            json.writeEndObject();
+            json.writeObjectFieldStart("rules");
+            json.writeNumberField("boardSize", record.rules().boardSize());
+            json.writeNumberField("winLength", record.rules().winLength());
+            json.writeBooleanField("exactLength", record.rules().exactLength());
+            json.writeBooleanField("blockedEnds", record.rules().blockedEnds());
+            json.writeEndObject();
+            json.writeStringField("winner", record.winner());
+            json.writeStringField("endReason", record.endReason());
+            json.writeNumberField("moveCount", record.moveCount());
+            json.writeNumberField("startedAt", record.startedAt());
+            json.writeNumberField("durationMs", record.durationMs());
+            json.writeEndObject();
+            json.writeRaw('\n');
+
+            int[] moves = record.unpackMoves();
+            for (int i = 0; i < record.moveCount(); i++) {
+                json.writeStartObject();
+                json.writeNumberField("moveNumber", i + 1);
+                json.writeNumberField("row", moves[2 * i]);
+                json.writeNumberField("col", moves[2 * i + 1]);
+                json.writeStringField("symbol", i % 2 == 0 ? "X" : "O");
+                json.writeEndObject();
+                json.writeRaw('\n');
+            }
+        }
+    }
+}
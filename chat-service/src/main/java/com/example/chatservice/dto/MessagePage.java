@@ -0,0 +1,12 @@
+package com.example.chatservice.dto;
+
+import com.example.chatservice.model.ChatMessage;
+
+import java.util.List;
+
+/**
+ * A page of conversation history in send order. {@code nextCursor} is the id to
+ * pass as {@code before} for the next (older) page, or null when there is none.
+ */
+public record MessagePage(List<ChatMessage> messages, Long nextCursor) {
+}
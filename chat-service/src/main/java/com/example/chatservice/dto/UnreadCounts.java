@@ -0,0 +1,13 @@
+package com.example.chatservice.dto;
+
+import java.util.Map;
+
+/**
+ * A user's unread messages: the total and the count per sender.
+ */
+public record UnreadCounts(long total, Map<Long, Integer> bySender) {
+
+    public static UnreadCounts empty() {
+        return new UnreadCounts(0, Map.of());
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.chatservice.dto;
+
+/**
+ * How many unread messages a user has from one sender, and the newest of
+ * their ids.
+ */
+public record UnreadFromSender(Long senderId, Long count, Long maxId) {
+}
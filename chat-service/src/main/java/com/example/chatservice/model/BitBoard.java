@@ -0,0 +1,47 @@
+package com.example.chatservice.model;
+
+import java.util.Arrays;
+
+/**
+ * Dense board for bounded sizes: one bit per cell (index row * size + col) for
+ * each player.
+ */
+class BitBoard implements Board {
+    private final int size;
+    private final long[] xBits;
+    private final long[] oBits;
+
+    BitBoard(int size) {
+        this.size = size;
+        this.xBits = new long[(size * size + 63) / 64];
+        this.oBits = new long[xBits.length];
+    }
+
+    @Override
+    public byte get(int row, int col) {
+        int cell = row * size + col;
+        if ((xBits[cell >>> 6] & (1L << cell)) != 0) {
+            return X;
+        }
+        return (oBits[cell >>> 6] & (1L << cell)) != 0 ? O : EMPTY;
+    }
+
+    @Override
+    public void set(int row, int col, byte player) {
+        int cell = row * size + col;
+        long mask = 1L << cell;
+        xBits[cell >>> 6] &= ~mask;
+        oBits[cell >>> 6] &= ~mask;
+        if (player == X) {
+            xBits[cell >>> 6] |= mask;
+        } else if (player == O) {
+            oBits[cell >>> 6] |= mask;
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(xBits, 0L);
+        Arrays.fill(oBits, 0L);
+    }
+}
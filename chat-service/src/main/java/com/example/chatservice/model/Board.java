@@ -0,0 +1,21 @@
+package com.example.chatservice.model;
+
+/**
+ * Cell storage behind a {@link CaroGame}. Cells hold {@link #EMPTY},
+ * {@link #X} or {@link #O}; coordinates are only range-checked by the game.
+ */
+interface Board {
+    byte EMPTY = 0;
+    byte X = 1;
+    byte O = 2;
+
+    byte get(int row, int col);
+
+    void set(int row, int col, byte player);
+
+    void clear();
+
+    static Board forRules(GameRules rules) {
+        return rules.isUnbounded() ? new SparseBoard() : new BitBoard(rules.boardSize());
+    }
+}
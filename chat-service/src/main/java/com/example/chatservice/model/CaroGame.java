@@ -1,42 +1,57 @@
 package com.example.chatservice.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
 public class CaroGame {
-    private static final int BOARD_SIZE = 20;
+    // Directions checked for a win: horizontal, vertical, diagonal, anti-diagonal
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
     
     private String gameId;
     private GamePlayer player1; // X
     private GamePlayer player2; // O
-    private String[][] board; // 20x20 board
+    
+    private final GameRules rules;
+    private final Board board;
+    private String[][] boardView; // built on demand by getBoard(), dropped on every move
+    
     private String currentPlayer; // "X" or "O"
     private GameStatus status;
     private String winner;
     private List<int[]> winningLine;
+    private int moveNumber; // number of moves played so far
+    private int[] lastMove; // {row, col} of the latest move, null before the first
+    private int[] moveHistory = new int[32]; // row, col of every move in play order
+    private int historyLength;
+    private long startedAt; // when the game entered PLAYING, 0 before
+    private long finishedAt; // when the game entered FINISHED, 0 before
+    private volatile long lastActivityAt = System.currentTimeMillis(); // read by the lifecycle sweeper
     
     public enum GameStatus {
         WAITING, PLAYING, FINISHED
     }
     
     public CaroGame() {
+        this(GameRules.standard());
+    }
+    
+    public CaroGame(GameRules rules) {
         this.gameId = UUID.randomUUID().toString();
-        this.board = new String[BOARD_SIZE][BOARD_SIZE];
+        this.rules = rules;
+        this.board = Board.forRules(rules);
         this.currentPlayer = "X"; // X always starts first
         this.status = GameStatus.WAITING;
         this.winningLine = new ArrayList<>();
-        
-        // Initialize empty board
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                board[i][j] = null;
-            }
-        }
     }
     
     public CaroGame(GamePlayer player1, GamePlayer player2) {
-        this();
+        this(player1, player2, GameRules.standard());
+    }
+    
+    public CaroGame(GamePlayer player1, GamePlayer player2, GameRules rules) {
+        this(rules);
         this.player1 = player1;
         this.player2 = player2;
         this.status = GameStatus.PLAYING;
@@ -45,11 +60,11 @@ public class CaroGame {
     // Make a move
     public boolean makeMove(int row, int col, String symbol) {
         // Validate move
-        if (row < 0 || row >= BOARD_SIZE || col < 0 || col >= BOARD_SIZE) {
+        if (!inBoard(row, col)) {
             return false;
         }
         
-        if (board[row][col] != null) {
+        if (board.get(row, col) != Board.EMPTY) {
             return false; // Cell already occupied
         }
         
@@ -62,18 +77,24 @@ public class CaroGame {
         }
         
         // Make the move
-        board[row][col] = symbol;
+        byte player = "X".equals(symbol) ? Board.X : Board.O;
+        board.set(row, col, player);
+        boardView = null;
+        moveNumber++;
+        lastMove = new int[]{row, col};
+        recordMove(row, col);
+        touch();
         
         // Check for win
-        if (checkWin(row, col, symbol)) {
+        if (checkWin(player, row, col)) {
             winner = symbol;
-            status = GameStatus.FINISHED;
+            setStatus(GameStatus.FINISHED);
             return true;
         }
         
-        // Check for draw
-        if (isBoardFull()) {
-            status = GameStatus.FINISHED;
+        // Check for draw: every cell has been played
+        if (!rules.isUnbounded() && moveNumber == rules.boardSize() * rules.boardSize()) {
+            setStatus(GameStatus.FINISHED);
             winner = null; // Draw
             return true;
         }
@@ -84,54 +105,112 @@ public class CaroGame {
         return true;
     }
     
-    // Check if there's a winner (5 in a row)
-    private boolean checkWin(int row, int col, String symbol) {
-        // Check all 4 directions: horizontal, vertical, diagonal1, diagonal2
-        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
-        
-        for (int[] dir : directions) {
-            List<int[]> line = new ArrayList<>();
-            line.add(new int[]{row, col});
-            
-            // Check positive direction
-            int count = 1;
-            int r = row + dir[0];
-            int c = col + dir[1];
-            while (r >= 0 && r < BOARD_SIZE && c >= 0 && c < BOARD_SIZE && symbol.equals(board[r][c])) {
-                line.add(new int[]{r, c});
-                count++;
-                r += dir[0];
-                c += dir[1];
+    private void recordMove(int row, int col) {
+        if (historyLength + 2 > moveHistory.length) {
+            moveHistory = Arrays.copyOf(moveHistory, moveHistory.length * 2);
+        }
+        moveHistory[historyLength++] = row;
+        moveHistory[historyLength++] = col;
+    }
+    
+    /**
+     * Checks whether the move at (row, col) wins, looking only at the cells
+     * within winLength of it, so the cost is O(winLength) whatever the board
+     * size. For each direction the player's and the opponent's stones on that
+     * stretch of line are packed into one long each, with bit winLength being
+     * the move itself. A run of winLength is found by and-ing the line with
+     * shifted copies of itself; the rule's overline and blocked-ends checks
+     * then look at the exact run through the move. Nothing is allocated unless
+     * the move wins.
+     */
+    private boolean checkWin(byte player, int row, int col) {
+        int winLength = rules.winLength();
+        int reach = winLength;
+        for (int[] dir : DIRECTIONS) {
+            long line = 0;
+            long opponentLine = 0;
+            for (int i = -reach; i <= reach; i++) {
+                int r = row + i * dir[0];
+                int c = col + i * dir[1];
+                if (inBoard(r, c)) {
+                    byte cell = board.get(r, c);
+                    if (cell == player) {
+                        line |= 1L << (i + reach);
+                    } else if (cell != Board.EMPTY) {
+                        opponentLine |= 1L << (i + reach);
+                    }
+                }
             }
             
-            // Check negative direction
-            r = row - dir[0];
-            c = col - dir[1];
-            while (r >= 0 && r < BOARD_SIZE && c >= 0 && c < BOARD_SIZE && symbol.equals(board[r][c])) {
-                line.add(0, new int[]{r, c}); // Add to beginning to maintain order
-                count++;
-                r -= dir[0];
-                c -= dir[1];
+            long run = line;
+            for (int shift = 1; shift < winLength && run != 0; shift++) {
+                run &= line >>> shift;
             }
+            if (run == 0) {
+                continue;
+            }
+            
+            // Length of the run through the move; runs reaching the window edge are longer than winLength
+            int before = Math.min(reach, Long.numberOfLeadingZeros(~(line << (64 - reach))));
+            int after = Math.min(reach, Long.numberOfTrailingZeros(~(line >>> (reach + 1))));
+            int length = before + after + 1;
             
-            if (count >= 5) {
-                this.winningLine = line;
-                return true;
+            if (rules.exactLength() && length > winLength) {
+                continue;
             }
+            if (rules.blockedEnds() && before < reach && after < reach
+                    && (opponentLine & (1L << (reach - before - 1))) != 0
+                    && (opponentLine & (1L << (reach + after + 1))) != 0) {
+                continue;
+            }
+            
+            this.winningLine = collectLine(player, row, col, dir);
+            return true;
         }
         
         return false;
     }
     
-    private boolean isBoardFull() {
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                if (board[i][j] == null) {
-                    return false;
-                }
-            }
+    // The full run of stones through (row, col) in the given direction, in board order
+    private List<int[]> collectLine(byte player, int row, int col, int[] dir) {
+        int r = row;
+        int c = col;
+        while (inBoard(r - dir[0], c - dir[1]) && board.get(r - dir[0], c - dir[1]) == player) {
+            r -= dir[0];
+            c -= dir[1];
         }
-        return true;
+        
+        List<int[]> line = new ArrayList<>();
+        while (inBoard(r, c) && board.get(r, c) == player) {
+            line.add(new int[]{r, c});
+            r += dir[0];
+            c += dir[1];
+        }
+        return line;
+    }
+    
+    // Also bounds unbounded boards, so the win check's line scans cannot overflow an int
+    private boolean inBoard(int row, int col) {
+        if (rules.isUnbounded()) {
+            int limit = GameRules.MAX_UNBOUNDED_COORDINATE;
+            return row >= -limit && row <= limit && col >= -limit && col <= limit;
+        }
+        int size = rules.boardSize();
+        return row >= 0 && row < size && col >= 0 && col < size;
+    }
+    
+    /**
+     * The symbol at (row, col), or null for an empty or off-board cell.
+     */
+    public String getCell(int row, int col) {
+        if (!inBoard(row, col)) {
+            return null;
+        }
+        byte cell = board.get(row, col);
+        if (cell == Board.X) {
+            return "X";
+        }
+        return cell == Board.O ? "O" : null;
     }
     
     // Getters and Setters
@@ -159,12 +238,50 @@ public class CaroGame {
         this.player2 = player2;
     }
     
+    /**
+     * Grid view of the board for JSON, rebuilt only after the board changes.
+     * Unbounded boards have no grid and return null.
+     */
     public String[][] getBoard() {
-        return board;
+        if (rules.isUnbounded()) {
+            return null;
+        }
+        String[][] view = boardView;
+        if (view == null) {
+            int size = rules.boardSize();
+            view = new String[size][size];
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    view[i][j] = getCell(i, j);
+                }
+            }
+            boardView = view;
+        }
+        return view;
     }
     
-    public void setBoard(String[][] board) {
-        this.board = board;
+    public void setBoard(String[][] cells) {
+        if (rules.isUnbounded()) {
+            throw new UnsupportedOperationException("Unbounded boards have no grid");
+        }
+        board.clear();
+        moveNumber = 0;
+        for (int i = 0; i < rules.boardSize(); i++) {
+            for (int j = 0; j < rules.boardSize(); j++) {
+                if ("X".equals(cells[i][j])) {
+                    board.set(i, j, Board.X);
+                    moveNumber++;
+                } else if ("O".equals(cells[i][j])) {
+                    board.set(i, j, Board.O);
+                    moveNumber++;
+                }
+            }
+        }
+        boardView = null;
+    }
+    
+    public GameRules getRules() {
+        return rules;
     }
     
     public String getCurrentPlayer() {
@@ -175,11 +292,49 @@ public class CaroGame {
         this.currentPlayer = currentPlayer;
     }
     
+    public int getMoveNumber() {
+        return moveNumber;
+    }
+    
+    public int[] getLastMove() {
+        return lastMove;
+    }
+    
+    /**
+     * Every move played so far as row, col pairs in play order. Moves restored
+     * through {@link #setBoard} have no order and are not included.
+     */
+    public int[] getMoveHistory() {
+        return Arrays.copyOf(moveHistory, historyLength);
+    }
+    
+    public long getStartedAt() {
+        return startedAt;
+    }
+    
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+    
+    public long getLastActivityAt() {
+        return lastActivityAt;
+    }
+    
+    // Marks the game as active now; invitation, idle and retention timeouts count from here
+    public void touch() {
+        lastActivityAt = System.currentTimeMillis();
+    }
+    
     public GameStatus getStatus() {
         return status;
     }
     
     public void setStatus(GameStatus status) {
+        if (status == GameStatus.PLAYING && startedAt == 0) {
+            startedAt = System.currentTimeMillis();
+        } else if (status == GameStatus.FINISHED && finishedAt == 0) {
+            finishedAt = System.currentTimeMillis();
+        }
         this.status = status;
     }
     
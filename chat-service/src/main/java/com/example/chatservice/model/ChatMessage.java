@@ -1,13 +1,14 @@
 package com.example.chatservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "chat_messages")
 public class ChatMessage {
+    // Assigned by MessageIdGenerator before the message is persisted
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @Column(name = "sender_id", nullable = false)
@@ -25,6 +26,15 @@ public class ChatMessage {
     @Column(name = "is_read", nullable = false)
     private Boolean isRead = false;
 
+    // Generated by the database as least/greatest(sender_id, receiver_id)
+    @JsonIgnore
+    @Column(name = "conversation_low", insertable = false, updatable = false)
+    private Long conversationLow;
+
+    @JsonIgnore
+    @Column(name = "conversation_high", insertable = false, updatable = false)
+    private Long conversationHigh;
+
     // Constructors
     public ChatMessage() {}
 
@@ -54,4 +64,8 @@ public class ChatMessage {
 
     public Boolean getIsRead() { return isRead; }
     public void setIsRead(Boolean isRead) { this.isRead = isRead; }
+
+    public Long getConversationLow() { return conversationLow; }
+
+    public Long getConversationHigh() { return conversationHigh; }
 }
\ No newline at end of file
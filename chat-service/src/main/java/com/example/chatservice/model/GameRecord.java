@@ -0,0 +1,93 @@
+package com.example.chatservice.model;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A finished game as it is stored for replay.
+ *
+ * Moves are packed into a byte array in play order, X first. On a bounded
+ * board every coordinate fits in one unsigned byte, so a move takes two bytes;
+ * on an unbounded board coordinates are zigzag varints, which is still two
+ * bytes per move while play stays within 64 cells of the origin.
+ *
+ * @param winner "X", "O", or null for a draw
+ * @param endReason "finished" when the game was won or drawn on the board, "opponent_quit" otherwise
+ */
+public record GameRecord(String gameId, Long player1Id, String player1Name, Long player2Id, String player2Name,
+                         GameRules rules, String winner, String endReason, int moveCount, byte[] moves,
+                         long startedAt, long finishedAt) {
+
+    public static GameRecord of(CaroGame game, String endReason) {
+        int[] history = game.getMoveHistory();
+        long finishedAt = game.getFinishedAt() != 0 ? game.getFinishedAt() : System.currentTimeMillis();
+        long startedAt = game.getStartedAt() != 0 ? game.getStartedAt() : finishedAt;
+        return new GameRecord(
+            game.getGameId(),
+            game.getPlayer1().getId(), game.getPlayer1().getName(),
+            game.getPlayer2().getId(), game.getPlayer2().getName(),
+            game.getRules(), game.getWinner(), endReason,
+            history.length / 2, packMoves(history, game.getRules()),
+            startedAt, finishedAt
+        );
+    }
+
+    public long durationMs() {
+        return finishedAt - startedAt;
+    }
+
+    // Null for a draw
+    public Long winnerId() {
+        if ("X".equals(winner)) {
+            return player1Id;
+        }
+        return "O".equals(winner) ? player2Id : null;
+    }
+
+    /**
+     * The moves as row, col pairs in play order.
+     */
+    public int[] unpackMoves() {
+        int[] history = new int[moveCount * 2];
+        if (!rules.isUnbounded()) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] = moves[i] & 0xFF;
+            }
+            return history;
+        }
+
+        int position = 0;
+        for (int i = 0; i < history.length; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = moves[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            history[i] = (value >>> 1) ^ -(value & 1);
+        }
+        return history;
+    }
+
+    static byte[] packMoves(int[] history, GameRules rules) {
+        if (!rules.isUnbounded()) {
+            byte[] packed = new byte[history.length];
+            for (int i = 0; i < history.length; i++) {
+                packed[i] = (byte) history[i];
+            }
+            return packed;
+        }
+
+        ByteArrayOutputStream packed = new ByteArrayOutputStream(history.length * 2);
+        for (int coordinate : history) {
+            int value = (coordinate << 1) ^ (coordinate >> 31);
+            while ((value & ~0x7F) != 0) {
+                packed.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            packed.write(value);
+        }
+        return packed.toByteArray();
+    }
+}
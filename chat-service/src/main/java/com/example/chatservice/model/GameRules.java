@@ -0,0 +1,49 @@
+package com.example.chatservice.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Rules a Caro game is played under, chosen when the invitation is sent.
+ *
+ * @param boardSize   width and height of the board, or 0 for an unbounded board
+ * @param winLength   stones in a row needed to win
+ * @param exactLength when true a run longer than winLength (an overline) does not win
+ * @param blockedEnds when true a run closed off by opponent stones at both ends does not win
+ */
+public record GameRules(int boardSize, int winLength, boolean exactLength, boolean blockedEnds) {
+
+    public static final int UNBOUNDED = 0;
+    public static final int MIN_BOARD_SIZE = 5;
+    public static final int MAX_BOARD_SIZE = 100;
+    public static final int MIN_WIN_LENGTH = 3;
+    // The win check packs 2 * winLength + 1 cells of a line into one long
+    public static final int MAX_WIN_LENGTH = 15;
+    // Unbounded boards accept rows and columns within this distance of the origin
+    public static final int MAX_UNBOUNDED_COORDINATE = 1 << 20;
+
+    public GameRules {
+        if (boardSize != UNBOUNDED && (boardSize < MIN_BOARD_SIZE || boardSize > MAX_BOARD_SIZE)) {
+            throw new IllegalArgumentException("Board size must be 0 or between "
+                + MIN_BOARD_SIZE + " and " + MAX_BOARD_SIZE + ": " + boardSize);
+        }
+        if (winLength < MIN_WIN_LENGTH || winLength > MAX_WIN_LENGTH
+                || (boardSize != UNBOUNDED && winLength > boardSize)) {
+            throw new IllegalArgumentException("Invalid win length " + winLength + " for board size " + boardSize);
+        }
+    }
+
+    // Free-style Caro as played so far: 20x20, five or more in a row
+    public static GameRules standard() {
+        return new GameRules(20, 5, false, false);
+    }
+
+    // Standard Gomoku: 15x15, exactly five, overlines do not count
+    public static GameRules gomoku() {
+        return new GameRules(15, 5, true, false);
+    }
+
+    @JsonIgnore
+    public boolean isUnbounded() {
+        return boardSize == UNBOUNDED;
+    }
+}
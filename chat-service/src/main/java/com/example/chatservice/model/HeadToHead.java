@@ -0,0 +1,40 @@
+package com.example.chatservice.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Running score between two players, whichever of them played X.
+ * The pair is unordered: playerLowId is always the smaller id.
+ */
+public record HeadToHead(long playerLowId, long playerHighId, int lowWins, int highWins, int draws) {
+
+    public static HeadToHead empty(Long userId1, Long userId2) {
+        return new HeadToHead(Math.min(userId1, userId2), Math.max(userId1, userId2), 0, 0, 0);
+    }
+
+    /**
+     * This score with one more game added. winnerId is null for a draw.
+     */
+    public HeadToHead plus(Long winnerId) {
+        if (winnerId == null) {
+            return new HeadToHead(playerLowId, playerHighId, lowWins, highWins, draws + 1);
+        }
+        return winnerId == playerLowId
+            ? new HeadToHead(playerLowId, playerHighId, lowWins + 1, highWins, draws)
+            : new HeadToHead(playerLowId, playerHighId, lowWins, highWins + 1, draws);
+    }
+
+    /**
+     * The score in the shape game frames carry it, from the point of view of
+     * a game where player1Id plays X.
+     */
+    public Map<String, Integer> toScoreboard(Long player1Id) {
+        boolean player1IsLow = player1Id == playerLowId;
+        Map<String, Integer> scoreboard = new LinkedHashMap<>();
+        scoreboard.put("player1Wins", player1IsLow ? lowWins : highWins);
+        scoreboard.put("player2Wins", player1IsLow ? highWins : lowWins);
+        scoreboard.put("draws", draws);
+        return scoreboard;
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.chatservice.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.time.LocalDateTime;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class OnlineUser {
     private Long id;
     private String name;
@@ -0,0 +1,28 @@
+package com.example.chatservice.model;
+
+/**
+ * A player's Elo rating. New players start at {@link #INITIAL_RATING}.
+ */
+public record PlayerRating(long userId, int rating, int gamesPlayed) {
+
+    public static final int INITIAL_RATING = 1200;
+
+    // Provisional ratings move faster until the player has settled in
+    private static final int PROVISIONAL_GAMES = 30;
+    private static final int PROVISIONAL_K = 32;
+    private static final int ESTABLISHED_K = 16;
+
+    public static PlayerRating initial(long userId) {
+        return new PlayerRating(userId, INITIAL_RATING, 0);
+    }
+
+    /**
+     * The rating after one more game against an opponent rated opponentRating.
+     * score is 1 for a win, 0.5 for a draw and 0 for a loss.
+     */
+    public PlayerRating after(int opponentRating, double score) {
+        double expected = 1.0 / (1.0 + Math.pow(10, (opponentRating - rating) / 400.0));
+        int k = gamesPlayed < PROVISIONAL_GAMES ? PROVISIONAL_K : ESTABLISHED_K;
+        return new PlayerRating(userId, (int) Math.round(rating + k * (score - expected)), gamesPlayed + 1);
+    }
+}
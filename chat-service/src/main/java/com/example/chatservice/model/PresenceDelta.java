@@ -0,0 +1,14 @@
+package com.example.chatservice.model;
+
+import java.util.List;
+
+/**
+ * Presence changes between two sequence numbers, coalesced so that each user
+ * appears at most once: either in joined (with their latest profile) or in left.
+ */
+public record PresenceDelta(long fromSeq, long toSeq, List<OnlineUser> joined, List<Long> left) {
+
+    public boolean isEmpty() {
+        return toSeq < fromSeq;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.chatservice.model;
+
+import java.util.List;
+
+/**
+ * The full online user list as of presence sequence number {@code seq}.
+ */
+public record PresenceSnapshot(long seq, List<OnlineUser> users) {
+}
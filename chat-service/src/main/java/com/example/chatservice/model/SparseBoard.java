@@ -0,0 +1,89 @@
+package com.example.chatservice.model;
+
+import java.util.Arrays;
+
+/**
+ * Board for unbounded games, storing only occupied cells. An open-addressing
+ * table keyed by the packed (row, col) pair keeps lookups free of boxing, so
+ * memory grows with the number of moves rather than the area played over.
+ */
+class SparseBoard implements Board {
+    // The key of (Integer.MIN_VALUE, 0), which the game never lets onto the board
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys = newKeys(64);
+    private byte[] values = new byte[64];
+    private int size;
+
+    @Override
+    public byte get(int row, int col) {
+        long key = key(row, col);
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; keys[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return EMPTY;
+    }
+
+    @Override
+    public void set(int row, int col, byte player) {
+        // Stones are never removed during a game, so EMPTY is only stored by clear()
+        if (player == EMPTY) {
+            return;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        insert(key(row, col), player);
+    }
+
+    @Override
+    public void clear() {
+        keys = newKeys(64);
+        values = new byte[64];
+        size = 0;
+    }
+
+    private void insert(long key, byte player) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == FREE) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = player;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        byte[] oldValues = values;
+        keys = newKeys(capacity);
+        values = new byte[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        return keys;
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.chatservice.repository;
+
+import com.example.chatservice.model.GameRecord;
+import com.example.chatservice.model.GameRules;
+import com.example.chatservice.model.HeadToHead;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Plain JDBC access to game_records and game_head_to_head; both are written
+ * in multi-row statements by GameRecordWriter.
+ */
+@Repository
+public class GameRecordRepository {
+
+    private static final String INSERT_RECORD_PREFIX =
+        "INSERT INTO game_records (game_id, player1_id, player1_name, player2_id, player2_name, board_size, "
+            + "win_length, exact_length, blocked_ends, winner, end_reason, move_count, moves, started_at, "
+            + "finished_at, duration_ms) VALUES ";
+    private static final String INSERT_RECORD_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int RECORD_COLUMNS = 16;
+    // A record retried after a failed flush may already be stored
+    private static final String INSERT_RECORD_SUFFIX = " ON DUPLICATE KEY UPDATE game_id = game_id";
+
+    private static final String ADD_HEAD_TO_HEAD_PREFIX =
+        "INSERT INTO game_head_to_head (player_low_id, player_high_id, low_wins, high_wins, draws, updated_at) VALUES ";
+    private static final String ADD_HEAD_TO_HEAD_ROW = "(?, ?, ?, ?, ?, ?)";
+    private static final String ADD_HEAD_TO_HEAD_SUFFIX =
+        " ON DUPLICATE KEY UPDATE low_wins = low_wins + VALUES(low_wins), high_wins = high_wins + VALUES(high_wins), "
+            + "draws = draws + VALUES(draws), updated_at = VALUES(updated_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public GameRecordRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertRecords(List<GameRecord> records) {
+        StringBuilder sql = new StringBuilder(INSERT_RECORD_PREFIX);
+        Object[] args = new Object[records.size() * RECORD_COLUMNS];
+        int i = 0;
+        for (GameRecord record : records) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(INSERT_RECORD_ROW);
+            GameRules rules = record.rules();
+            args[i++] = record.gameId();
+            args[i++] = record.player1Id();
+            args[i++] = record.player1Name();
+            args[i++] = record.player2Id();
+            args[i++] = record.player2Name();
+            args[i++] = rules.boardSize();
+            args[i++] = rules.winLength();
+            args[i++] = rules.exactLength();
+            args[i++] = rules.blockedEnds();
+            args[i++] = record.winner();
+            args[i++] = record.endReason();
+            args[i++] = record.moveCount();
+            args[i++] = record.moves();
+            args[i++] = new Timestamp(record.startedAt());
+            args[i++] = new Timestamp(record.finishedAt());
+            args[i++] = record.durationMs();
+        }
+        sql.append(INSERT_RECORD_SUFFIX);
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    /**
+     * Adds each row's counts to the stored score of its pair, creating the
+     * pair if it has none yet.
+     */
+    public void addHeadToHead(List<HeadToHead> deltas) {
+        StringBuilder sql = new StringBuilder(ADD_HEAD_TO_HEAD_PREFIX);
+        Object[] args = new Object[deltas.size() * 6];
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int i = 0;
+        for (HeadToHead delta : deltas) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ADD_HEAD_TO_HEAD_ROW);
+            args[i++] = delta.playerLowId();
+            args[i++] = delta.playerHighId();
+            args[i++] = delta.lowWins();
+            args[i++] = delta.highWins();
+            args[i++] = delta.draws();
+            args[i++] = now;
+        }
+        sql.append(ADD_HEAD_TO_HEAD_SUFFIX);
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    public Optional<GameRecord> findRecord(String gameId) {
+        List<GameRecord> records = jdbcTemplate.query(
+            "SELECT * FROM game_records WHERE game_id = ?", GameRecordRepository::mapRecord, gameId);
+        return records.stream().findFirst();
+    }
+
+    public Optional<HeadToHead> findHeadToHead(long playerLowId, long playerHighId) {
+        List<HeadToHead> rows = jdbcTemplate.query(
+            "SELECT player_low_id, player_high_id, low_wins, high_wins, draws FROM game_head_to_head "
+                + "WHERE player_low_id = ? AND player_high_id = ?",
+            (rs, rowNum) -> new HeadToHead(rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getInt(4), rs.getInt(5)),
+            playerLowId, playerHighId);
+        return rows.stream().findFirst();
+    }
+
+    private static GameRecord mapRecord(ResultSet rs, int rowNum) throws SQLException {
+        return new GameRecord(
+            rs.getString("game_id"),
+            rs.getLong("player1_id"),
+            rs.getString("player1_name"),
+            rs.getLong("player2_id"),
+            rs.getString("player2_name"),
+            new GameRules(rs.getInt("board_size"), rs.getInt("win_length"),
+                rs.getBoolean("exact_length"), rs.getBoolean("blocked_ends")),
+            rs.getString("winner"),
+            rs.getString("end_reason"),
+            rs.getInt("move_count"),
+            rs.getBytes("moves"),
+            rs.getTimestamp("started_at").getTime(),
+            rs.getTimestamp("finished_at").getTime()
+        );
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chatservice.repository;
+
+import com.example.chatservice.model.PlayerRating;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public class PlayerRatingRepository {
+
+    private static final String UPSERT_PREFIX =
+        "INSERT INTO player_ratings (user_id, rating, games_played, updated_at) VALUES ";
+    private static final String UPSERT_ROW = "(?, ?, ?, ?)";
+    private static final String UPSERT_SUFFIX =
+        " ON DUPLICATE KEY UPDATE rating = VALUES(rating), games_played = VALUES(games_played), "
+            + "updated_at = VALUES(updated_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PlayerRatingRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<PlayerRating> findRating(long userId) {
+        List<PlayerRating> rows = jdbcTemplate.query(
+            "SELECT user_id, rating, games_played FROM player_ratings WHERE user_id = ?",
+            (rs, rowNum) -> new PlayerRating(rs.getLong(1), rs.getInt(2), rs.getInt(3)),
+            userId);
+        return rows.stream().findFirst();
+    }
+
+    // Writes every rating in one statement
+    public void saveAll(Collection<PlayerRating> ratings) {
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX);
+        Object[] args = new Object[ratings.size() * 4];
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int i = 0;
+        for (PlayerRating rating : ratings) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(UPSERT_ROW);
+            args[i++] = rating.userId();
+            args[i++] = rating.rating();
+            args[i++] = rating.gamesPlayed();
+            args[i++] = now;
+        }
+        sql.append(UPSERT_SUFFIX);
+        jdbcTemplate.update(sql.toString(), args);
+    }
+}
@@ -0,0 +1,428 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Write-behind journal for chat messages.
+ *
+ * Messages arrive with their id already assigned, are queued in memory and
+ * persisted by a dedicated flusher thread using multi-row INSERTs. How much a
+ * caller waits depends on the durability mode:
+ * <ul>
+ *   <li>ASYNC - returns immediately; queued messages are lost if the process dies.</li>
+ *   <li>LOG - the returned future completes once the message is fsynced to a local log.
+ *       Records are written by a log writer thread that fsyncs everything appended
+ *       since its last run at once (group commit), so callers never block on the disk.
+ *       The log is replayed on startup and truncated once everything in it is in the database.</li>
+ *   <li>ACK_AFTER_FLUSH - the returned future completes only after the batch holding
+ *       the message has been committed. A message still waiting when the ack timeout
+ *       passes is counted and logged as late; it stays queued, and its future completes
+ *       once the database comes back and it has been written.</li>
+ * </ul>
+ */
+@Component
+public class ChatMessageJournal {
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageJournal.class);
+
+    private static final String INSERT_PREFIX =
+        "INSERT INTO chat_messages (id, sender_id, receiver_id, message, timestamp, is_read) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?)";
+    // Replaying the log may insert rows that already made it to the database
+    private static final String INSERT_SUFFIX = " ON DUPLICATE KEY UPDATE id = id";
+
+    public enum Durability {
+        ASYNC, LOG, ACK_AFTER_FLUSH
+    }
+
+    private record PendingMessage(ChatMessage message, CompletableFuture<ChatMessage> persisted) {}
+
+    private record LogRecord(ByteBuffer bytes, PendingMessage pending, CompletableFuture<ChatMessage> synced) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ScheduledExecutorService flusher;
+    private final ConcurrentLinkedQueue<PendingMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final Object flushLock = new Object();
+    // Batch being written; survives a failed flush so it is retried first, guarded by flushLock
+    private final List<PendingMessage> currentBatch = new ArrayList<>();
+
+    // Records waiting for the log writer; a message joins the database queue only once it is in the log
+    private final ExecutorService logWriter;
+    private final ConcurrentLinkedQueue<LogRecord> logQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean logWriteScheduled = new AtomicBoolean();
+
+    // Records in the log that have not been flushed to the database yet, guarded by logLock
+    private final Object logLock = new Object();
+    private FileChannel logChannel;
+    private long unflushedLogRecords;
+
+    private final Counter persistedCounter;
+    private final Counter failedCounter;
+    private final Counter lateAckCounter;
+    private final Timer flushTimer;
+    private final DistributionSummary logGroupSize;
+
+    @Value("${chat.journal.durability:LOG}")
+    private Durability durability;
+
+    @Value("${chat.journal.batch-size:500}")
+    private int batchSize;
+
+    @Value("${chat.journal.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${chat.journal.log-path:data/chat-journal.log}")
+    private String logPath;
+
+    @Value("${chat.journal.ack-timeout-ms:5000}")
+    private long ackTimeoutMs;
+
+    public ChatMessageJournal(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.logWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-journal-log-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.persistedCounter = Counter.builder("chat.journal.persisted").register(meterRegistry);
+        this.failedCounter = Counter.builder("chat.journal.failed").register(meterRegistry);
+        this.lateAckCounter = Counter.builder("chat.journal.ack.late")
+            .description("Messages still not stored when the ack timeout passed")
+            .register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.journal.flush").register(meterRegistry);
+        this.logGroupSize = DistributionSummary.builder("chat.journal.log.group.size")
+            .description("Records made durable by one fsync of the journal log")
+            .register(meterRegistry);
+        Gauge.builder("chat.journal.queue.depth", queueSize, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (durability == Durability.LOG) {
+            Path path = Paths.get(logPath);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            logChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            replayLog();
+            logChannel.position(logChannel.size());
+        }
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues the message for persistence. The returned future completes when the
+     * caller may deliver the message, according to the configured durability.
+     */
+    public CompletableFuture<ChatMessage> append(ChatMessage message) {
+        PendingMessage pending = new PendingMessage(message, new CompletableFuture<>());
+
+        if (durability == Durability.LOG) {
+            CompletableFuture<ChatMessage> synced = new CompletableFuture<>();
+            logQueue.add(new LogRecord(encode(message), pending, synced));
+            if (logWriteScheduled.compareAndSet(false, true)) {
+                logWriter.execute(this::writeLogGroup);
+            }
+            return synced;
+        }
+
+        enqueue(pending);
+        if (durability == Durability.ACK_AFTER_FLUSH) {
+            // The timeout is applied to a copy, so the caller's future still completes, and the
+            // message is delivered, when it is written after the database comes back
+            pending.persisted().copy().orTimeout(ackTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((stored, e) -> {
+                if (e instanceof TimeoutException) {
+                    lateAckCounter.increment();
+                    logger.warn("Chat message {} not stored after {}ms, still queued", message.getId(), ackTimeoutMs);
+                }
+            });
+            return pending.persisted();
+        }
+        return CompletableFuture.completedFuture(message);
+    }
+
+    private void enqueue(PendingMessage pending) {
+        queue.add(pending);
+        if (queueSize.incrementAndGet() >= batchSize) {
+            flusher.execute(this::flushSafely);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error flushing chat message journal: ", e);
+        }
+    }
+
+    /**
+     * Writes everything queued so far to the database. If the database cannot be
+     * reached, the current batch is kept and retried on the next run.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            int handled = 0;
+            try {
+                while (true) {
+                    PendingMessage next;
+                    while (currentBatch.size() < batchSize && (next = queue.poll()) != null) {
+                        queueSize.decrementAndGet();
+                        currentBatch.add(next);
+                    }
+                    if (currentBatch.isEmpty()) {
+                        break;
+                    }
+                    handled += persist(currentBatch);
+                    currentBatch.clear();
+                }
+            } catch (DataAccessException e) {
+                logger.warn("Could not write {} chat messages, will retry: {}", currentBatch.size(), e.getMessage());
+            }
+
+            if (handled > 0 && logChannel != null) {
+                checkpointLog(handled);
+            }
+        }
+    }
+
+    // Returns the number of messages that are done with, whether they were stored or rejected
+    private int persist(List<PendingMessage> batch) {
+        long start = System.nanoTime();
+        try {
+            insertRows(batch);
+            batch.forEach(pending -> pending.persisted().complete(pending.message()));
+            persistedCounter.increment(batch.size());
+        } catch (DataIntegrityViolationException batchError) {
+            // One bad row fails the whole statement; retry row by row so only that row is lost
+            logger.warn("Batch insert of {} messages failed, retrying individually: {}", batch.size(),
+                batchError.getMessage());
+            for (PendingMessage pending : batch) {
+                try {
+                    insertRows(List.of(pending));
+                    pending.persisted().complete(pending.message());
+                    persistedCounter.increment();
+                } catch (DataIntegrityViolationException rowError) {
+                    logger.error("Dropping chat message {} that could not be stored: ", pending.message().getId(), rowError);
+                    pending.persisted().completeExceptionally(rowError);
+                    failedCounter.increment();
+                }
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return batch.size();
+    }
+
+    private void insertRows(List<PendingMessage> rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows.size() * (INSERT_ROW.length() + 2));
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[rows.size() * 6];
+        int i = 0;
+        for (PendingMessage pending : rows) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(INSERT_ROW);
+            ChatMessage message = pending.message();
+            args[i++] = message.getId();
+            args[i++] = message.getSenderId();
+            args[i++] = message.getReceiverId();
+            args[i++] = message.getMessage();
+            args[i++] = Timestamp.valueOf(message.getTimestamp());
+            args[i++] = message.getIsRead();
+        }
+        sql.append(INSERT_SUFFIX);
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    // Record layout: int payload length, int CRC32 of the payload, payload
+    private static ByteBuffer encode(ChatMessage message) {
+        byte[] text = message.getMessage().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(8 * 4 + 4 + 1 + 4 + text.length);
+        payload.putLong(message.getId());
+        payload.putLong(message.getSenderId());
+        payload.putLong(message.getReceiverId());
+        payload.putLong(message.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+        payload.putInt(message.getTimestamp().getNano());
+        payload.put((byte) (Boolean.TRUE.equals(message.getIsRead()) ? 1 : 0));
+        payload.putInt(text.length);
+        payload.put(text);
+        payload.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.remaining());
+        record.putInt(payload.remaining());
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+        return record;
+    }
+
+    // Writes every record appended since the last run and makes them durable with a single fsync
+    private void writeLogGroup() {
+        logWriteScheduled.set(false);
+        List<LogRecord> group = new ArrayList<>();
+        LogRecord next;
+        while ((next = logQueue.poll()) != null) {
+            group.add(next);
+        }
+        if (group.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[group.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = group.get(i).bytes();
+            remaining += buffers[i].remaining();
+        }
+        try {
+            synchronized (logLock) {
+                while (remaining > 0) {
+                    remaining -= logChannel.write(buffers);
+                }
+                logChannel.force(false);
+                unflushedLogRecords += group.size();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to append {} messages to the journal log: ", group.size(), e);
+            group.forEach(record -> record.synced().completeExceptionally(e));
+            return;
+        }
+
+        logGroupSize.record(group.size());
+        for (LogRecord record : group) {
+            enqueue(record.pending());
+            record.synced().complete(record.pending().message());
+        }
+    }
+
+    private void checkpointLog(int handled) {
+        synchronized (logLock) {
+            unflushedLogRecords -= handled;
+            if (unflushedLogRecords <= 0) {
+                // Everything in the log is in the database, start it over
+                unflushedLogRecords = 0;
+                try {
+                    logChannel.truncate(0);
+                    logChannel.position(0);
+                } catch (IOException e) {
+                    logger.error("Failed to truncate the chat journal log: ", e);
+                }
+            }
+        }
+    }
+
+    private void replayLog() throws IOException {
+        long size = logChannel.size();
+        if (size == 0) {
+            return;
+        }
+
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+        logChannel.position(0);
+        while (data.hasRemaining() && logChannel.read(data) >= 0) {
+            // keep reading
+        }
+        data.flip();
+
+        int replayed = 0;
+        long validEnd = 0;
+        while (data.remaining() >= 8) {
+            int length = data.getInt();
+            int expectedCrc = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                break; // torn write at the tail
+            }
+            ByteBuffer payload = data.slice(data.position(), length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+            data.position(data.position() + length);
+            validEnd = data.position();
+
+            ChatMessage message = new ChatMessage();
+            message.setId(payload.getLong());
+            message.setSenderId(payload.getLong());
+            message.setReceiverId(payload.getLong());
+            long epochSecond = payload.getLong();
+            message.setTimestamp(LocalDateTime.ofEpochSecond(epochSecond, payload.getInt(), ZoneOffset.UTC));
+            message.setIsRead(payload.get() == 1);
+            byte[] text = new byte[payload.getInt()];
+            payload.get(text);
+            message.setMessage(new String(text, StandardCharsets.UTF_8));
+
+            queue.add(new PendingMessage(message, new CompletableFuture<>()));
+            queueSize.incrementAndGet();
+            replayed++;
+        }
+
+        logger.info("Replaying {} chat messages from the journal log", replayed);
+        synchronized (logLock) {
+            // Drop a torn record at the tail so new records are not appended after it
+            logChannel.truncate(validEnd);
+            unflushedLogRecords = replayed;
+        }
+        flush();
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        logWriter.shutdown();
+        logWriter.awaitTermination(5, TimeUnit.SECONDS);
+        flusher.shutdown();
+        flush();
+        if (logChannel != null) {
+            logChannel.close();
+        }
+    }
+}
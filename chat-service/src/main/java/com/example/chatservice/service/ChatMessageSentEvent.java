@@ -0,0 +1,10 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.ChatMessage;
+
+/**
+ * Published by {@link ChatService} once the journal has accepted a message
+ * sent through this node, so other nodes can update their caches.
+ */
+public record ChatMessageSentEvent(ChatMessage message) {
+}
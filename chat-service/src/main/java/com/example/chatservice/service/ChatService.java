@@ -1,30 +1,146 @@
 package com.example.chatservice.service;
 
+import com.example.chatservice.dto.MessagePage;
+import com.example.chatservice.dto.UnreadCounts;
 import com.example.chatservice.model.ChatMessage;
 import com.example.chatservice.repository.ChatMessageRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class ChatService {
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageJournal chatMessageJournal;
+    private final MessageIdGenerator messageIdGenerator;
+    private final ConversationCache conversationCache;
+    private final UnreadStateService unreadStateService;
+    private final ReadReceiptAggregator readReceiptAggregator;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public ChatService(ChatMessageRepository chatMessageRepository) {
+    public ChatService(ChatMessageRepository chatMessageRepository, ChatMessageJournal chatMessageJournal,
+                       MessageIdGenerator messageIdGenerator, ConversationCache conversationCache,
+                       UnreadStateService unreadStateService, ReadReceiptAggregator readReceiptAggregator,
+                       ApplicationEventPublisher eventPublisher) {
         this.chatMessageRepository = chatMessageRepository;
+        this.chatMessageJournal = chatMessageJournal;
+        this.messageIdGenerator = messageIdGenerator;
+        this.conversationCache = conversationCache;
+        this.unreadStateService = unreadStateService;
+        this.readReceiptAggregator = readReceiptAggregator;
+        this.eventPublisher = eventPublisher;
     }
 
-    public ChatMessage saveMessage(Long senderId, Long receiverId, String message) {
+    /**
+     * Assigns the message its id and hands it to the write-behind journal. The
+     * future completes once the message may be delivered, which depending on the
+     * journal's durability mode is right away or after it has been stored.
+     * It is then published as a {@link ChatMessageSentEvent} for the other nodes.
+     */
+    public CompletableFuture<ChatMessage> saveMessage(Long senderId, Long receiverId, String message) {
         ChatMessage chatMessage = new ChatMessage(senderId, receiverId, message);
-        return chatMessageRepository.save(chatMessage);
+        chatMessage.setId(messageIdGenerator.nextId());
+        conversationCache.append(chatMessage);
+        return chatMessageJournal.append(chatMessage)
+            .thenApply(saved -> {
+                unreadStateService.recordSent(saved);
+                eventPublisher.publishEvent(new ChatMessageSentEvent(saved));
+                return saved;
+            });
     }
 
-    public List<ChatMessage> getMessagesForUser(Long userId, Long otherUserId) {
-        return chatMessageRepository.findMessagesBetweenUsers(userId, otherUserId);
+    /**
+     * Applies a message another node has sent to this node's conversation
+     * cache and unread counts, as if it had been sent here.
+     */
+    public void applyRemoteMessage(ChatMessage message) {
+        conversationCache.append(message);
+        unreadStateService.recordSent(message);
     }
 
-    public void markMessagesAsRead(Long senderId, Long receiverId) {
-        chatMessageRepository.markMessagesAsRead(senderId, receiverId);
+    /**
+     * Messages between the two users at or after {@code since}, served from the
+     * conversation cache when it covers that window.
+     */
+    public List<ChatMessage> getRecentMessages(Long userId1, Long userId2, LocalDateTime since) {
+        List<ChatMessage> cached = conversationCache.getMessagesSince(userId1, userId2, since);
+        if (cached != null) {
+            return cached;
+        }
+        List<ChatMessage> fromDatabase = chatMessageRepository.findMessagesBetweenUsersAfterTimestamp(
+            userId1, userId2, since);
+        return conversationCache.hydrate(userId1, userId2, since, fromDatabase);
+    }
+
+    /**
+     * One page of the conversation, newest first among messages with an id
+     * below {@code beforeId} (or the latest messages when null), returned in
+     * send order. Messages still waiting in the write-behind journal are merged
+     * in from the conversation cache so a fresh page is never missing them.
+     */
+    public MessagePage getMessagePage(Long userId1, Long userId2, Long beforeId, int limit) {
+        long before = beforeId != null ? beforeId : Long.MAX_VALUE;
+        List<ChatMessage> fromDatabase = chatMessageRepository.findConversationPageBefore(
+            Math.min(userId1, userId2), Math.max(userId1, userId2), before, Limit.of(limit));
+
+        TreeMap<Long, ChatMessage> byId = new TreeMap<>(Comparator.reverseOrder());
+        for (ChatMessage message : fromDatabase) {
+            byId.put(message.getId(), message);
+        }
+        for (ChatMessage message : conversationCache.getBufferedMessages(userId1, userId2)) {
+            if (message.getId() < before) {
+                byId.putIfAbsent(message.getId(), message);
+            }
+        }
+
+        List<ChatMessage> page = new ArrayList<>(limit);
+        for (ChatMessage message : byId.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(message);
+        }
+        Collections.reverse(page);
+
+        // A short page means we reached the start of the conversation
+        Long nextCursor = page.size() == limit ? page.get(0).getId() : null;
+        return new MessagePage(page, nextCursor);
+    }
+
+    /**
+     * Marks the sender's messages to the receiver as read up to and including
+     * {@code upToId}, or all of them when null. The database is updated in the
+     * background; marking what was already read again does nothing.
+     */
+    public void markMessagesAsRead(Long senderId, Long receiverId, Long upToId) {
+        Long readUpTo = readReceiptAggregator.markRead(senderId, receiverId, upToId);
+        if (readUpTo == null) {
+            return;
+        }
+        conversationCache.markRead(senderId, receiverId, readUpTo);
+        unreadStateService.markRead(receiverId, senderId);
+    }
+
+    /**
+     * Applies a read mark made on another node to this node's caches. The
+     * node the mark was made on writes it to the database.
+     */
+    public void applyRemoteRead(Long senderId, Long receiverId, long readUpTo) {
+        conversationCache.markRead(senderId, receiverId, readUpTo);
+        unreadStateService.markRead(receiverId, senderId);
+    }
+
+    // Served from memory once the user's counts have been loaded
+    public UnreadCounts getUnreadCounts(Long userId) {
+        return unreadStateService.getUnreadCounts(userId);
     }
 
     public List<ChatMessage> getUnreadMessages(Long receiverId) {
@@ -0,0 +1,250 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the most recent messages of active conversations in memory.
+ *
+ * Each conversation (an unordered pair of users) holds a ring buffer of its
+ * latest messages, filled as messages are written on this node or relayed
+ * from the others. Relayed messages can arrive after newer local ones, so the
+ * ring is kept in send order as messages are added. Conversations are evicted
+ * least recently used first once the cache holds too many.
+ *
+ * A ring only answers a "messages since T" read once it is known to hold every
+ * message from T on: after it has been hydrated from the database for a window
+ * starting at or before T, and as long as no message at or after T has been
+ * pushed out of the ring since.
+ */
+@Component
+public class ConversationCache {
+
+    // Rough per-message overhead of the entity, its boxed fields and the timestamp
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+    private static final Comparator<ChatMessage> SEND_ORDER =
+        Comparator.comparing(ChatMessage::getTimestamp).thenComparing(ChatMessage::getId);
+
+    private record ConversationKey(long lowUserId, long highUserId) {
+        static ConversationKey of(Long userId1, Long userId2) {
+            return userId1 <= userId2
+                ? new ConversationKey(userId1, userId2)
+                : new ConversationKey(userId2, userId1);
+        }
+    }
+
+    private static class Conversation {
+        final ChatMessage[] ring;
+        int head; // index of the oldest message
+        int size;
+        LocalDateTime hydratedFrom; // null until loaded from the database
+        LocalDateTime evictedUpTo;  // timestamp of the newest message pushed out of the ring
+        long estimatedBytes;
+
+        Conversation(int capacity) {
+            this.ring = new ChatMessage[capacity];
+        }
+
+        void add(ChatMessage message) {
+            if (size == ring.length) {
+                ChatMessage evicted = ring[head];
+                estimatedBytes -= estimateBytes(evicted);
+                if (evictedUpTo == null || evicted.getTimestamp().isAfter(evictedUpTo)) {
+                    evictedUpTo = evicted.getTimestamp();
+                }
+                ring[head] = message;
+                head = (head + 1) % ring.length;
+            } else {
+                ring[(head + size) % ring.length] = message;
+                size++;
+            }
+            estimatedBytes += estimateBytes(message);
+            // Usually already in place; a late message moves back past the newer ones
+            for (int i = size - 1; i > 0; i--) {
+                int current = (head + i) % ring.length;
+                int previous = (head + i - 1) % ring.length;
+                if (SEND_ORDER.compare(ring[previous], ring[current]) <= 0) {
+                    break;
+                }
+                ChatMessage swap = ring[previous];
+                ring[previous] = ring[current];
+                ring[current] = swap;
+            }
+        }
+
+        boolean contains(Long id) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (ring[(head + i) % ring.length].getId().equals(id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        List<ChatMessage> messages() {
+            List<ChatMessage> messages = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                messages.add(ring[(head + i) % ring.length]);
+            }
+            return messages;
+        }
+
+        boolean covers(LocalDateTime since) {
+            return hydratedFrom != null && !since.isBefore(hydratedFrom)
+                && (evictedUpTo == null || since.isAfter(evictedUpTo));
+        }
+    }
+
+    private final int messagesPerConversation;
+    private final Map<ConversationKey, Conversation> conversations;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public ConversationCache(MeterRegistry meterRegistry,
+                             @Value("${chat.history.cache.max-conversations:10000}") int maxConversations,
+                             @Value("${chat.history.cache.messages-per-conversation:100}") int messagesPerConversation) {
+        this.messagesPerConversation = messagesPerConversation;
+        // Access-ordered so the least recently used conversation is evicted first
+        this.conversations = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ConversationKey, Conversation> eldest) {
+                return size() > maxConversations;
+            }
+        };
+
+        this.hits = Counter.builder("chat.history.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat.history.cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("chat.history.cache.conversations", this, ConversationCache::conversationCount)
+            .register(meterRegistry);
+        Gauge.builder("chat.history.cache.messages", this, ConversationCache::messageCount)
+            .register(meterRegistry);
+        Gauge.builder("chat.history.cache.estimated.bytes", this, ConversationCache::estimatedBytes)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    public synchronized void append(ChatMessage message) {
+        ConversationKey key = ConversationKey.of(message.getSenderId(), message.getReceiverId());
+        Conversation conversation = conversations.computeIfAbsent(key, k -> new Conversation(messagesPerConversation));
+        // A relayed message may already have been hydrated from the database
+        if (!conversation.contains(message.getId())) {
+            conversation.add(message);
+        }
+    }
+
+    /**
+     * Returns whatever the conversation's ring currently holds, oldest first,
+     * without any coverage guarantee. Used to overlay messages that may not
+     * have reached the database yet.
+     */
+    public synchronized List<ChatMessage> getBufferedMessages(Long userId1, Long userId2) {
+        Conversation conversation = conversations.get(ConversationKey.of(userId1, userId2));
+        return conversation != null ? conversation.messages() : List.of();
+    }
+
+    /**
+     * Returns the conversation's messages at or after {@code since} in send
+     * order, or null if the cache cannot answer for that window.
+     */
+    public synchronized List<ChatMessage> getMessagesSince(Long userId1, Long userId2, LocalDateTime since) {
+        Conversation conversation = conversations.get(ConversationKey.of(userId1, userId2));
+        if (conversation == null || !conversation.covers(since)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return filterSince(conversation.messages(), since);
+    }
+
+    /**
+     * Seeds the conversation with messages loaded from the database for the window
+     * starting at {@code since}, merged with whatever was written meanwhile, and
+     * returns the merged messages in that window.
+     */
+    public synchronized List<ChatMessage> hydrate(Long userId1, Long userId2, LocalDateTime since,
+                                                  List<ChatMessage> fromDatabase) {
+        ConversationKey key = ConversationKey.of(userId1, userId2);
+        Conversation existing = conversations.get(key);
+
+        Map<Long, ChatMessage> merged = new LinkedHashMap<>();
+        fromDatabase.forEach(message -> merged.put(message.getId(), message));
+        if (existing != null) {
+            // Messages still waiting in the write-behind journal are only in the ring
+            existing.messages().forEach(message -> merged.put(message.getId(), message));
+        }
+        List<ChatMessage> ordered = new ArrayList<>(merged.values());
+        ordered.sort(SEND_ORDER);
+
+        Conversation conversation = new Conversation(messagesPerConversation);
+        ordered.forEach(conversation::add);
+        conversation.hydratedFrom = since;
+        if (existing != null && existing.hydratedFrom != null && existing.hydratedFrom.isBefore(since)
+                && existing.evictedUpTo == null) {
+            conversation.hydratedFrom = existing.hydratedFrom;
+        }
+        conversations.put(key, conversation);
+
+        return filterSince(ordered, since);
+    }
+
+    /**
+     * Mirrors a read receipt onto cached messages so reads served from memory see it.
+     */
+    public synchronized void markRead(Long senderId, Long receiverId, long upToId) {
+        Conversation conversation = conversations.get(ConversationKey.of(senderId, receiverId));
+        if (conversation != null) {
+            for (ChatMessage message : conversation.messages()) {
+                if (message.getSenderId().equals(senderId) && message.getReceiverId().equals(receiverId)
+                        && message.getId() <= upToId) {
+                    message.setIsRead(true);
+                }
+            }
+        }
+    }
+
+    private static List<ChatMessage> filterSince(List<ChatMessage> messages, LocalDateTime since) {
+        List<ChatMessage> result = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            if (!message.getTimestamp().isBefore(since)) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    private static long estimateBytes(ChatMessage message) {
+        return MESSAGE_OVERHEAD_BYTES + 2L * message.getMessage().length();
+    }
+
+    private synchronized int conversationCount() {
+        return conversations.size();
+    }
+
+    private synchronized long messageCount() {
+        long count = 0;
+        for (Conversation conversation : conversations.values()) {
+            count += conversation.size;
+        }
+        return count;
+    }
+
+    private synchronized long estimatedBytes() {
+        long bytes = 0;
+        for (Conversation conversation : conversations.values()) {
+            bytes += conversation.estimatedBytes;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.chatservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs game commands one at a time per game.
+ *
+ * Every game gets a mailbox; commands for the same game run in submission
+ * order and never overlap, while mailboxes of different games are drained in
+ * parallel on a shared pool. No lock is held across games, and a mailbox is
+ * dropped as soon as it runs empty, so idle games cost nothing here.
+ */
+@Component
+public class GameCommandExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(GameCommandExecutor.class);
+
+    private final ExecutorService pool;
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    public GameCommandExecutor(MeterRegistry meterRegistry,
+                               @Value("${chat.game.executor-threads:0}") int threads) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "game-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("chat.game.mailboxes", mailboxes, Map::size)
+            .description("Games with commands queued or running")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Queues a command for the game. It runs after every command previously
+     * submitted for the same game has finished.
+     */
+    public void execute(String gameId, Runnable command) {
+        // Enqueue inside compute so it cannot race with the mailbox being dropped
+        Mailbox[] scheduled = new Mailbox[1];
+        mailboxes.compute(gameId, (id, mailbox) -> {
+            Mailbox target = mailbox != null ? mailbox : new Mailbox(id);
+            if (target.enqueue(command)) {
+                scheduled[0] = target;
+            }
+            return target;
+        });
+        if (scheduled[0] != null) {
+            pool.execute(scheduled[0]);
+        }
+    }
+
+    private final class Mailbox implements Runnable {
+        private final String gameId;
+        private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        Mailbox(String gameId) {
+            this.gameId = gameId;
+        }
+
+        // Returns true when the mailbox was idle and needs a drain scheduled
+        boolean enqueue(Runnable command) {
+            commands.add(command);
+            return pending.getAndIncrement() == 0;
+        }
+
+        @Override
+        public void run() {
+            do {
+                Runnable command = commands.poll();
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    logger.error("Error running command for game {}: ", gameId, e);
+                }
+            } while (pending.decrementAndGet() > 0);
+
+            mailboxes.computeIfPresent(gameId, (id, mailbox) ->
+                mailbox == this && pending.get() == 0 ? null : mailbox);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.CaroGame;
+
+/**
+ * Published by {@link GameLifecycleManager} after a game has been evicted, so
+ * both players can be told.
+ */
+public record GameExpiredEvent(CaroGame game, Reason reason) {
+
+    public enum Reason {
+        INVITATION_EXPIRED,
+        IDLE_TIMEOUT,
+        RETENTION_ENDED
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.CaroGame;
+import com.example.chatservice.model.GameRecord;
+import com.example.chatservice.model.HeadToHead;
+import com.example.chatservice.repository.GameRecordRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Finished games and the head-to-head score of every player pair.
+ *
+ * The score a pair has built up is read from the database once, the first
+ * time the pair plays after a restart (or after falling out of the cache),
+ * and kept in memory from then on: a game end updates the cached score and
+ * queues the record on GameRecordWriter, which applies the same increment to
+ * the stored score in the background.
+ *
+ * Game lanes never wait for the database. Scores are prefetched when an
+ * invitation is sent, and a score that is not cached is loaded on a single
+ * loader thread; callers get a future that is already complete on a hit.
+ * Loading flushes the writer first, so the stored score includes every
+ * queued game, and loads and cache-miss game ends for a pair run in order
+ * on that one thread.
+ */
+@Service
+public class GameHistoryService {
+    private static final Logger logger = LoggerFactory.getLogger(GameHistoryService.class);
+
+    private final GameRecordRepository repository;
+    private final GameRecordWriter writer;
+    private final RatingService ratingService;
+    private final Map<List<Long>, HeadToHead> headToHeadCache;
+    private final ExecutorService loader;
+
+    public GameHistoryService(GameRecordRepository repository, GameRecordWriter writer, RatingService ratingService,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat.game.head-to-head.cache.max-pairs:10000}") int maxPairs) {
+        this.repository = repository;
+        this.writer = writer;
+        this.ratingService = ratingService;
+        // Access-ordered so the least recently used pair is evicted first
+        this.headToHeadCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Long>, HeadToHead> eldest) {
+                return size() > maxPairs;
+            }
+        };
+
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "head-to-head-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("chat.game.head-to-head.cached", this, GameHistoryService::cachedPairCount)
+            .description("Player pairs whose head-to-head score is held in memory")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Starts loading the pair's head-to-head score unless it is cached, so it
+     * is ready by the time their game starts.
+     */
+    public void prefetch(Long userId1, Long userId2) {
+        List<Long> key = pairKey(userId1, userId2);
+        if (cached(key) == null) {
+            loader.execute(() -> cachedOrLoaded(key));
+        }
+    }
+
+    /**
+     * The players' head-to-head score, oriented to the game's player1 and
+     * player2. Already complete when the score is cached; otherwise completes
+     * on the loader thread, with an empty score if it cannot be loaded.
+     */
+    public CompletableFuture<Map<String, Integer>> getScoreboard(CaroGame game) {
+        Long player1Id = game.getPlayer1().getId();
+        Long player2Id = game.getPlayer2().getId();
+        List<Long> key = pairKey(player1Id, player2Id);
+        HeadToHead cached = cached(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.toScoreboard(player1Id));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            HeadToHead loaded = cachedOrLoaded(key);
+            return (loaded != null ? loaded : HeadToHead.empty(player1Id, player2Id)).toScoreboard(player1Id);
+        }, loader);
+    }
+
+    /**
+     * The cached head-to-head score oriented to the game, or null while it is
+     * not cached, in which case it is loaded in the background.
+     */
+    public Map<String, Integer> getCachedScoreboard(CaroGame game) {
+        return getScoreboard(game).getNow(null);
+    }
+
+    /**
+     * Stores the finished game and counts its result towards the players'
+     * head-to-head score and ratings. Completes with the updated head-to-head
+     * score, oriented to the game: right away when the score is cached,
+     * otherwise on the loader thread once it has been loaded.
+     */
+    public CompletableFuture<Map<String, Integer>> recordFinishedGame(CaroGame game, String endReason) {
+        ratingService.recordResult(game);
+        GameRecord record = GameRecord.of(game, endReason);
+        List<Long> key = pairKey(record.player1Id(), record.player2Id());
+        synchronized (this) {
+            HeadToHead cached = headToHeadCache.get(key);
+            if (cached != null) {
+                HeadToHead updated = cached.plus(record.winnerId());
+                headToHeadCache.put(key, updated);
+                // Queued under the lock, so a load after an eviction cannot miss both the cache and the record
+                writer.append(record);
+                return CompletableFuture.completedFuture(updated.toScoreboard(record.player1Id()));
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> recordAfterLoad(key, record), loader);
+    }
+
+    // Runs on the loader thread, after any earlier load of the pair
+    private Map<String, Integer> recordAfterLoad(List<Long> key, GameRecord record) {
+        // Loaded before the record is queued, so a load from the database does not count it already
+        HeadToHead loaded = cachedOrLoaded(key);
+        if (loaded == null) {
+            writer.append(record);
+            // The stored score is still updated by the writer; only this reply lacks the history
+            return HeadToHead.empty(record.player1Id(), record.player2Id()).plus(record.winnerId())
+                .toScoreboard(record.player1Id());
+        }
+
+        HeadToHead updated;
+        synchronized (this) {
+            // A game between the pair may have ended on a cache hit since the load
+            updated = headToHeadCache.getOrDefault(key, loaded).plus(record.winnerId());
+            headToHeadCache.put(key, updated);
+            writer.append(record);
+        }
+        return updated.toScoreboard(record.player1Id());
+    }
+
+    /**
+     * The pair's score, loaded from the database if it is not cached. Blocks,
+     * so it is for request threads, never a game lane.
+     */
+    public HeadToHead getHeadToHead(Long userId1, Long userId2) {
+        HeadToHead headToHead = cachedOrLoaded(pairKey(userId1, userId2));
+        return headToHead != null ? headToHead : HeadToHead.empty(userId1, userId2);
+    }
+
+    private synchronized HeadToHead cached(List<Long> key) {
+        return headToHeadCache.get(key);
+    }
+
+    // Null if the score is not cached and cannot be loaded
+    private HeadToHead cachedOrLoaded(List<Long> key) {
+        HeadToHead cached = cached(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        HeadToHead stored;
+        try {
+            // Queued games are not in the stored score yet
+            writer.flush();
+            stored = repository.findHeadToHead(key.get(0), key.get(1))
+                .orElseGet(() -> HeadToHead.empty(key.get(0), key.get(1)));
+        } catch (DataAccessException e) {
+            logger.warn("Could not load head-to-head score of users {} and {}: {}", key.get(0), key.get(1),
+                e.getMessage());
+            return null;
+        }
+
+        synchronized (this) {
+            return headToHeadCache.computeIfAbsent(key, k -> stored);
+        }
+    }
+
+    /**
+     * The finished game, whether it has been written yet or is still queued.
+     */
+    public Optional<GameRecord> findRecord(String gameId) {
+        GameRecord pending = writer.findPending(gameId);
+        return pending != null ? Optional.of(pending) : repository.findRecord(gameId);
+    }
+
+    private static List<Long> pairKey(Long userId1, Long userId2) {
+        return List.of(Math.min(userId1, userId2), Math.max(userId1, userId2));
+    }
+
+    private synchronized int cachedPairCount() {
+        return headToHeadCache.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdown();
+    }
+}
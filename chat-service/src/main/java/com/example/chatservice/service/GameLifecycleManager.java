@@ -0,0 +1,121 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.CaroGame;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evicts games that are no longer going anywhere, so {@link GameService}'s
+ * maps stay bounded by the games actually in use.
+ *
+ * Each state has its own time to live, counted from the game's last activity:
+ * unanswered invitations expire, games nobody has moved in are abandoned, and
+ * finished games are kept only long enough for a rematch. A sweeper runs at a
+ * fixed interval; the eviction itself runs on the game's command lane so it
+ * cannot race a move, and a {@link GameExpiredEvent} is published so both
+ * players are told.
+ */
+@Component
+public class GameLifecycleManager {
+    private static final Logger logger = LoggerFactory.getLogger(GameLifecycleManager.class);
+
+    private final GameService gameService;
+    private final GameCommandExecutor gameCommandExecutor;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScheduledExecutorService sweeper;
+
+    private final long invitationTtlMs;
+    private final long idleTimeoutMs;
+    private final long finishedRetentionMs;
+
+    public GameLifecycleManager(GameService gameService, GameCommandExecutor gameCommandExecutor,
+                                ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+                                @Value("${chat.game.invitation-ttl-ms:60000}") long invitationTtlMs,
+                                @Value("${chat.game.idle-timeout-ms:1800000}") long idleTimeoutMs,
+                                @Value("${chat.game.finished-retention-ms:300000}") long finishedRetentionMs,
+                                @Value("${chat.game.sweep-interval-ms:5000}") long sweepIntervalMs) {
+        this.gameService = gameService;
+        this.gameCommandExecutor = gameCommandExecutor;
+        this.eventPublisher = eventPublisher;
+        this.invitationTtlMs = invitationTtlMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.finishedRetentionMs = finishedRetentionMs;
+
+        Gauge.builder("chat.game.active", gameService, GameService::getActiveGameCount)
+            .description("Games held in memory, in any state")
+            .register(meterRegistry);
+        Gauge.builder("chat.game.invitations.pending", gameService, GameService::getPendingInvitationCount)
+            .description("Invitations waiting for an answer")
+            .register(meterRegistry);
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            for (CaroGame game : gameService.getActiveGames()) {
+                if (expiryReason(game, now) != null) {
+                    String gameId = game.getGameId();
+                    gameCommandExecutor.execute(gameId, () -> expire(gameId));
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error sweeping games: ", e);
+        }
+    }
+
+    // Runs on the game's lane; the game may have moved on since the sweep saw it
+    private void expire(String gameId) {
+        CaroGame game = gameService.getGame(gameId);
+        if (game == null) {
+            return;
+        }
+        GameExpiredEvent.Reason reason = expiryReason(game, System.currentTimeMillis());
+        if (reason == null) {
+            return;
+        }
+
+        if (reason == GameExpiredEvent.Reason.IDLE_TIMEOUT) {
+            game.setStatus(CaroGame.GameStatus.FINISHED);
+        }
+        gameService.removeGame(gameId);
+        eventPublisher.publishEvent(new GameExpiredEvent(game, reason));
+
+        logger.info("Game {} evicted: {}", gameId, reason);
+    }
+
+    private GameExpiredEvent.Reason expiryReason(CaroGame game, long now) {
+        long idle = now - game.getLastActivityAt();
+        switch (game.getStatus()) {
+            case WAITING:
+                return idle > invitationTtlMs ? GameExpiredEvent.Reason.INVITATION_EXPIRED : null;
+            case PLAYING:
+                return idle > idleTimeoutMs ? GameExpiredEvent.Reason.IDLE_TIMEOUT : null;
+            case FINISHED:
+                return idle > finishedRetentionMs ? GameExpiredEvent.Reason.RETENTION_ENDED : null;
+            default:
+                return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdown();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.GameRecord;
+import com.example.chatservice.model.HeadToHead;
+import com.example.chatservice.repository.GameRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind queue for finished games.
+ *
+ * Records are queued by the game lane that finished the game and written by
+ * a single flusher thread in multi-row INSERTs, together with the matching
+ * head-to-head increments aggregated per player pair. A batch that fails
+ * because the database is unreachable is kept and retried on the next run.
+ * Queued records are lost if the process dies before they are flushed.
+ */
+@Component
+public class GameRecordWriter {
+    private static final Logger logger = LoggerFactory.getLogger(GameRecordWriter.class);
+
+    private final GameRecordRepository repository;
+    private final ScheduledExecutorService flusher;
+    private final ConcurrentLinkedQueue<GameRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final Object flushLock = new Object();
+    // Batch being written; survives a failed flush so it is retried first, guarded by flushLock
+    private final List<GameRecord> currentBatch = new ArrayList<>();
+    private final int batchSize;
+
+    private final Counter persistedCounter;
+    private final Counter failedCounter;
+    private final Timer flushTimer;
+
+    public GameRecordWriter(GameRecordRepository repository, MeterRegistry meterRegistry,
+                            @Value("${chat.game.records.batch-size:100}") int batchSize,
+                            @Value("${chat.game.records.flush-interval-ms:500}") long flushIntervalMs) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-record-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.persistedCounter = Counter.builder("chat.game.records.persisted").register(meterRegistry);
+        this.failedCounter = Counter.builder("chat.game.records.failed").register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.game.records.flush").register(meterRegistry);
+        Gauge.builder("chat.game.records.queue.depth", queueSize, AtomicInteger::get).register(meterRegistry);
+
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void append(GameRecord record) {
+        queue.add(record);
+        if (queueSize.incrementAndGet() >= batchSize) {
+            flusher.execute(this::flushSafely);
+        }
+    }
+
+    /**
+     * A record that is queued but not yet written, or null.
+     */
+    public GameRecord findPending(String gameId) {
+        for (GameRecord record : queue) {
+            if (record.gameId().equals(gameId)) {
+                return record;
+            }
+        }
+        synchronized (flushLock) {
+            for (GameRecord record : currentBatch) {
+                if (record.gameId().equals(gameId)) {
+                    return record;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error flushing game records: ", e);
+        }
+    }
+
+    /**
+     * Writes everything queued so far to the database. If the database cannot be
+     * reached, the current batch is kept and retried on the next run.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            try {
+                while (true) {
+                    GameRecord next;
+                    while (currentBatch.size() < batchSize && (next = queue.poll()) != null) {
+                        queueSize.decrementAndGet();
+                        currentBatch.add(next);
+                    }
+                    if (currentBatch.isEmpty()) {
+                        break;
+                    }
+                    persist(currentBatch);
+                    currentBatch.clear();
+                }
+            } catch (DataAccessException e) {
+                logger.warn("Could not write {} game records, will retry: {}", currentBatch.size(), e.getMessage());
+            }
+        }
+    }
+
+    private void persist(List<GameRecord> batch) {
+        long start = System.nanoTime();
+        try {
+            List<GameRecord> stored = insertRecords(batch);
+            if (!stored.isEmpty()) {
+                repository.addHeadToHead(headToHeadDeltas(stored));
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Returns the records that were stored
+    private List<GameRecord> insertRecords(List<GameRecord> batch) {
+        try {
+            repository.insertRecords(batch);
+            persistedCounter.increment(batch.size());
+            return batch;
+        } catch (DataIntegrityViolationException batchError) {
+            // One bad row fails the whole statement; retry row by row so only that row is lost
+            logger.warn("Batch insert of {} game records failed, retrying individually: {}", batch.size(),
+                batchError.getMessage());
+            List<GameRecord> stored = new ArrayList<>(batch.size());
+            for (GameRecord record : batch) {
+                try {
+                    repository.insertRecords(List.of(record));
+                    stored.add(record);
+                    persistedCounter.increment();
+                } catch (DataIntegrityViolationException rowError) {
+                    logger.error("Dropping game record {} that could not be stored: ", record.gameId(), rowError);
+                    failedCounter.increment();
+                }
+            }
+            return stored;
+        }
+    }
+
+    // One increment row per player pair, however many of its games are in the batch
+    private static List<HeadToHead> headToHeadDeltas(List<GameRecord> records) {
+        Map<List<Long>, HeadToHead> deltas = new LinkedHashMap<>();
+        for (GameRecord record : records) {
+            HeadToHead empty = HeadToHead.empty(record.player1Id(), record.player2Id());
+            deltas.merge(List.of(empty.playerLowId(), empty.playerHighId()), empty.plus(record.winnerId()),
+                (current, added) -> current.plus(record.winnerId()));
+        }
+        return new ArrayList<>(deltas.values());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+}
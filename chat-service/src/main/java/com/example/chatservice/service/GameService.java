@@ -2,14 +2,23 @@ package com.example.chatservice.service;
 
 import com.example.chatservice.model.CaroGame;
 import com.example.chatservice.model.GamePlayer;
+import com.example.chatservice.model.GameRules;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+// CaroGame is not thread-safe: commands for one game must run on its lane in GameCommandExecutor
 @Service
 public class GameService {
     
+    // Player id of the computer opponent in single-player games
+    public static final Long AI_PLAYER_ID = -1L;
+    public static final String AI_PLAYER_NAME = "Computer";
+    
     // Store active games by gameId
     private final Map<String, CaroGame> activeGames = new ConcurrentHashMap<>();
     
@@ -19,12 +28,30 @@ public class GameService {
     // Store user's current game (userId -> gameId)
     private final Map<Long, String> userCurrentGame = new ConcurrentHashMap<>();
     
+    // Players who asked for a rematch (gameId -> userIds)
+    private final Map<String, Set<Long>> playAgainRequests = new ConcurrentHashMap<>();
+    
+    // Games live on the node that created them; their ids start with "n<nodeId>-" so any node can route to it
+    private final int nodeId;
+    private final String gameIdPrefix;
+    
+    public GameService(@Value("${chat.node-id:0}") int nodeId) {
+        this.nodeId = nodeId;
+        this.gameIdPrefix = "n" + nodeId + "-";
+    }
+    
     public CaroGame createGameInvitation(Long inviterUserId, String inviterName, Long invitedUserId, String invitedName) {
+        return createGameInvitation(inviterUserId, inviterName, invitedUserId, invitedName, GameRules.standard());
+    }
+    
+    public CaroGame createGameInvitation(Long inviterUserId, String inviterName, Long invitedUserId, String invitedName,
+                                         GameRules rules) {
         // Create new game
         GamePlayer player1 = new GamePlayer(inviterUserId, inviterName, "X");
         GamePlayer player2 = new GamePlayer(invitedUserId, invitedName, "O");
         
-        CaroGame game = new CaroGame(player1, player2);
+        CaroGame game = new CaroGame(player1, player2, rules);
+        game.setGameId(gameIdPrefix + game.getGameId());
         game.setStatus(CaroGame.GameStatus.WAITING);
         
         // Store invitation
@@ -34,6 +61,48 @@ public class GameService {
         return game;
     }
     
+    /**
+     * Starts a single-player game against the computer. The user plays X and
+     * moves first; there is no invitation step.
+     */
+    public CaroGame createAiGame(Long userId, String userName, GameRules rules) {
+        GamePlayer player1 = new GamePlayer(userId, userName, "X");
+        GamePlayer player2 = new GamePlayer(AI_PLAYER_ID, AI_PLAYER_NAME, "O");
+        
+        CaroGame game = new CaroGame(player1, player2, rules);
+        game.setGameId(gameIdPrefix + game.getGameId());
+        game.setStatus(CaroGame.GameStatus.PLAYING);
+        
+        activeGames.put(game.getGameId(), game);
+        userCurrentGame.put(userId, game.getGameId());
+        
+        return game;
+    }
+    
+    /**
+     * The node that owns the game. Ids without a node prefix are taken to be
+     * this node's.
+     */
+    public int getOwnerNode(String gameId) {
+        int dash = gameId.indexOf('-');
+        if (gameId.startsWith("n") && dash > 1) {
+            try {
+                return Integer.parseInt(gameId.substring(1, dash));
+            } catch (NumberFormatException e) {
+                return nodeId;
+            }
+        }
+        return nodeId;
+    }
+    
+    public boolean isLocalGame(String gameId) {
+        return getOwnerNode(gameId) == nodeId;
+    }
+    
+    public boolean isAiGame(CaroGame game) {
+        return AI_PLAYER_ID.equals(game.getPlayer2().getId());
+    }
+    
     public CaroGame acceptGameInvitation(String gameId, Long userId) {
         CaroGame game = activeGames.get(gameId);
         if (game == null) {
@@ -47,6 +116,7 @@ public class GameService {
         
         // Start the game
         game.setStatus(CaroGame.GameStatus.PLAYING);
+        game.touch();
         
         // Remove invitation
         gameInvitations.remove(gameId);
@@ -65,8 +135,7 @@ public class GameService {
         }
         
         // Remove the game and invitation
-        activeGames.remove(gameId);
-        gameInvitations.remove(gameId);
+        removeGame(gameId);
     }
     
     public CaroGame makeMove(String gameId, Long userId, int row, int col) {
@@ -112,9 +181,49 @@ public class GameService {
         game.setStatus(CaroGame.GameStatus.FINISHED);
         
         // Clean up
-        activeGames.remove(gameId);
-        userCurrentGame.remove(game.getPlayer1().getId());
-        userCurrentGame.remove(game.getPlayer2().getId());
+        removeGame(gameId);
+    }
+    
+    /**
+     * Drops every trace of the game: the game itself, a pending invitation,
+     * rematch requests, and the players' current-game pointers if they still
+     * point at it. Returns the removed game, or null.
+     */
+    public CaroGame removeGame(String gameId) {
+        CaroGame game = activeGames.remove(gameId);
+        gameInvitations.remove(gameId);
+        playAgainRequests.remove(gameId);
+        if (game != null) {
+            userCurrentGame.remove(game.getPlayer1().getId(), gameId);
+            userCurrentGame.remove(game.getPlayer2().getId(), gameId);
+        }
+        return game;
+    }
+    
+    /**
+     * Records that the user wants a rematch. Returns true once the opponent has
+     * asked as well, clearing the requests.
+     */
+    public boolean requestPlayAgain(String gameId, Long userId, Long opponentId) {
+        Set<Long> requests = playAgainRequests.computeIfAbsent(gameId, k -> ConcurrentHashMap.newKeySet());
+        requests.add(userId);
+        if (requests.contains(opponentId)) {
+            playAgainRequests.remove(gameId);
+            return true;
+        }
+        return false;
+    }
+    
+    public Collection<CaroGame> getActiveGames() {
+        return activeGames.values();
+    }
+    
+    public int getActiveGameCount() {
+        return activeGames.size();
+    }
+    
+    public int getPendingInvitationCount() {
+        return gameInvitations.size();
     }
     
     public CaroGame getGame(String gameId) {
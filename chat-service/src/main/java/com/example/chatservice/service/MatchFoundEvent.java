@@ -0,0 +1,8 @@
+package com.example.chatservice.service;
+
+/**
+ * Published by {@link MatchmakingService} when two waiting players are paired.
+ * The first player has waited longer and plays X.
+ */
+public record MatchFoundEvent(MatchmakingService.Ticket first, MatchmakingService.Ticket second) {
+}
@@ -0,0 +1,226 @@
+package com.example.chatservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pairs players who asked for a game with someone of a similar rating.
+ *
+ * Waiting players are kept in a TreeMap keyed by rating (ties broken by join
+ * order), so the closest-rated opponent on either side is found with two
+ * O(log n) lookups. A player joining is matched right away if someone close
+ * enough is already waiting. Otherwise the player waits, and a periodic pass
+ * retries the longest-waiting players first as their search window widens:
+ * it starts at initialWindow rating points and grows by windowGrowthPerSecond
+ * up to maxWindow. Two players are paired only when their rating gap is
+ * within both of their windows.
+ *
+ * Matches are published as {@link MatchFoundEvent}s, outside the pool lock.
+ */
+@Component
+public class MatchmakingService {
+    private static final Logger logger = LoggerFactory.getLogger(MatchmakingService.class);
+
+    public record Ticket(Long userId, String name, int rating, long joinedAtNanos) {
+    }
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScheduledExecutorService matchmaker;
+    private final int initialWindow;
+    private final double windowGrowthPerSecond;
+    private final int maxWindow;
+
+    // Guarded by this
+    private final TreeMap<Long, Ticket> pool = new TreeMap<>();
+    // Pool keys in join order, so the periodic pass serves the longest-waiting first; guarded by this
+    private final Map<Long, Long> keysByUser = new LinkedHashMap<>();
+    private long nextSequence;
+
+    private final Timer waitTimer;
+    private final Timer passTimer;
+    private final Counter matchCounter;
+
+    public MatchmakingService(ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+                              @Value("${chat.matchmaking.initial-window:50}") int initialWindow,
+                              @Value("${chat.matchmaking.window-growth-per-second:25}") double windowGrowthPerSecond,
+                              @Value("${chat.matchmaking.max-window:400}") int maxWindow,
+                              @Value("${chat.matchmaking.pass-interval-ms:1000}") long passIntervalMs) {
+        this.eventPublisher = eventPublisher;
+        this.initialWindow = initialWindow;
+        this.windowGrowthPerSecond = windowGrowthPerSecond;
+        this.maxWindow = maxWindow;
+
+        this.waitTimer = Timer.builder("chat.matchmaking.wait")
+            .description("Time from joining the pool to being matched")
+            .register(meterRegistry);
+        this.passTimer = Timer.builder("chat.matchmaking.pass")
+            .description("Duration of one pass over the waiting players")
+            .register(meterRegistry);
+        this.matchCounter = Counter.builder("chat.matchmaking.matches").register(meterRegistry);
+        Gauge.builder("chat.matchmaking.waiting", this, MatchmakingService::getWaitingCount)
+            .description("Players waiting for a match")
+            .register(meterRegistry);
+
+        this.matchmaker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "matchmaker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        matchmaker.scheduleWithFixedDelay(this::passSafely, passIntervalMs, passIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds the player to the pool, matching them at once if possible.
+     * Returns false if the player is already waiting.
+     */
+    public boolean join(Long userId, String name, int rating) {
+        return join(new Ticket(userId, name, rating, System.nanoTime()));
+    }
+
+    /**
+     * Puts a ticket back in the pool, keeping its original join time; used
+     * when a match could not be started because the opponent had gone.
+     */
+    public boolean join(Ticket ticket) {
+        Ticket opponent;
+        synchronized (this) {
+            if (keysByUser.containsKey(ticket.userId())) {
+                return false;
+            }
+            long key = poolKey(ticket);
+            opponent = closestAcceptable(ticket, key, System.nanoTime());
+            if (opponent != null) {
+                remove(opponent.userId());
+            } else {
+                pool.put(key, ticket);
+                keysByUser.put(ticket.userId(), key);
+            }
+        }
+        if (opponent != null) {
+            publishMatch(opponent, ticket);
+        }
+        return true;
+    }
+
+    public synchronized boolean leave(Long userId) {
+        return remove(userId) != null;
+    }
+
+    public synchronized boolean isWaiting(Long userId) {
+        return keysByUser.containsKey(userId);
+    }
+
+    public synchronized int getWaitingCount() {
+        return pool.size();
+    }
+
+    private void passSafely() {
+        try {
+            pass(System.nanoTime());
+        } catch (RuntimeException e) {
+            logger.error("Error pairing waiting players: ", e);
+        }
+    }
+
+    /**
+     * Tries to pair every waiting player, longest-waiting first, with windows
+     * as wide as they are at {@code nowNanos}. Returns the number of matches.
+     */
+    int pass(long nowNanos) {
+        long start = System.nanoTime();
+        List<Ticket[]> matches = new ArrayList<>();
+        synchronized (this) {
+            List<Long> keys = new ArrayList<>(keysByUser.values());
+            for (Long key : keys) {
+                Ticket ticket = pool.get(key);
+                if (ticket == null) {
+                    continue; // Matched earlier in this pass
+                }
+                Ticket opponent = closestAcceptable(ticket, key, nowNanos);
+                if (opponent != null) {
+                    remove(ticket.userId());
+                    remove(opponent.userId());
+                    // The longer-waiting player goes first
+                    matches.add(new Ticket[]{ticket, opponent});
+                }
+            }
+        }
+        passTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        for (Ticket[] match : matches) {
+            publishMatch(match[0], match[1]);
+        }
+        return matches.size();
+    }
+
+    // The closest-rated waiting player both windows allow, or null; the ticket's own key is skipped
+    private Ticket closestAcceptable(Ticket ticket, long key, long nowNanos) {
+        int window = window(ticket, nowNanos);
+        Ticket best = null;
+
+        Map.Entry<Long, Ticket> below = pool.lowerEntry(key);
+        if (below != null && acceptable(ticket, below.getValue(), window, nowNanos)) {
+            best = below.getValue();
+        }
+        Map.Entry<Long, Ticket> above = pool.higherEntry(key);
+        if (above != null && acceptable(ticket, above.getValue(), window, nowNanos)
+                && (best == null || gap(ticket, above.getValue()) < gap(ticket, best))) {
+            best = above.getValue();
+        }
+        return best;
+    }
+
+    private boolean acceptable(Ticket ticket, Ticket candidate, int window, long nowNanos) {
+        int gap = gap(ticket, candidate);
+        return gap <= window && gap <= window(candidate, nowNanos);
+    }
+
+    private static int gap(Ticket a, Ticket b) {
+        return Math.abs(a.rating() - b.rating());
+    }
+
+    private int window(Ticket ticket, long nowNanos) {
+        double waitedSeconds = Math.max(0, nowNanos - ticket.joinedAtNanos()) / 1e9;
+        return (int) Math.min(maxWindow, initialWindow + windowGrowthPerSecond * waitedSeconds);
+    }
+
+    private Ticket remove(Long userId) {
+        Long key = keysByUser.remove(userId);
+        return key != null ? pool.remove(key) : null;
+    }
+
+    // Rating in the high bits, join order in the low bits: equal ratings queue in arrival order
+    private long poolKey(Ticket ticket) {
+        return ((long) ticket.rating() << 32) | (nextSequence++ & 0xFFFFFFFFL);
+    }
+
+    private void publishMatch(Ticket first, Ticket second) {
+        long now = System.nanoTime();
+        waitTimer.record(now - first.joinedAtNanos(), TimeUnit.NANOSECONDS);
+        waitTimer.record(now - second.joinedAtNanos(), TimeUnit.NANOSECONDS);
+        matchCounter.increment();
+        eventPublisher.publishEvent(new MatchFoundEvent(first, second));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        matchmaker.shutdown();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.chatservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Generates time-ordered message ids in the application, so a message has its
+ * id before it reaches the database.
+ *
+ * Layout (53 bits, so ids stay exact as JavaScript numbers):
+ * 40 bits of milliseconds since 2025-01-01, 4 bits of node id, 9 bits of
+ * per-millisecond sequence. Ids from one node are strictly increasing.
+ */
+@Component
+public class MessageIdGenerator {
+    private static final long EPOCH_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 4;
+    private static final int SEQUENCE_BITS = 9;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private long lastMillis = -1;
+    private long sequence;
+
+    public MessageIdGenerator(@Value("${chat.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("chat.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public synchronized long nextId() {
+        long now = System.currentTimeMillis();
+        if (now < lastMillis) {
+            // Clock moved backwards; keep issuing ids from the last timestamp we used
+            now = lastMillis;
+        }
+        if (now == lastMillis) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // Sequence exhausted for this millisecond, borrow the next one
+                now = lastMillis + 1;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = now;
+        return ((now - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * The largest id any node can have issued so far: every node and sequence
+     * of the current millisecond (or of the last one this node borrowed).
+     * Ids a client claims to have seen are clamped to it.
+     */
+    public synchronized long ceiling() {
+        long millis = Math.max(System.currentTimeMillis(), lastMillis);
+        return ((millis + 1 - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS)) - 1;
+    }
+}
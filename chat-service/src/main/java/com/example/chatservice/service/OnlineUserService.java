@@ -1,14 +1,22 @@
 package com.example.chatservice.service;
 
 import com.example.chatservice.model.OnlineUser;
+import com.example.chatservice.model.PresenceDelta;
+import com.example.chatservice.model.PresenceSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
@@ -16,73 +24,182 @@ public class OnlineUserService {
     private static final Logger logger = LoggerFactory.getLogger(OnlineUserService.class);
     
     private final Map<Long, OnlineUser> onlineUsers = new ConcurrentHashMap<>();
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final UserProfileResolver userProfileResolver;
+    private final ApplicationEventPublisher eventPublisher;
+    // Changes kept for clients resuming from a sequence number: the larger of the minimum and
+    // this many per online user, so a reconnect storm fits between two broadcasts
+    private final int presenceLogMinCapacity;
+    private final int presenceLogCapacityPerUser;
     
-    // This should be injected from configuration
-    private static final String AUTH_SERVICE_URL = "http://auth-service:8082";
+    // Every presence change gets the next sequence number. Mutations of onlineUsers and the
+    // log happen under presenceLock so that snapshots and deltas line up with each other.
+    private final Object presenceLock = new Object();
+    private final Deque<PresenceChange> presenceLog = new ArrayDeque<>();
+    private long presenceSeq;
+    // Sequence number of the newest change dropped for capacity; a resume from before it has a gap
+    private long presenceLogFloor;
+    
+    // Identifies this process, so a client does not resume with a sequence number from before a restart
+    private final String presenceEpoch = Long.toHexString(System.currentTimeMillis());
+    
+    // user is null for a leave
+    private record PresenceChange(long seq, Long userId, OnlineUser user) {}
+    
+    public OnlineUserService(UserProfileResolver userProfileResolver, ApplicationEventPublisher eventPublisher,
+                             @Value("${chat.websocket.presence.log.min-capacity:4096}") int presenceLogMinCapacity,
+                             @Value("${chat.websocket.presence.log.capacity-per-user:2}") int presenceLogCapacityPerUser) {
+        this.userProfileResolver = userProfileResolver;
+        this.eventPublisher = eventPublisher;
+        this.presenceLogMinCapacity = presenceLogMinCapacity;
+        this.presenceLogCapacityPerUser = presenceLogCapacityPerUser;
+    }
 
+    /**
+     * Registers the user as online right away. If their profile is not cached
+     * yet, a placeholder is used and replaced once auth-service answers. The
+     * profile takes the placeholder's place in the presence log, so each join
+     * is one change there. A user that auth-service does not know is taken off
+     * the list again.
+     */
     public void addOnlineUser(Long userId) {
         logger.info("Adding user {} to online users", userId);
-        // Fetch user info from auth service
-        OnlineUser user = fetchUserInfo(userId);
-        if (user != null) {
+        CompletableFuture<OnlineUser> profile = userProfileResolver.resolve(userId);
+        OnlineUser cached = profile.getNow(null);
+        if (cached != null) {
+            putOnlineUser(userId, cached);
+            return;
+        }
+        
+        OnlineUser placeholder = new OnlineUser();
+        placeholder.setId(userId);
+        placeholder.setName("User " + userId);
+        putOnlineUser(userId, placeholder);
+        
+        profile.thenAccept(user -> {
+            if (user != null) {
+                replacePlaceholder(userId, placeholder, user);
+            } else {
+                logger.error("Failed to add user {} - auth-service does not know the user", userId);
+                removeOnlineUser(userId, placeholder);
+            }
+        });
+    }
+
+    private void putOnlineUser(Long userId, OnlineUser user) {
+        long seq;
+        synchronized (presenceLock) {
             onlineUsers.put(userId, user);
-            logger.info("Successfully added user {} to online list. Total users: {}", userId, onlineUsers.size());
-        } else {
-            logger.error("Failed to add user {} - user info is null", userId);
+            seq = appendPresenceChange(userId, user);
+        }
+        logger.info("Updated user {} in online list. Total users: {}", userId, onlineUsers.size());
+        eventPublisher.publishEvent(new PresenceChangedEvent(seq));
+    }
+
+    private void replacePlaceholder(Long userId, OnlineUser placeholder, OnlineUser user) {
+        long seq;
+        synchronized (presenceLock) {
+            // A profile arriving after the user already went offline must not bring them back
+            if (!onlineUsers.replace(userId, placeholder, user)) {
+                return;
+            }
+            // Superseded by the profile, so no delta can need it any more
+            Iterator<PresenceChange> iterator = presenceLog.descendingIterator();
+            while (iterator.hasNext()) {
+                PresenceChange change = iterator.next();
+                if (change.user() == placeholder) {
+                    iterator.remove();
+                    break;
+                }
+            }
+            seq = appendPresenceChange(userId, user);
         }
+        eventPublisher.publishEvent(new PresenceChangedEvent(seq));
     }
 
     public void removeOnlineUser(Long userId) {
-        onlineUsers.remove(userId);
+        removeOnlineUser(userId, null);
     }
 
-    public List<OnlineUser> getOnlineUsers() {
-        return new ArrayList<>(onlineUsers.values());
+    // Removes the user only while they are still listed with the expected entry, or with any entry if null
+    private void removeOnlineUser(Long userId, OnlineUser expected) {
+        long seq;
+        synchronized (presenceLock) {
+            boolean removed = expected != null ? onlineUsers.remove(userId, expected) : onlineUsers.remove(userId) != null;
+            if (!removed) {
+                return;
+            }
+            seq = appendPresenceChange(userId, null);
+        }
+        eventPublisher.publishEvent(new PresenceChangedEvent(seq));
     }
 
-    public OnlineUser getOnlineUser(Long userId) {
-        return onlineUsers.get(userId);
+    private long appendPresenceChange(Long userId, OnlineUser user) {
+        presenceLog.addLast(new PresenceChange(++presenceSeq, userId, user));
+        int capacity = Math.max(presenceLogMinCapacity, presenceLogCapacityPerUser * onlineUsers.size());
+        while (presenceLog.size() > capacity) {
+            presenceLogFloor = presenceLog.removeFirst().seq();
+        }
+        return presenceSeq;
     }
 
-    public boolean isUserOnline(Long userId) {
-        return onlineUsers.containsKey(userId);
+    public PresenceSnapshot getPresenceSnapshot() {
+        synchronized (presenceLock) {
+            return new PresenceSnapshot(presenceSeq, new ArrayList<>(onlineUsers.values()));
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    private OnlineUser fetchUserInfo(Long userId) {
-        try {
-            System.out.println("Fetching user info for userId: " + userId);
-            // Fetch real user from auth service
-            String url = AUTH_SERVICE_URL + "/api/auth/user/" + userId;
-            System.out.println("Calling auth service URL: " + url);
-            
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
+    /**
+     * Returns the coalesced presence changes after {@code seq}. If the log no longer
+     * reaches back that far, the delta starts after the newest dropped change and its
+     * fromSeq is greater than seq + 1, which tells the caller it has a gap.
+     */
+    public PresenceDelta getPresenceChangesSince(long seq) {
+        synchronized (presenceLock) {
+            Map<Long, PresenceChange> latest = new LinkedHashMap<>();
+            long fromSeq = Math.max(seq, presenceLogFloor) + 1;
             
-            if (response != null) {
-                System.out.println("Got response from auth service: " + response);
-                OnlineUser user = new OnlineUser();
-                user.setId(userId);
-                user.setName((String) response.get("name"));
-                user.setEmail((String) response.get("email"));
-                user.setProfileImageUrl((String) response.get("profileImageUrl"));
-                return user;
-            } else {
-                System.err.println("Auth service returned null response");
+            Iterator<PresenceChange> iterator = presenceLog.descendingIterator();
+            while (iterator.hasNext()) {
+                PresenceChange change = iterator.next();
+                if (change.seq() <= seq) {
+                    break;
+                }
+                // Walking newest-first, so the first change seen for a user is the one that counts
+                latest.putIfAbsent(change.userId(), change);
             }
-        } catch (Exception e) {
-            System.err.println("Failed to fetch user info for userId: " + userId + ", error: " + e.getMessage());
-            e.printStackTrace();
             
-            // Fallback to minimal user info if auth service unavailable
-            System.out.println("Using fallback user info for userId: " + userId);
-            OnlineUser user = new OnlineUser();
-            user.setId(userId);
-            user.setName("User " + userId);
-            user.setEmail("user" + userId + "@example.com");
-            user.setProfileImageUrl("/assets/default-avatar.png");
-            return user;
+            List<OnlineUser> joined = new ArrayList<>();
+            List<Long> left = new ArrayList<>();
+            for (PresenceChange change : latest.values()) {
+                if (change.user() != null) {
+                    joined.add(change.user());
+                } else {
+                    left.add(change.userId());
+                }
+            }
+            return new PresenceDelta(fromSeq, presenceSeq, joined, left);
         }
-        return null;
+    }
+
+    public long getPresenceSeq() {
+        synchronized (presenceLock) {
+            return presenceSeq;
+        }
+    }
+
+    public String getPresenceEpoch() {
+        return presenceEpoch;
+    }
+
+    public List<OnlineUser> getOnlineUsers() {
+        return new ArrayList<>(onlineUsers.values());
+    }
+
+    public OnlineUser getOnlineUser(Long userId) {
+        return onlineUsers.get(userId);
+    }
+
+    public boolean isUserOnline(Long userId) {
+        return onlineUsers.containsKey(userId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.example.chatservice.service;
+
+/**
+ * Published by {@link OnlineUserService} after the online user list changes.
+ * The change itself is read from the presence log, so the event carries only
+ * the sequence number it produced.
+ */
+public record PresenceChangedEvent(long seq) {
+}
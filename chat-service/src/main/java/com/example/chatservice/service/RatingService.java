@@ -0,0 +1,160 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.CaroGame;
+import com.example.chatservice.model.PlayerRating;
+import com.example.chatservice.repository.PlayerRatingRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Elo ratings of players, read from the database once per player and kept in
+ * memory. Results update the cached ratings immediately; changed ratings are
+ * written back in one batched upsert at a fixed interval. Once more than
+ * {@code chat.rating.cache.max-players} are held, ratings with no unwritten
+ * change are dropped after a successful write and read again when needed.
+ *
+ * A game is not rated if either player's rating could not be read, so a
+ * failed read never overwrites a stored rating with the starting one.
+ *
+ * Games against the computer are not rated.
+ */
+@Service
+public class RatingService {
+    private static final Logger logger = LoggerFactory.getLogger(RatingService.class);
+
+    private final PlayerRatingRepository repository;
+    private final Map<Long, PlayerRating> ratings = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+    private final int maxCached;
+
+    public RatingService(PlayerRatingRepository repository, MeterRegistry meterRegistry,
+                         @Value("${chat.rating.flush-interval-ms:1000}") long flushIntervalMs,
+                         @Value("${chat.rating.cache.max-players:50000}") int maxCached) {
+        this.repository = repository;
+        this.maxCached = maxCached;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rating-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("chat.rating.cached", ratings, Map::size)
+            .description("Player ratings held in memory")
+            .register(meterRegistry);
+        Gauge.builder("chat.rating.unsaved", dirty, Set::size)
+            .description("Ratings changed since the last write")
+            .register(meterRegistry);
+    }
+
+    public PlayerRating getRating(Long userId) {
+        PlayerRating rating = loadRating(userId);
+        // Shown only, never written
+        return rating != null ? rating : PlayerRating.initial(userId);
+    }
+
+    // The cached or stored rating, or null if the database could not be read
+    private PlayerRating loadRating(Long userId) {
+        PlayerRating cached = ratings.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            PlayerRating stored = repository.findRating(userId).orElseGet(() -> PlayerRating.initial(userId));
+            PlayerRating raced = ratings.putIfAbsent(userId, stored);
+            return raced != null ? raced : stored;
+        } catch (DataAccessException e) {
+            // Not cached, so the next lookup tries the database again
+            logger.warn("Could not load rating of user {}: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Updates both players' ratings from a finished game.
+     */
+    public void recordResult(CaroGame game) {
+        Long player1Id = game.getPlayer1().getId();
+        Long player2Id = game.getPlayer2().getId();
+        if (GameService.AI_PLAYER_ID.equals(player1Id) || GameService.AI_PLAYER_ID.equals(player2Id)) {
+            return;
+        }
+        // Loaded first so the database is not read under the lock
+        PlayerRating loaded1 = loadRating(player1Id);
+        PlayerRating loaded2 = loadRating(player2Id);
+        if (loaded1 == null || loaded2 == null) {
+            logger.warn("Not rating game {}: ratings of its players could not be read", game.getGameId());
+            return;
+        }
+
+        double player1Score = "X".equals(game.getWinner()) ? 1.0 : "O".equals(game.getWinner()) ? 0.0 : 0.5;
+        synchronized (this) {
+            // Loaded ratings may have been evicted meanwhile, but only unchanged ones are
+            PlayerRating player1 = ratings.getOrDefault(player1Id, loaded1);
+            PlayerRating player2 = ratings.getOrDefault(player2Id, loaded2);
+            ratings.put(player1Id, player1.after(player2.rating(), player1Score));
+            ratings.put(player2Id, player2.after(player1.rating(), 1.0 - player1Score));
+            dirty.add(player1Id);
+            dirty.add(player2Id);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error writing player ratings: ", e);
+        }
+    }
+
+    public void flush() {
+        List<PlayerRating> changed = new ArrayList<>();
+        for (Long userId : dirty) {
+            // Removed before reading, so an update racing with the write marks it dirty again
+            dirty.remove(userId);
+            PlayerRating rating = ratings.get(userId);
+            if (rating != null) {
+                changed.add(rating);
+            }
+        }
+        if (!changed.isEmpty()) {
+            try {
+                repository.saveAll(changed);
+            } catch (DataAccessException e) {
+                logger.warn("Could not write {} player ratings, will retry: {}", changed.size(), e.getMessage());
+                changed.forEach(rating -> dirty.add(rating.userId()));
+                return;
+            }
+        }
+        evictWritten();
+    }
+
+    // Holds the lock recordResult updates under, so a rating is never dropped between its update and dirty mark
+    private synchronized void evictWritten() {
+        if (ratings.size() > maxCached) {
+            ratings.keySet().removeIf(userId -> !dirty.contains(userId));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+}
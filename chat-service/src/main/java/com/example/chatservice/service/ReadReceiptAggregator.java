@@ -0,0 +1,184 @@
+package com.example.chatservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read receipts, collapsed in memory and written in batches.
+ *
+ * Each direction of a conversation (sender to reader) has a high-water mark:
+ * the newest message id the reader has read. A mark at or below the current
+ * one changes nothing and is dropped, so opening a conversation again costs no
+ * write. A mark that moves forward is published at once as a
+ * {@link ReadReceiptEvent} and written by a flusher thread at a fixed
+ * interval, one UPDATE per conversation in a single JDBC batch. The journal is
+ * flushed first so the UPDATE also covers messages it was still holding.
+ * Marks not written yet are lost if the process dies; those messages then
+ * stay unread until the conversation is read again.
+ */
+@Component
+public class ReadReceiptAggregator {
+    private static final Logger logger = LoggerFactory.getLogger(ReadReceiptAggregator.class);
+
+    private static final String MARK_READ_SQL =
+        "UPDATE chat_messages SET is_read = TRUE WHERE sender_id = ? AND receiver_id = ? AND id <= ? AND is_read = FALSE";
+
+    private record Conversation(Long senderId, Long readerId) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatMessageJournal journal;
+    private final MessageIdGenerator messageIdGenerator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxTracked;
+    private final Map<Conversation, Long> readUpTo = new ConcurrentHashMap<>();
+    private final Map<Conversation, Long> unwritten = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private final Counter appliedCounter;
+    private final Counter collapsedCounter;
+    private final Counter writtenCounter;
+    private final Timer flushTimer;
+
+    public ReadReceiptAggregator(JdbcTemplate jdbcTemplate, ChatMessageJournal journal,
+                                 MessageIdGenerator messageIdGenerator, ApplicationEventPublisher eventPublisher,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${chat.read-receipts.flush-interval-ms:1000}") long flushIntervalMs,
+                                 @Value("${chat.read-receipts.max-tracked:100000}") int maxTracked) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.journal = journal;
+        this.messageIdGenerator = messageIdGenerator;
+        this.eventPublisher = eventPublisher;
+        this.maxTracked = maxTracked;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "read-receipt-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+
+        this.appliedCounter = Counter.builder("chat.read-receipts.marks").tag("outcome", "applied")
+            .description("Read marks by whether they moved a conversation's high-water mark")
+            .register(meterRegistry);
+        this.collapsedCounter = Counter.builder("chat.read-receipts.marks").tag("outcome", "collapsed")
+            .description("Read marks by whether they moved a conversation's high-water mark")
+            .register(meterRegistry);
+        this.writtenCounter = Counter.builder("chat.read-receipts.written").register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.read-receipts.flush").register(meterRegistry);
+        Gauge.builder("chat.read-receipts.unwritten", unwritten, Map::size)
+            .description("Conversations with a read mark not yet in the database")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Records that the reader has read the sender's messages up to and
+     * including {@code upToId}, or everything sent so far when null. Returns
+     * the new high-water mark, or null if nothing new was read.
+     */
+    public Long markRead(Long senderId, Long readerId, Long upToId) {
+        Conversation conversation = new Conversation(senderId, readerId);
+        // upToId comes from the client; an id that has not been issued yet would mark future messages read.
+        // Without one, everything any node has sent so far is read
+        long ceiling = messageIdGenerator.ceiling();
+        long mark = upToId != null ? Math.min(upToId, ceiling) : ceiling;
+        boolean[] advanced = new boolean[1];
+        readUpTo.compute(conversation, (key, current) -> {
+            if (current != null && current >= mark) {
+                return current;
+            }
+            advanced[0] = true;
+            return mark;
+        });
+        if (!advanced[0]) {
+            collapsedCounter.increment();
+            return null;
+        }
+        unwritten.merge(conversation, mark, Math::max);
+        appliedCounter.increment();
+        eventPublisher.publishEvent(new ReadReceiptEvent(senderId, readerId, mark));
+        return mark;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error writing read receipts: ", e);
+        }
+    }
+
+    public void flush() {
+        List<Map.Entry<Conversation, Long>> batch = new ArrayList<>();
+        for (Map.Entry<Conversation, Long> entry : unwritten.entrySet()) {
+            // Removed before writing; a mark that moved meanwhile stays for the next run
+            if (unwritten.remove(entry.getKey(), entry.getValue())) {
+                batch.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+        trim();
+    }
+
+    private void write(List<Map.Entry<Conversation, Long>> batch) {
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (Map.Entry<Conversation, Long> entry : batch) {
+            args.add(new Object[] {entry.getKey().senderId(), entry.getKey().readerId(), entry.getValue()});
+        }
+        long start = System.nanoTime();
+        try {
+            // Messages still in the journal would be inserted unread after the UPDATE
+            journal.flush();
+            jdbcTemplate.batchUpdate(MARK_READ_SQL, args);
+            writtenCounter.increment(batch.size());
+        } catch (DataAccessException e) {
+            logger.warn("Could not write {} read receipts, will retry: {}", batch.size(), e.getMessage());
+            batch.forEach(entry -> unwritten.merge(entry.getKey(), entry.getValue(), Math::max));
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Forgetting a written mark is safe: the next mark for that conversation is written again.
+    // The oldest marks go first, so conversations still being read keep collapsing repeats
+    private void trim() {
+        int excess = readUpTo.size() - maxTracked;
+        if (excess <= 0) {
+            return;
+        }
+        List<Map.Entry<Conversation, Long>> written = new ArrayList<>();
+        for (Map.Entry<Conversation, Long> entry : readUpTo.entrySet()) {
+            if (!unwritten.containsKey(entry.getKey())) {
+                written.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        written.sort(Map.Entry.comparingByValue());
+        for (int i = 0; i < excess && i < written.size(); i++) {
+            readUpTo.remove(written.get(i).getKey(), written.get(i).getValue());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+}
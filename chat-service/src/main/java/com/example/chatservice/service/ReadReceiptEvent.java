@@ -0,0 +1,8 @@
+package com.example.chatservice.service;
+
+/**
+ * Published by {@link ReadReceiptAggregator} when a reader has read further
+ * into a sender's messages, so the sender can be told.
+ */
+public record ReadReceiptEvent(Long senderId, Long readerId, long readUpTo) {
+}
@@ -0,0 +1,276 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.dto.UnreadCounts;
+import com.example.chatservice.dto.UnreadFromSender;
+import com.example.chatservice.model.ChatMessage;
+import com.example.chatservice.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unread message counts per user and per conversation, and the messages sent
+ * to users while they were offline.
+ *
+ * A user's counts are read from the database once, grouped by sender, the
+ * first time they are asked for; the journal is flushed first so the query
+ * sees every message sent so far. From then on they are kept up to date in
+ * memory as messages are sent and conversations are read, so sending never
+ * waits on the database. Messages sent while the load runs are held back and
+ * counted afterwards only if their id is above the newest id the query saw
+ * from that sender, so none is missed or counted twice. Callers that must not
+ * wait for that, such as a connecting WebSocket, load through
+ * {@link #loadUnreadCounts}, which runs the load on a loader thread.
+ *
+ * Messages to a user who is offline are also queued here, up to a limit, so
+ * they can be pushed in one frame when the user reconnects. Users are evicted
+ * least recently used first; an evicted user's counts are reloaded when next
+ * needed, and their queued messages are left for the conversation history.
+ */
+@Service
+public class UnreadStateService {
+    private static final Logger logger = LoggerFactory.getLogger(UnreadStateService.class);
+
+    private static final class UnreadState {
+        // All guarded by this
+        boolean loaded;
+        boolean loading;
+        final Map<Long, Integer> bySender = new HashMap<>();
+        final Map<Long, Long> loadedMaxId = new HashMap<>();
+        final ArrayDeque<ChatMessage> undelivered = new ArrayDeque<>();
+        final List<ChatMessage> sentWhileLoading = new ArrayList<>();
+        long total;
+    }
+
+    private final ChatMessageRepository repository;
+    private final ChatMessageJournal journal;
+    private final int maxUndelivered;
+    // Access-ordered so the least recently used user is evicted first; guarded by this
+    private final Map<Long, UnreadState> states;
+    private final AtomicInteger undeliveredCount = new AtomicInteger();
+    private final Counter loadCounter;
+    private final ExecutorService loader;
+
+    public UnreadStateService(ChatMessageRepository repository, ChatMessageJournal journal,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat.unread.cache.max-users:50000}") int maxUsers,
+                              @Value("${chat.unread.offline-queue.max-messages:200}") int maxUndelivered,
+                              @Value("${chat.unread.loader-threads:4}") int loaderThreads) {
+        this.repository = repository;
+        this.journal = journal;
+        this.maxUndelivered = maxUndelivered;
+        this.states = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UnreadState> eldest) {
+                if (size() <= maxUsers) {
+                    return false;
+                }
+                synchronized (eldest.getValue()) {
+                    undeliveredCount.addAndGet(-eldest.getValue().undelivered.size());
+                }
+                return true;
+            }
+        };
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.loader = Executors.newFixedThreadPool(loaderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "unread-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.loadCounter = Counter.builder("chat.unread.loads")
+            .description("Users whose unread counts were read from the database")
+            .register(meterRegistry);
+        Gauge.builder("chat.unread.cached-users", this, UnreadStateService::cachedUserCount)
+            .description("Users whose unread state is held in memory")
+            .register(meterRegistry);
+        Gauge.builder("chat.unread.undelivered", undeliveredCount, AtomicInteger::get)
+            .description("Messages queued for users who are offline")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Counts a message the journal has accepted as unread for its receiver.
+     */
+    public void recordSent(ChatMessage message) {
+        UnreadState state;
+        synchronized (this) {
+            state = states.get(message.getReceiverId());
+        }
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (state.loaded) {
+                count(state, message);
+            } else if (state.loading) {
+                state.sentWhileLoading.add(message);
+            }
+        }
+    }
+
+    // Guarded by the state
+    private static void count(UnreadState state, ChatMessage message) {
+        long seen = state.loadedMaxId.getOrDefault(message.getSenderId(), Long.MIN_VALUE);
+        if (message.getId() > seen) {
+            state.bySender.merge(message.getSenderId(), 1, Integer::sum);
+            state.total++;
+        }
+    }
+
+    /**
+     * Clears the reader's unread count for the sender's conversation.
+     */
+    public void markRead(Long readerId, Long senderId) {
+        UnreadState state;
+        synchronized (this) {
+            state = states.get(readerId);
+        }
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            Integer cleared = state.bySender.remove(senderId);
+            if (cleared != null) {
+                state.total -= cleared;
+            }
+            int before = state.undelivered.size();
+            state.undelivered.removeIf(message -> senderId.equals(message.getSenderId()));
+            undeliveredCount.addAndGet(state.undelivered.size() - before);
+        }
+    }
+
+    /**
+     * The user's unread counts. Already complete when they are held in memory;
+     * otherwise completes on a loader thread once they have been read.
+     */
+    public CompletableFuture<UnreadCounts> loadUnreadCounts(Long userId) {
+        UnreadState state;
+        synchronized (this) {
+            state = states.get(userId);
+        }
+        if (state != null) {
+            synchronized (state) {
+                if (state.loaded) {
+                    return CompletableFuture.completedFuture(new UnreadCounts(state.total, Map.copyOf(state.bySender)));
+                }
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> getUnreadCounts(userId), loader);
+    }
+
+    public UnreadCounts getUnreadCounts(Long userId) {
+        UnreadState state = loadedState(userId);
+        synchronized (state) {
+            if (!state.loaded) {
+                return UnreadCounts.empty();
+            }
+            return new UnreadCounts(state.total, Map.copyOf(state.bySender));
+        }
+    }
+
+    /**
+     * Queues a message for a receiver who is not connected. The oldest queued
+     * message is dropped once the receiver has too many.
+     */
+    public void queueUndelivered(ChatMessage message) {
+        UnreadState state = state(message.getReceiverId());
+        synchronized (state) {
+            state.undelivered.addLast(message);
+            if (state.undelivered.size() > maxUndelivered) {
+                state.undelivered.removeFirst();
+            } else {
+                undeliveredCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the messages queued while the user was offline, oldest first.
+     */
+    public List<ChatMessage> takeUndelivered(Long userId) {
+        UnreadState state;
+        synchronized (this) {
+            state = states.get(userId);
+        }
+        if (state == null) {
+            return List.of();
+        }
+        synchronized (state) {
+            List<ChatMessage> messages = new ArrayList<>(state.undelivered);
+            state.undelivered.clear();
+            undeliveredCount.addAndGet(-messages.size());
+            return messages;
+        }
+    }
+
+    private synchronized UnreadState state(Long userId) {
+        return states.computeIfAbsent(userId, k -> new UnreadState());
+    }
+
+    private UnreadState loadedState(Long userId) {
+        UnreadState state = state(userId);
+        synchronized (state) {
+            if (state.loaded) {
+                return state;
+            }
+            state.loading = true;
+        }
+        // Messages still waiting in the journal would be missed by the query. Flushed outside the
+        // state's lock: the flush completes futures whose callbacks call recordSent
+        journal.flush();
+        synchronized (state) {
+            if (!state.loaded) {
+                load(userId, state);
+            }
+        }
+        return state;
+    }
+
+    // Guarded by the state
+    private void load(Long userId, UnreadState state) {
+        try {
+            for (UnreadFromSender row : repository.countUnreadBySender(userId)) {
+                state.bySender.put(row.senderId(), Math.toIntExact(row.count()));
+                state.loadedMaxId.put(row.senderId(), row.maxId());
+                state.total += row.count();
+            }
+            state.loaded = true;
+            state.sentWhileLoading.forEach(message -> count(state, message));
+            loadCounter.increment();
+        } catch (DataAccessException e) {
+            // Still in the database or the journal, so the next load's query finds them
+            logger.warn("Could not load unread counts of user {}: {}", userId, e.getMessage());
+        } finally {
+            state.loading = false;
+            state.sentWhileLoading.clear();
+        }
+    }
+
+    private synchronized int cachedUserCount() {
+        return states.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdown();
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.OnlineUser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up user profiles through auth-service's batch endpoint.
+ *
+ * Lookups arriving within a short window are collected and sent as a single
+ * POST /api/auth/users/batch, so a mass reconnect costs a handful of HTTP
+ * round trips instead of one per user. A batch is sent early once it reaches
+ * the maximum size. Requests carry the shared service token, since the
+ * endpoint is closed to anyone else.
+ */
+@Component
+public class UserProfileBatchClient {
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileBatchClient.class);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService scheduler;
+
+    private static final String SERVICE_TOKEN_HEADER = "X-Service-Token";
+
+    private final String authServiceUrl;
+    private final String serviceToken;
+    private final Duration requestTimeout;
+    private final long batchWindowMs;
+    private final int maxBatchSize;
+
+    private final Object lock = new Object();
+    private Map<Long, CompletableFuture<OnlineUser>> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    public UserProfileBatchClient(@Value("${auth.service.url:http://auth-service:8082}") String authServiceUrl,
+                                  @Value("${internal.service.token}") String serviceToken,
+                                  @Value("${chat.profile.batch.window-ms:10}") long batchWindowMs,
+                                  @Value("${chat.profile.batch.max-size:200}") int maxBatchSize,
+                                  @Value("${chat.profile.fetch.connect-timeout-ms:1000}") long connectTimeoutMs,
+                                  @Value("${chat.profile.fetch.timeout-ms:2000}") long requestTimeoutMs) {
+        this.authServiceUrl = authServiceUrl;
+        this.serviceToken = serviceToken;
+        this.batchWindowMs = batchWindowMs;
+        this.maxBatchSize = maxBatchSize;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "profile-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Completes with the user's profile, or with null if auth-service does not
+     * know the user. Completes exceptionally if the batch request failed.
+     */
+    public CompletableFuture<OnlineUser> fetch(Long userId) {
+        Map<Long, CompletableFuture<OnlineUser>> fullBatch = null;
+        CompletableFuture<OnlineUser> future;
+        synchronized (lock) {
+            future = pending.computeIfAbsent(userId, id -> new CompletableFuture<>());
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = takePending();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::flush, batchWindowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            send(fullBatch);
+        }
+        return future;
+    }
+
+    private void flush() {
+        Map<Long, CompletableFuture<OnlineUser>> batch;
+        synchronized (lock) {
+            flushScheduled = false;
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    // Must be called while holding lock
+    private Map<Long, CompletableFuture<OnlineUser>> takePending() {
+        Map<Long, CompletableFuture<OnlineUser>> batch = pending;
+        pending = new LinkedHashMap<>();
+        return batch;
+    }
+
+    private void send(Map<Long, CompletableFuture<OnlineUser>> batch) {
+        HttpRequest request;
+        try {
+            String body = objectMapper.writeValueAsString(Map.of("ids", batch.keySet()));
+            request = HttpRequest.newBuilder(URI.create(authServiceUrl + "/api/auth/users/batch"))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header(SERVICE_TOKEN_HEADER, serviceToken)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        } catch (Exception e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+
+        logger.debug("Fetching {} user profiles from auth-service", batch.size());
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .whenComplete((response, error) -> {
+                if (error == null && response.statusCode() != 200) {
+                    error = new IllegalStateException("auth-service returned status " + response.statusCode());
+                }
+                if (error != null) {
+                    for (CompletableFuture<OnlineUser> future : batch.values()) {
+                        future.completeExceptionally(error);
+                    }
+                    return;
+                }
+
+                Map<Long, OnlineUser> profiles;
+                try {
+                    profiles = parseProfiles(response.body());
+                } catch (Exception e) {
+                    batch.values().forEach(future -> future.completeExceptionally(e));
+                    return;
+                }
+                batch.forEach((userId, future) -> future.complete(profiles.get(userId)));
+            });
+    }
+
+    private Map<Long, OnlineUser> parseProfiles(String body) throws Exception {
+        Map<Long, OnlineUser> profiles = new HashMap<>();
+        for (JsonNode json : objectMapper.readTree(body)) {
+            OnlineUser user = new OnlineUser();
+            user.setId(json.path("id").asLong());
+            user.setName(json.path("name").asText(null));
+            user.setEmail(json.path("email").asText(null));
+            user.setProfileImageUrl(json.path("profileImageUrl").asText(null));
+            profiles.put(user.getId(), user);
+        }
+        return profiles;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
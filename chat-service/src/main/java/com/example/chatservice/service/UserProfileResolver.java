@@ -0,0 +1,150 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.OnlineUser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves user profiles from auth-service without blocking the caller.
+ *
+ * Profiles are kept in a bounded TTL cache, and concurrent lookups for the
+ * same user share a single in-flight request. Cache misses are handed to
+ * {@link UserProfileBatchClient}, which groups them into batch requests.
+ */
+@Service
+public class UserProfileResolver {
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileResolver.class);
+
+    private final UserProfileBatchClient batchClient;
+    private final Map<Long, CompletableFuture<OnlineUser>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Long, CachedProfile> cache;
+
+    private final long ttlMillis;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Timer fetchTimer;
+
+    private record CachedProfile(OnlineUser profile, long expiresAt) {}
+
+    public UserProfileResolver(MeterRegistry meterRegistry, UserProfileBatchClient batchClient,
+                               @Value("${chat.profile.cache.max-size:10000}") int maxSize,
+                               @Value("${chat.profile.cache.ttl-ms:300000}") long ttlMillis) {
+        this.batchClient = batchClient;
+        this.ttlMillis = ttlMillis;
+
+        // Access-ordered so the least recently used profile is evicted first
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedProfile> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+        this.cacheHits = Counter.builder("chat.profile.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.cacheMisses = Counter.builder("chat.profile.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.fetchTimer = Timer.builder("chat.profile.fetch")
+            .description("Latency of profile lookups against auth-service")
+            .register(meterRegistry);
+        Gauge.builder("chat.profile.cache.hit.ratio", this, UserProfileResolver::getHitRatio).register(meterRegistry);
+        Gauge.builder("chat.profile.cache.size", this, UserProfileResolver::cacheSize).register(meterRegistry);
+    }
+
+    // The cached profile if it is still fresh
+    private OnlineUser getCached(Long userId) {
+        synchronized (cache) {
+            CachedProfile cached = cache.get(userId);
+            if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+                return cached.profile();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Completes with the user's profile, already done when it is cached. Completes
+     * with null if auth-service does not know the user, and with a fallback profile
+     * if auth-service could not be reached.
+     */
+    public CompletableFuture<OnlineUser> resolve(Long userId) {
+        OnlineUser cached = getCached(userId);
+        if (cached != null) {
+            cacheHits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        cacheMisses.increment();
+
+        CompletableFuture<OnlineUser> pending = new CompletableFuture<>();
+        CompletableFuture<OnlineUser> existing = inFlight.putIfAbsent(userId, pending);
+        if (existing != null) {
+            return existing;
+        }
+
+        fetch(userId).whenComplete((profile, error) -> {
+            inFlight.remove(userId, pending);
+            if (error != null) {
+                pending.completeExceptionally(error);
+            } else {
+                pending.complete(profile);
+            }
+        });
+        return pending;
+    }
+
+    private CompletableFuture<OnlineUser> fetch(Long userId) {
+        long start = System.nanoTime();
+        return batchClient.fetch(userId)
+            .thenApply(profile -> {
+                // Unknown users are not cached, so an account created since is found on the next lookup
+                if (profile != null) {
+                    cache(profile);
+                }
+                return profile;
+            })
+            .exceptionally(e -> {
+                // Fallback to minimal user info if auth service unavailable; not cached so the next lookup retries
+                logger.warn("Failed to fetch user info for userId {}: {}", userId, e.getMessage());
+                return fallbackProfile(userId);
+            })
+            .whenComplete((profile, error) -> fetchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    private void cache(OnlineUser profile) {
+        synchronized (cache) {
+            cache.put(profile.getId(), new CachedProfile(profile, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    public static OnlineUser fallbackProfile(Long userId) {
+        OnlineUser user = new OnlineUser();
+        user.setId(userId);
+        user.setName("User " + userId);
+        user.setEmail("user" + userId + "@example.com");
+        user.setProfileImageUrl("/assets/default-avatar.png");
+        return user;
+    }
+
+    private double getHitRatio() {
+        double hits = cacheHits.count();
+        double total = hits + cacheMisses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
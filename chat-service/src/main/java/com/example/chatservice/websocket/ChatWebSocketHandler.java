@@ -1,69 +1,130 @@
 package com.example.chatservice.websocket;
 
+import com.example.chatservice.ai.AiPlayer;
+import com.example.chatservice.ai.SearchResult;
 import com.example.chatservice.model.ChatMessage;
 import com.example.chatservice.model.OnlineUser;
 import com.example.chatservice.model.CaroGame;
+import com.example.chatservice.model.GameRules;
+import com.example.chatservice.model.PresenceDelta;
+import com.example.chatservice.model.PresenceSnapshot;
 import com.example.chatservice.service.ChatService;
+import com.example.chatservice.service.GameCommandExecutor;
+import com.example.chatservice.service.GameExpiredEvent;
+import com.example.chatservice.service.GameHistoryService;
 import com.example.chatservice.service.OnlineUserService;
 import com.example.chatservice.service.GameService;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.chatservice.service.MatchFoundEvent;
+import com.example.chatservice.service.MatchmakingService;
+import com.example.chatservice.service.RatingService;
+import com.example.chatservice.service.ReadReceiptEvent;
+import com.example.chatservice.service.UnreadStateService;
+import com.example.chatservice.websocket.protocol.FrameCodec;
+import com.example.chatservice.websocket.protocol.Frames.ChatMessageBody;
+import com.example.chatservice.websocket.protocol.Frames.ChatMessageFrame;
+import com.example.chatservice.websocket.protocol.Frames.GameEndData;
+import com.example.chatservice.websocket.protocol.Frames.GameExpiredData;
+import com.example.chatservice.websocket.protocol.Frames.GameFrame;
+import com.example.chatservice.websocket.protocol.Frames.GameInvitationData;
+import com.example.chatservice.websocket.protocol.Frames.GameMoveData;
+import com.example.chatservice.websocket.protocol.Frames.GameSnapshotData;
+import com.example.chatservice.websocket.protocol.Frames.GameStartData;
+import com.example.chatservice.websocket.protocol.Frames.GameWatchData;
+import com.example.chatservice.websocket.protocol.Frames.MatchmakingStatusData;
+import com.example.chatservice.websocket.protocol.Frames.Move;
+import com.example.chatservice.websocket.protocol.Frames.OnlineUsersFrame;
+import com.example.chatservice.websocket.protocol.Frames.PlayAgainData;
+import com.example.chatservice.websocket.protocol.Frames.PlayerInfo;
+import com.example.chatservice.websocket.protocol.Frames.Players;
+import com.example.chatservice.websocket.protocol.Frames.ReadReceiptFrame;
+import com.example.chatservice.websocket.protocol.Frames.UnreadStateFrame;
+import com.example.chatservice.websocket.protocol.Frames.UserRef;
+import com.example.chatservice.websocket.protocol.InboundFrame;
+import com.example.chatservice.websocket.protocol.OutboundFrame;
+import com.example.chatservice.websocket.protocol.WireFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 
 import java.io.IOException;
-import java.net.URI;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 @Component
-public class ChatWebSocketHandler implements WebSocketHandler {
+public class ChatWebSocketHandler implements WebSocketHandler, SubProtocolCapable {
     private static final Logger logger = LoggerFactory.getLogger(ChatWebSocketHandler.class);
     
-    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
-    private final Map<String, Long> sessionUserMap = new ConcurrentHashMap<>();
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    
-    // Store play again requests (gameId -> Set<userId>)
-    private final Map<String, Set<Long>> playAgainRequests = new ConcurrentHashMap<>();
-    
-    // Store session scoreboards (gameId -> scoreboard)
-    private final Map<String, Map<String, Integer>> gameScoreboards = new ConcurrentHashMap<>();
-    
     private final ChatService chatService;
     private final OnlineUserService onlineUserService;
     private final GameService gameService;
+    private final SessionRegistry sessionRegistry;
+    private final FrameCodec frameCodec;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final GameCommandExecutor gameCommandExecutor;
+    private final AiPlayer aiPlayer;
+    private final GameHistoryService gameHistoryService;
+    private final GameSpectators gameSpectators;
+    private final MatchmakingService matchmakingService;
+    private final RatingService ratingService;
+    private final ClusterRouter clusterRouter;
+    private final UnreadStateService unreadStateService;
+    private final TypingSignals typingSignals;
     
-    public ChatWebSocketHandler(ChatService chatService, OnlineUserService onlineUserService, GameService gameService) {
+    @Value("${chat.websocket.presence.snapshot-page-size:500}")
+    private int snapshotPageSize;
+    
+    public ChatWebSocketHandler(ChatService chatService, OnlineUserService onlineUserService, GameService gameService,
+                                SessionRegistry sessionRegistry, FrameCodec frameCodec,
+                                PresenceBroadcaster presenceBroadcaster, GameCommandExecutor gameCommandExecutor,
+                                AiPlayer aiPlayer, GameHistoryService gameHistoryService,
+                                GameSpectators gameSpectators, MatchmakingService matchmakingService,
+                                RatingService ratingService, ClusterRouter clusterRouter,
+                                UnreadStateService unreadStateService, TypingSignals typingSignals) {
         this.chatService = chatService;
         this.onlineUserService = onlineUserService;
         this.gameService = gameService;
+        this.sessionRegistry = sessionRegistry;
+        this.frameCodec = frameCodec;
+        this.presenceBroadcaster = presenceBroadcaster;
+        this.gameCommandExecutor = gameCommandExecutor;
+        this.aiPlayer = aiPlayer;
+        this.gameHistoryService = gameHistoryService;
+        this.gameSpectators = gameSpectators;
+        this.matchmakingService = matchmakingService;
+        this.ratingService = ratingService;
+        this.clusterRouter = clusterRouter;
+        this.unreadStateService = unreadStateService;
+        this.typingSignals = typingSignals;
+    }
+
+    // Offered in order of preference; a client that asks for none gets JSON
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(WireFormat.CBOR.getSubprotocol(), WireFormat.JSON.getSubprotocol());
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        String userId = getUserIdFromSession(session);
+        Long userId = JwtHandshakeInterceptor.getUserId(session);
         if (userId != null) {
-            sessions.put(session.getId(), session);
-            sessionUserMap.put(session.getId(), Long.parseLong(userId));
+            SessionSendQueue queue = sessionRegistry.register(session, userId);
             
-            // Add user to online list
-            onlineUserService.addOnlineUser(Long.parseLong(userId));
+            // Add user to online list, here and on the other nodes; the join is fanned out to
+            // other users by PresenceBroadcaster
+            clusterRouter.userConnected(userId);
             
-            logger.info("WebSocket connection established for user: {}", userId);
+            sendUnreadState(queue, userId);
             
-            // Send online users list to the connected user
-            sendOnlineUsersToUser(session);
+            logger.info("WebSocket connection established for user: {}", userId);
             
-            // Broadcast user joined to all other users
-            broadcastUserJoined(Long.parseLong(userId));
+            // The online users list is sent when the client sends "join", which may resume
+            // from a presence sequence number it already has
         } else {
             session.close();
         }
@@ -71,38 +132,55 @@ public class ChatWebSocketHandler implements WebSocketHandler {
 
     @Override
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
-        if (message instanceof TextMessage textMessage) {
+        // Any frame, a pong to the heartbeat's ping included, shows the connection is alive
+        SessionSendQueue senderQueue = sessionRegistry.getQueue(session);
+        if (senderQueue != null) {
+            senderQueue.markAlive();
+        }
+        if (message instanceof TextMessage || message instanceof BinaryMessage) {
             try {
-                JsonNode jsonNode = objectMapper.readTree(textMessage.getPayload());
-                String type = jsonNode.get("type").asText();
+                InboundFrame frame = frameCodec.decode(message);
+                String type = frame.type();
+                if (type == null) {
+                    logger.warn("Frame without a type from session {}", session.getId());
+                    return;
+                }
                 
                 switch (type) {
                     case "join":
-                        handleJoin(session, jsonNode);
+                        handleJoin(session, frame);
                         break;
                     case "chat_message":
-                        handleChatMessage(session, jsonNode);
+                        handleChatMessage(session, frame);
                         break;
-                    case "send_game_invitation":
-                        handleSendGameInvitation(session, jsonNode);
+                    case "typing":
+                        handleTyping(session, frame, true);
+                        break;
+                    case "typing_stopped":
+                        handleTyping(session, frame, false);
                         break;
-                    case "accept_game_invitation":
-                        handleAcceptGameInvitation(session, jsonNode);
+                    case "mark_read":
+                        handleMarkRead(session, frame);
                         break;
-                    case "decline_game_invitation":
-                        handleDeclineGameInvitation(session, jsonNode);
+                    case "send_game_invitation":
+                        handleSendGameInvitation(session, frame);
                         break;
-                    case "game_move":
-                        handleGameMove(session, jsonNode);
+                    case "join_matchmaking":
+                        handleJoinMatchmaking(session);
                         break;
-                    case "quit_game":
-                        handleQuitGame(session, jsonNode);
+                    case "leave_matchmaking":
+                        handleLeaveMatchmaking(session);
                         break;
-                    case "play_again_request":
-                        handlePlayAgainRequest(session, jsonNode);
+                    case "start_ai_game":
+                        handleStartAiGame(session, frame);
                         break;
                     default:
-                        logger.warn("Unknown message type: {}", type);
+                        GameCommand command = gameCommand(type);
+                        if (command != null) {
+                            runInGame(session, frame, command);
+                        } else {
+                            logger.warn("Unknown message type: {}", type);
+                        }
                 }
             } catch (Exception e) {
                 logger.error("Error handling message: ", e);
@@ -117,20 +195,38 @@ public class ChatWebSocketHandler implements WebSocketHandler {
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
-        Long userId = sessionUserMap.remove(session.getId());
-        sessions.remove(session.getId());
+        SessionSendQueue closedQueue = sessionRegistry.getQueue(session);
+        if (closedQueue != null) {
+            gameSpectators.unsubscribeAll(closedQueue);
+        }
+        Long userId = sessionRegistry.unregister(session);
         
-        if (userId != null) {
-            // Handle game disconnect
-            gameService.handleUserDisconnect(userId);
+        // Only treat the user as gone once their last tab has disconnected
+        if (userId != null && !sessionRegistry.hasSessions(userId)) {
+            matchmakingService.leave(userId);
+            typingSignals.userDisconnected(userId);
             
-            // Remove user from online list
-            onlineUserService.removeOnlineUser(userId);
+            // Removes the user from the online list unless they are still connected to another node
+            if (clusterRouter.userDisconnected(userId)) {
+                quitCurrentGame(userId);
+            }
             
             logger.info("WebSocket connection closed for user: {}", userId);
-            
-            // Broadcast user left to all other users
-            broadcastUserLeft(userId);
+        }
+    }
+    
+    /**
+     * A user who was only connected to other nodes has gone offline.
+     */
+    @EventListener
+    public void onUserLeftCluster(UserLeftClusterEvent event) {
+        quitCurrentGame(event.userId());
+    }
+    
+    private void quitCurrentGame(Long userId) {
+        String gameId = gameService.getUserCurrentGame(userId);
+        if (gameId != null) {
+            gameCommandExecutor.execute(gameId, () -> quitAndRecord(gameId, userId));
         }
     }
 
@@ -139,147 +235,230 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         return false;
     }
 
-    private void handleJoin(WebSocketSession session, JsonNode jsonNode) throws IOException {
-        Long userId = jsonNode.get("userId").asLong();
-        onlineUserService.addOnlineUser(userId);
+    private void handleJoin(WebSocketSession session, InboundFrame frame) throws IOException {
+        // A reconnecting client sends the epoch and last presence sequence number it applied
+        if (frame.lastSeq() != null && frame.epoch() != null
+                && onlineUserService.getPresenceEpoch().equals(frame.epoch())) {
+            long lastSeq = frame.lastSeq();
+            PresenceDelta delta = onlineUserService.getPresenceChangesSince(lastSeq);
+            if (delta.fromSeq() == lastSeq + 1) {
+                sendPresenceDeltaToUser(session, delta);
+                return;
+            }
+        }
         sendOnlineUsersToUser(session);
     }
 
-    private void handleChatMessage(WebSocketSession session, JsonNode jsonNode) {
+    private void handleChatMessage(WebSocketSession session, InboundFrame frame) {
         try {
-            Long senderId = sessionUserMap.get(session.getId());
-            Long receiverId = jsonNode.get("receiverId").asLong();
-            String messageText = jsonNode.get("message").asText();
+            Long senderId = sessionRegistry.getUserId(session);
+            Long receiverId = frame.receiverId();
+            String messageText = frame.message();
             
-            if (senderId != null && messageText != null && !messageText.trim().isEmpty()) {
-                // Save message to database
-                ChatMessage chatMessage = chatService.saveMessage(senderId, receiverId, messageText);
-                
-                // Send message to receiver if online
-                WebSocketSession receiverSession = getUserSession(receiverId);
-                logger.info("Looking for receiver {}, found session: {}", receiverId, receiverSession != null);
-                if (receiverSession != null) {
-                    logger.info("Sending message to receiver {}", receiverId);
-                    sendChatMessageToUser(receiverSession, chatMessage);
-                } else {
-                    logger.warn("Receiver {} is not online", receiverId);
-                }
-                
-                // Send confirmation to sender
-                logger.info("Sending confirmation to sender {}", senderId);
-                sendChatMessageToUser(session, chatMessage);
-                
-                logger.info("Chat message sent from {} to {}: {}", senderId, receiverId, messageText);
+            if (senderId != null && receiverId != null && messageText != null && !messageText.trim().isEmpty()) {
+                // The message replaces the typing indicator
+                typingSignals.stopped(senderId, receiverId);
+                // Hand the message to the journal; delivery happens once the journal allows it
+                chatService.saveMessage(senderId, receiverId, messageText)
+                    .thenAccept(chatMessage -> deliverChatMessage(chatMessage))
+                    .exceptionally(e -> {
+                        logger.error("Chat message from {} to {} could not be saved: ", senderId, receiverId, e);
+                        return null;
+                    });
             }
         } catch (Exception e) {
             logger.error("Error handling chat message: ", e);
         }
     }
 
-    private void sendOnlineUsersToUser(WebSocketSession session) throws IOException {
-        List<OnlineUser> onlineUsers = onlineUserService.getOnlineUsers();
+    private void deliverChatMessage(ChatMessage chatMessage) {
+        Long senderId = chatMessage.getSenderId();
+        Long receiverId = chatMessage.getReceiverId();
+        
+        // Send message to every session the receiver has open, on whichever node
+        if (clusterRouter.isReachable(receiverId)) {
+            logger.info("Sending message to receiver {}", receiverId);
+            sendChatMessageToUser(receiverId, chatMessage);
+        } else {
+            // Pushed in one frame when the receiver reconnects
+            unreadStateService.queueUndelivered(chatMessage);
+            logger.info("Receiver {} is not online, queued message {}", receiverId, chatMessage.getId());
+        }
         
-        Map<String, Object> message = Map.of(
-            "type", "online_users",
-            "users", onlineUsers
-        );
+        // Send confirmation to the sender, including their other tabs
+        logger.info("Sending confirmation to sender {}", senderId);
+        sendChatMessageToUser(senderId, chatMessage);
         
-        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+        logger.info("Chat message sent from {} to {}: {}", senderId, receiverId, chatMessage.getMessage());
     }
 
-    private void broadcastUserJoined(Long userId) {
-        OnlineUser user = onlineUserService.getOnlineUser(userId);
-        if (user != null) {
-            Map<String, Object> message = Map.of(
-                "type", "user_joined",
-                "user", user
-            );
-            
-            broadcast(message, userId);
+    // Typing indicators stay in memory; see TypingSignals
+    private void handleTyping(WebSocketSession session, InboundFrame frame, boolean typing) {
+        Long senderId = sessionRegistry.getUserId(session);
+        Long receiverId = frame.receiverId();
+        if (senderId == null || receiverId == null || senderId.equals(receiverId)) {
+            return;
+        }
+        if (typing) {
+            typingSignals.typing(senderId, receiverId);
+        } else {
+            typingSignals.stopped(senderId, receiverId);
         }
     }
 
-    private void broadcastUserLeft(Long userId) {
-        Map<String, Object> message = Map.of(
-            "type", "user_left",
-            "userId", userId
-        );
-        
-        broadcast(message, userId);
+    // The reader has seen the sender's messages up to messageId, or all of them when it is absent
+    private void handleMarkRead(WebSocketSession session, InboundFrame frame) {
+        Long readerId = sessionRegistry.getUserId(session);
+        Long senderId = frame.senderId();
+        if (readerId == null || senderId == null) {
+            return;
+        }
+        chatService.markMessagesAsRead(senderId, readerId, frame.messageId());
     }
 
-    private void sendChatMessageToUser(WebSocketSession session, ChatMessage chatMessage) {
-        try {
-            logger.info("Preparing to send chat message to session {}: {}", session.getId(), chatMessage.getMessage());
-            Map<String, Object> message = Map.of(
-                "type", "chat_message",
-                "message", Map.of(
-                    "id", chatMessage.getId(),
-                    "senderId", chatMessage.getSenderId(),
-                    "receiverId", chatMessage.getReceiverId(),
-                    "message", chatMessage.getMessage(),
-                    "timestamp", chatMessage.getTimestamp().toString(),
-                    "read", chatMessage.getIsRead()
-                )
-            );
-            
-            String messageJson = objectMapper.writeValueAsString(message);
-            logger.info("Sending WebSocket message: {}", messageJson);
-            session.sendMessage(new TextMessage(messageJson));
-            logger.info("WebSocket message sent successfully");
-        } catch (IOException e) {
-            logger.error("Error sending chat message to user: ", e);
-        }
+    @EventListener
+    public void onReadReceipt(ReadReceiptEvent event) {
+        clusterRouter.sendToUser(event.senderId(),
+            frameCodec.frame("read_receipt", ReadReceiptFrame.of(event.readerId(), event.readUpTo())));
     }
 
-    private void broadcast(Map<String, Object> message, Long excludeUserId) {
-        String messageJson;
-        try {
-            messageJson = objectMapper.writeValueAsString(message);
-        } catch (IOException e) {
-            logger.error("Error serializing broadcast message: ", e);
+    /**
+     * Tells a new session how many unread messages the user has. The user's
+     * first session also gets the messages that arrived while they were offline.
+     * Counts that are not in memory yet are loaded on a loader thread, which
+     * sends the frame, so the connecting thread never waits on the database.
+     */
+    private void sendUnreadState(SessionSendQueue queue, Long userId) {
+        boolean firstSession = sessionRegistry.getUserSessions(userId).size() == 1;
+        unreadStateService.loadUnreadCounts(userId).whenComplete((counts, error) -> {
+            if (error != null) {
+                logger.error("Error loading unread state of user {}", userId, error);
+                return;
+            }
+            // Gone before the load finished; the queued messages stay for the next session
+            if (!queue.getSession().isOpen()) {
+                return;
+            }
+            List<ChatMessageBody> messages = new ArrayList<>();
+            if (firstSession) {
+                unreadStateService.takeUndelivered(userId).forEach(message -> messages.add(ChatMessageBody.of(message)));
+            }
+            queue.send(frameCodec.frame("unread_state", UnreadStateFrame.of(counts.total(), counts.bySender(), messages)));
+        });
+    }
+
+    private void sendOnlineUsersToUser(WebSocketSession session) throws IOException {
+        SessionSendQueue queue = sessionRegistry.getQueue(session);
+        if (queue == null) {
             return;
         }
         
-        sessions.values().parallelStream().forEach(session -> {
-            Long sessionUserId = sessionUserMap.get(session.getId());
-            if (sessionUserId != null && !sessionUserId.equals(excludeUserId)) {
-                try {
-                    session.sendMessage(new TextMessage(messageJson));
-                } catch (IOException e) {
-                    logger.error("Error sending broadcast message to session {}: ", session.getId(), e);
-                }
-            }
-        });
+        // Large lists are split into pages that all carry the snapshot's sequence number
+        PresenceSnapshot snapshot = onlineUserService.getPresenceSnapshot();
+        List<OnlineUser> users = snapshot.users();
+        int totalPages = Math.max(1, (users.size() + snapshotPageSize - 1) / snapshotPageSize);
+        
+        List<WebSocketMessage<?>> pages = new ArrayList<>(totalPages);
+        for (int page = 0; page < totalPages; page++) {
+            List<OnlineUser> pageUsers = users.subList(page * snapshotPageSize,
+                Math.min((page + 1) * snapshotPageSize, users.size()));
+            OnlineUsersFrame frame = OnlineUsersFrame.of(
+                onlineUserService.getPresenceEpoch(), snapshot.seq(), page, totalPages, pageUsers);
+            pages.add(frameCodec.frame("online_users", frame).messageFor(queue.getWireFormat()));
+        }
+        queue.sendAll(pages);
     }
 
-    private WebSocketSession getUserSession(Long userId) {
-        return sessions.values().stream()
-            .filter(session -> userId.equals(sessionUserMap.get(session.getId())))
-            .findFirst()
-            .orElse(null);
+    private void sendPresenceDeltaToUser(WebSocketSession session, PresenceDelta delta) throws IOException {
+        SessionSendQueue queue = sessionRegistry.getQueue(session);
+        if (queue != null) {
+            queue.send(presenceBroadcaster.toPresenceUpdate(delta, onlineUserService.getPresenceEpoch()));
+        }
     }
 
-    private String getUserIdFromSession(WebSocketSession session) {
-        URI uri = session.getUri();
-        if (uri != null && uri.getQuery() != null) {
-            String[] params = uri.getQuery().split("&");
-            for (String param : params) {
-                String[] keyValue = param.split("=");
-                if (keyValue.length == 2 && "userId".equals(keyValue[0])) {
-                    return keyValue[1];
-                }
+    private void sendChatMessageToUser(Long userId, ChatMessage chatMessage) {
+        logger.info("Preparing to send chat message to user {}: {}", userId, chatMessage.getMessage());
+        sendToUser(userId, frameCodec.frame("chat_message", ChatMessageFrame.of(chatMessage)));
+        logger.info("WebSocket message sent successfully");
+    }
+
+    private void sendToUser(Long userId, OutboundFrame frame) {
+        clusterRouter.sendToUser(userId, frame);
+    }
+
+    private OutboundFrame gameFrame(String type, Object data) {
+        return frameCodec.frame(type, new GameFrame(type, data));
+    }
+
+    // Game-related handlers
+    
+    // Who sent a game command; queue is null when another node forwarded it
+    private record Caller(Long userId, SessionSendQueue queue) {
+    }
+    
+    @FunctionalInterface
+    private interface GameCommand {
+        void run(Caller caller, InboundFrame frame) throws IOException;
+    }
+    
+    private GameCommand gameCommand(String type) {
+        return switch (type) {
+            case "accept_game_invitation" -> this::handleAcceptGameInvitation;
+            case "decline_game_invitation" -> this::handleDeclineGameInvitation;
+            case "game_move" -> this::handleGameMove;
+            case "game_sync" -> this::handleGameSync;
+            case "quit_game" -> this::handleQuitGame;
+            case "watch_game" -> this::handleWatchGame;
+            case "unwatch_game" -> this::handleUnwatchGame;
+            case "play_again_request" -> this::handlePlayAgainRequest;
+            default -> null;
+        };
+    }
+    
+    // A game lives on the node that created it; commands for games owned elsewhere are forwarded there
+    private void runInGame(WebSocketSession session, InboundFrame frame, GameCommand command) {
+        if (frame.gameId() == null) {
+            return;
+        }
+        Long userId = sessionRegistry.getUserId(session);
+        if (!gameService.isLocalGame(frame.gameId())) {
+            if (userId != null) {
+                clusterRouter.forwardGameCommand(gameService.getOwnerNode(frame.gameId()), userId, frame);
             }
+            return;
         }
-        return null;
+        runInGame(new Caller(userId, sessionRegistry.getQueue(session)), frame, command);
     }
     
-    // Game-related handlers
-    private void handleSendGameInvitation(WebSocketSession session, JsonNode jsonNode) throws IOException {
-        Long inviterUserId = sessionUserMap.get(session.getId());
-        Long invitedUserId = jsonNode.get("data").get("toUserId").asLong();
+    // Commands for an existing game run on that game's serial lane, never concurrently with each other
+    private void runInGame(Caller caller, InboundFrame frame, GameCommand command) {
+        gameCommandExecutor.execute(frame.gameId(), () -> {
+            try {
+                command.run(caller, frame);
+            } catch (Exception e) {
+                logger.error("Error handling {} for game {}: ", frame.type(), frame.gameId(), e);
+            }
+        });
+    }
+    
+    /**
+     * Runs a game command another node forwarded on behalf of one of its users.
+     */
+    @EventListener
+    public void onForwardedGameCommand(ForwardedGameCommandEvent event) {
+        InboundFrame frame = event.frame();
+        GameCommand command = frame != null && frame.type() != null ? gameCommand(frame.type()) : null;
+        if (command == null || frame.gameId() == null || !gameService.isLocalGame(frame.gameId())) {
+            return;
+        }
+        runInGame(new Caller(event.userId(), null), frame, command);
+    }
+    
+    private void handleSendGameInvitation(WebSocketSession session, InboundFrame frame) throws IOException {
+        Long inviterUserId = sessionRegistry.getUserId(session);
+        Long invitedUserId = frame.toUserId();
         
-        if (inviterUserId == null) {
+        if (inviterUserId == null || invitedUserId == null) {
             return;
         }
         
@@ -291,73 +470,170 @@ public class ChatWebSocketHandler implements WebSocketHandler {
             return;
         }
         
+        GameRules rules = rulesFrom(frame);
+        if (rules == null) {
+            logger.warn("Rejected game invitation from user {} with invalid rules", inviterUserId);
+            return;
+        }
+        
         // Create game invitation
         CaroGame game = gameService.createGameInvitation(
             inviterUserId, inviter.getName(),
-            invitedUserId, invited.getName()
+            invitedUserId, invited.getName(),
+            rules
         );
         
+        // Loaded while the invitation is pending, so game_start does not wait for it
+        gameHistoryService.prefetch(inviterUserId, invitedUserId);
+        
         // Send invitation to the invited user
-        WebSocketSession invitedSession = getUserSession(invitedUserId);
-        if (invitedSession != null) {
-            Map<String, Object> message = Map.of(
-                "type", "game_invitation",
-                "data", Map.of(
-                    "gameId", game.getGameId(),
-                    "fromUser", Map.of(
-                        "id", inviter.getId(),
-                        "name", inviter.getName()
-                    ),
-                    "toUser", Map.of(
-                        "id", invited.getId(),
-                        "name", invited.getName()
-                    ),
-                    "timestamp", LocalDateTime.now().toString()
-                )
+        if (clusterRouter.isReachable(invitedUserId)) {
+            GameInvitationData invitation = new GameInvitationData(
+                game.getGameId(),
+                new UserRef(inviter.getId(), inviter.getName()),
+                new UserRef(invited.getId(), invited.getName()),
+                game.getRules(),
+                LocalDateTime.now().toString()
             );
-            
-            String messageJson = objectMapper.writeValueAsString(message);
-            invitedSession.sendMessage(new TextMessage(messageJson));
+            sendToUser(invitedUserId, gameFrame("game_invitation", invitation));
         }
         
         logger.info("Game invitation sent from user {} to user {}", inviterUserId, invitedUserId);
     }
     
-    private void handleAcceptGameInvitation(WebSocketSession session, JsonNode jsonNode) throws IOException {
-        Long userId = sessionUserMap.get(session.getId());
-        String gameId = jsonNode.get("data").get("gameId").asText();
+    // Rules requested in the invitation, falling back to the standard ones for anything left out.
+    // Unbounded boards are refused: snapshots carry a fixed grid and the client only draws one
+    private GameRules rulesFrom(InboundFrame frame) {
+        GameRules standard = GameRules.standard();
+        if (frame.boardSize() != null && frame.boardSize() == GameRules.UNBOUNDED) {
+            return null;
+        }
+        try {
+            return new GameRules(
+                frame.boardSize() != null ? frame.boardSize() : standard.boardSize(),
+                frame.winLength() != null ? frame.winLength() : standard.winLength(),
+                frame.exactLength() != null ? frame.exactLength() : standard.exactLength(),
+                frame.blockedEnds() != null ? frame.blockedEnds() : standard.blockedEnds()
+            );
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private void handleJoinMatchmaking(WebSocketSession session) {
+        Long userId = sessionRegistry.getUserId(session);
+        if (userId == null || gameService.isUserInGame(userId)) {
+            return;
+        }
         
+        OnlineUser user = onlineUserService.getOnlineUser(userId);
+        if (user == null) {
+            return;
+        }
+        
+        // Confirmed before joining: a match found at once sends game_start straight away
+        int rating = ratingService.getRating(userId).rating();
+        sendToUser(userId, gameFrame("matchmaking_status",
+            new MatchmakingStatusData("queued", rating, matchmakingService.getWaitingCount())));
+        matchmakingService.join(userId, user.getName(), rating);
+        
+        logger.info("User {} joined matchmaking with rating {}", userId, rating);
+    }
+    
+    private void handleLeaveMatchmaking(WebSocketSession session) {
+        Long userId = sessionRegistry.getUserId(session);
+        if (userId == null || !matchmakingService.leave(userId)) {
+            return;
+        }
+        
+        int rating = ratingService.getRating(userId).rating();
+        sendToUser(userId, gameFrame("matchmaking_status",
+            new MatchmakingStatusData("left", rating, matchmakingService.getWaitingCount())));
+    }
+    
+    /**
+     * Starts the game for two players paired by matchmaking. A player who has
+     * gone offline or started another game meanwhile is dropped, and the
+     * other is put back in the pool.
+     */
+    @EventListener
+    public void onMatchFound(MatchFoundEvent event) {
+        MatchmakingService.Ticket first = event.first();
+        MatchmakingService.Ticket second = event.second();
+        boolean firstAvailable = sessionRegistry.hasSessions(first.userId()) && !gameService.isUserInGame(first.userId());
+        boolean secondAvailable = sessionRegistry.hasSessions(second.userId()) && !gameService.isUserInGame(second.userId());
+        if (!firstAvailable || !secondAvailable) {
+            if (firstAvailable) {
+                matchmakingService.join(first);
+            }
+            if (secondAvailable) {
+                matchmakingService.join(second);
+            }
+            return;
+        }
+        
+        CaroGame game = gameService.createGameInvitation(first.userId(), first.name(), second.userId(), second.name());
+        gameService.acceptGameInvitation(game.getGameId(), second.userId());
+        gameCommandExecutor.execute(game.getGameId(), () -> {
+            try {
+                broadcastGameStart(game);
+            } catch (IOException e) {
+                logger.error("Error starting matched game {}: ", game.getGameId(), e);
+            }
+        });
+        
+        logger.info("Matched users {} ({}) and {} ({}) in game {}", first.userId(), first.rating(),
+            second.userId(), second.rating(), game.getGameId());
+    }
+    
+    private void handleStartAiGame(WebSocketSession session, InboundFrame frame) throws IOException {
+        Long userId = sessionRegistry.getUserId(session);
         if (userId == null) {
             return;
         }
         
+        OnlineUser user = onlineUserService.getOnlineUser(userId);
+        if (user == null) {
+            return;
+        }
+        
+        GameRules rules = rulesFrom(frame);
+        if (rules == null) {
+            rules = GameRules.standard();
+        }
+        
+        CaroGame game = gameService.createAiGame(userId, user.getName(), rules);
+        broadcastGameStart(game);
+        
+        logger.info("Game {} started between user {} and the computer", game.getGameId(), userId);
+    }
+    
+    private void handleAcceptGameInvitation(Caller caller, InboundFrame frame) throws IOException {
+        Long userId = caller.userId();
+        String gameId = frame.gameId();
+        
+        if (userId == null || gameId == null) {
+            return;
+        }
+        
         // Accept the game
         CaroGame game = gameService.acceptGameInvitation(gameId, userId);
         if (game == null) {
             return;
         }
         
-        // Initialize scoreboard for new game
-        Map<String, Integer> scoreboard = gameScoreboards.computeIfAbsent(gameId, k -> {
-            Map<String, Integer> newScoreboard = new HashMap<>();
-            newScoreboard.put("player1Wins", 0);
-            newScoreboard.put("player2Wins", 0);
-            newScoreboard.put("draws", 0);
-            return newScoreboard;
-        });
-        
-        // Notify both players that game started
-        broadcastGameStartWithScoreboard(game, scoreboard);
+        // Notify both players that game started, with their head-to-head score so far
+        broadcastGameStart(game);
         
         logger.info("Game {} started between players {} and {}", 
             gameId, game.getPlayer1().getId(), game.getPlayer2().getId());
     }
     
-    private void handleDeclineGameInvitation(WebSocketSession session, JsonNode jsonNode) throws IOException {
-        Long userId = sessionUserMap.get(session.getId());
-        String gameId = jsonNode.get("data").get("gameId").asText();
+    private void handleDeclineGameInvitation(Caller caller, InboundFrame frame) throws IOException {
+        Long userId = caller.userId();
+        String gameId = frame.gameId();
         
-        if (userId == null) {
+        if (userId == null || gameId == null) {
             return;
         }
         
@@ -366,15 +642,15 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         logger.info("Game invitation {} declined by user {}", gameId, userId);
     }
     
-    private void handleGameMove(WebSocketSession session, JsonNode jsonNode) throws IOException {
-        Long userId = sessionUserMap.get(session.getId());
-        String gameId = jsonNode.get("data").get("gameId").asText();
-        int row = jsonNode.get("data").get("row").asInt();
-        int col = jsonNode.get("data").get("col").asInt();
+    private void handleGameMove(Caller caller, InboundFrame frame) throws IOException {
+        Long userId = caller.userId();
+        String gameId = frame.gameId();
         
-        if (userId == null) {
+        if (userId == null || gameId == null || frame.row() == null || frame.col() == null) {
             return;
         }
+        int row = frame.row();
+        int col = frame.col();
         
         // Make the move
         CaroGame game = gameService.makeMove(gameId, userId, row, col);
@@ -388,53 +664,191 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         // If game finished, broadcast game end
         if (game.getStatus() == CaroGame.GameStatus.FINISHED) {
             updateScoreboardAndBroadcastGameEnd(game);
+        } else if (gameService.isAiGame(game)) {
+            requestAiMove(game);
         }
         
         logger.info("Move made in game {} by user {} at position [{}, {}]", gameId, userId, row, col);
     }
     
-    private void handleQuitGame(WebSocketSession session, JsonNode jsonNode) throws IOException {
-        Long userId = sessionUserMap.get(session.getId());
-        String gameId = jsonNode.get("data").get("gameId").asText();
+    // Runs on the game's lane. The search runs on the AI pool; its move is applied back on the lane
+    private void requestAiMove(CaroGame game) {
+        String gameId = game.getGameId();
+        int moveNumber = game.getMoveNumber();
+        aiPlayer.chooseMove(game).whenComplete((result, error) -> {
+            if (error != null) {
+                logger.error("AI search failed for game {}: ", gameId, error);
+            } else if (result != null) {
+                gameCommandExecutor.execute(gameId, () -> applyAiMove(gameId, moveNumber, result));
+            }
+        });
+    }
+    
+    private void applyAiMove(String gameId, int moveNumber, SearchResult result) {
+        // The user may have quit or the game expired while the AI was thinking
+        CaroGame game = gameService.getGame(gameId);
+        if (game == null || game.getMoveNumber() != moveNumber) {
+            return;
+        }
+        if (gameService.makeMove(gameId, GameService.AI_PLAYER_ID, result.row(), result.col()) == null) {
+            logger.warn("AI move [{}, {}] rejected in game {}", result.row(), result.col(), gameId);
+            return;
+        }
         
-        if (userId == null) {
+        try {
+            broadcastGameMove(game, result.row(), result.col());
+            if (game.getStatus() == CaroGame.GameStatus.FINISHED) {
+                updateScoreboardAndBroadcastGameEnd(game);
+            }
+        } catch (IOException e) {
+            logger.error("Error sending AI move for game {}: ", gameId, e);
+        }
+        
+        logger.debug("AI moved in game {} at [{}, {}] after searching {} nodes to depth {}",
+            gameId, result.row(), result.col(), result.nodes(), result.depth());
+    }
+    
+    private void handleGameSync(Caller caller, InboundFrame frame) throws IOException {
+        Long userId = caller.userId();
+        String gameId = frame.gameId();
+        SessionSendQueue queue = caller.queue();
+        
+        if (userId == null || gameId == null) {
             return;
         }
         
-        gameService.quitGame(gameId, userId);
+        CaroGame game = gameService.getGame(gameId);
+        boolean spectating = queue != null && gameSpectators.isSpectating(gameId, queue);
+        if (game == null || (game.getSymbolByPlayerId(userId) == null && !spectating)) {
+            return;
+        }
         
-        // Get opponent and notify
+        // Only the session that noticed the gap needs the full board; a player on another node gets it on all tabs
+        OutboundFrame snapshot = gameFrame("game_snapshot", snapshotOf(game));
+        if (queue != null) {
+            queue.send(snapshot);
+        } else {
+            sendToUser(userId, snapshot);
+        }
+        
+        logger.info("Sent snapshot of game {} at move {} to user {}", gameId, game.getMoveNumber(), userId);
+    }
+    
+    private GameSnapshotData snapshotOf(CaroGame game) {
+        int[] lastMove = game.getLastMove();
+        return new GameSnapshotData(
+            game.getGameId(),
+            game.getMoveNumber(),
+            game.getBoard(),
+            game.getCurrentPlayer(),
+            game.getStatus().toString(),
+            game.getWinner(),
+            game.getWinningLine(),
+            lastMove != null ? new Move(lastMove[0], lastMove[1]) : null
+        );
+    }
+    
+    private void handleWatchGame(Caller caller, InboundFrame frame) throws IOException {
+        Long userId = caller.userId();
+        String gameId = frame.gameId();
+        SessionSendQueue queue = caller.queue();
+        
+        // Spectating needs a session on the node that owns the game, so forwarded watches are ignored
+        if (userId == null || gameId == null || queue == null) {
+            return;
+        }
+        
+        // Invitations cannot be watched, and players already get every frame
+        CaroGame game = gameService.getGame(gameId);
+        if (game == null || game.getStatus() == CaroGame.GameStatus.WAITING
+                || game.getSymbolByPlayerId(userId) != null) {
+            return;
+        }
+        
+        if (!gameSpectators.subscribe(gameId, queue)) {
+            logger.warn("Game {} has too many spectators, rejected user {}", gameId, userId);
+            return;
+        }
+        
+        // Queued on the game's lane, so every move after this snapshot follows it in order
+        GameWatchData watch = new GameWatchData(
+            gameId,
+            playersOf(game),
+            game.getRules(),
+            gameHistoryService.getCachedScoreboard(game),
+            snapshotOf(game),
+            gameSpectators.getSpectatorCount(gameId)
+        );
+        queue.send(gameFrame("game_watch", watch));
+        
+        logger.info("User {} is watching game {}", userId, gameId);
+    }
+    
+    private void handleUnwatchGame(Caller caller, InboundFrame frame) throws IOException {
+        SessionSendQueue queue = caller.queue();
+        if (queue != null && frame.gameId() != null) {
+            gameSpectators.unsubscribe(frame.gameId(), queue);
+        }
+    }
+    
+    private void handleQuitGame(Caller caller, InboundFrame frame) throws IOException {
+        Long userId = caller.userId();
+        String gameId = frame.gameId();
+        
+        if (userId == null || gameId == null) {
+            return;
+        }
+        
+        // Look the opponent up first; quitting removes the game
         Long opponentId = gameService.getOpponentId(gameId, userId);
-        if (opponentId != null) {
-            WebSocketSession opponentSession = getUserSession(opponentId);
-            if (opponentSession != null) {
-                Map<String, Object> message = Map.of(
-                    "type", "game_end",
-                    "data", Map.of(
-                        "winner", gameService.getGame(gameId) != null ? 
-                                 gameService.getGame(gameId).getWinner() : null,
-                        "reason", "opponent_quit"
-                    )
-                );
-                
-                String messageJson = objectMapper.writeValueAsString(message);
-                opponentSession.sendMessage(new TextMessage(messageJson));
-            }
+        OutboundFrame gameEnd = quitAndRecord(gameId, userId);
+        
+        // Notify the opponent
+        if (opponentId != null && gameEnd != null) {
+            sendToUser(opponentId, gameEnd);
         }
         
         logger.info("User {} quit game {}", userId, gameId);
     }
     
-    private void handlePlayAgainRequest(WebSocketSession session, JsonNode jsonNode) throws IOException {
-        Long userId = sessionUserMap.get(session.getId());
-        String gameId = jsonNode.get("data").get("gameId").asText();
+    /**
+     * Quits the game for the user and tells its spectators, who are then
+     * dropped. A game that was in progress counts as a win for the opponent
+     * and is recorded. Returns the game_end frame, or null if there was no game.
+     */
+    private OutboundFrame quitAndRecord(String gameId, Long userId) {
+        CaroGame game = gameService.getGame(gameId);
+        if (game == null) {
+            return null;
+        }
+        boolean inProgress = game.getStatus() == CaroGame.GameStatus.PLAYING;
+        gameService.quitGame(gameId, userId);
+        // Not waiting for a score that is still loading: without one, clients keep the score they show
+        Map<String, Integer> scoreboard = inProgress
+            ? gameHistoryService.recordFinishedGame(game, "opponent_quit").getNow(null)
+            : null;
+        
+        OutboundFrame frame = gameFrame("game_end",
+            new GameEndData(gameId, game.getWinner(), null, null, "opponent_quit", scoreboard));
+        gameSpectators.multicast(gameId, frame);
+        gameSpectators.removeGame(gameId);
+        return frame;
+    }
+    
+    private void handlePlayAgainRequest(Caller caller, InboundFrame frame) throws IOException {
+        Long userId = caller.userId();
+        String gameId = frame.gameId();
         
-        if (userId == null) {
+        if (userId == null || gameId == null) {
             return;
         }
         
-        // Add user to play again requests
-        playAgainRequests.computeIfAbsent(gameId, k -> new HashSet<>()).add(userId);
+        // The computer always agrees to a rematch
+        CaroGame game = gameService.getGame(gameId);
+        if (game != null && gameService.isAiGame(game)) {
+            startNewAiGame(game, userId);
+            return;
+        }
         
         // Get the other player
         Long opponentId = gameService.getOpponentId(gameId, userId);
@@ -443,25 +857,13 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         }
         
         // Check if both players requested play again
-        Set<Long> requests = playAgainRequests.get(gameId);
-        if (requests.contains(userId) && requests.contains(opponentId)) {
+        if (gameService.requestPlayAgain(gameId, userId, opponentId)) {
             // Both players agreed, start new game
             startNewGame(gameId, userId, opponentId);
-            playAgainRequests.remove(gameId);
         } else {
             // Send play again request to opponent
-            WebSocketSession opponentSession = getUserSession(opponentId);
-            if (opponentSession != null) {
-                Map<String, Object> message = Map.of(
-                    "type", "play_again_request",
-                    "data", Map.of(
-                        "gameId", gameId,
-                        "requesterUserId", userId
-                    )
-                );
-                
-                String messageJson = objectMapper.writeValueAsString(message);
-                opponentSession.sendMessage(new TextMessage(messageJson));
+            if (clusterRouter.isReachable(opponentId)) {
+                sendToUser(opponentId, gameFrame("play_again_request", new PlayAgainData(gameId, userId)));
             }
         }
         
@@ -477,211 +879,140 @@ public class ChatWebSocketHandler implements WebSocketHandler {
             return;
         }
         
-        // Create new game
+        // Create new game under the same rules as the previous one
+        CaroGame oldGame = gameService.getGame(oldGameId);
         CaroGame newGame = gameService.createGameInvitation(
             player1Id, player1.getName(),
-            player2Id, player2.getName()
+            player2Id, player2.getName(),
+            oldGame != null ? oldGame.getRules() : GameRules.standard()
         );
         
         // Accept immediately to start playing
         gameService.acceptGameInvitation(newGame.getGameId(), player2Id);
         
-        // Get/update scoreboard
-        Map<String, Integer> scoreboard = gameScoreboards.computeIfAbsent(oldGameId, k -> {
-            Map<String, Integer> newScoreboard = new HashMap<>();
-            newScoreboard.put("player1Wins", 0);
-            newScoreboard.put("player2Wins", 0);
-            newScoreboard.put("draws", 0);
-            return newScoreboard;
-        });
-        
-        // Transfer scoreboard to new game
-        gameScoreboards.put(newGame.getGameId(), scoreboard);
-        
-        // Broadcast game start with scoreboard
-        broadcastGameStartWithScoreboard(newGame, scoreboard);
+        // Broadcast game start with the players' head-to-head score
+        broadcastGameStart(newGame);
         
         logger.info("New game {} started between players {} and {} with scoreboard", 
             newGame.getGameId(), player1Id, player2Id);
     }
     
-    private void broadcastGameStartWithScoreboard(CaroGame game, Map<String, Integer> scoreboard) throws IOException {
-        Map<String, Object> message = Map.of(
-            "type", "game_start",
-            "data", Map.of(
-                "gameId", game.getGameId(),
-                "currentPlayer", game.getCurrentPlayer(),
-                "players", Map.of(
-                    "player1", Map.of(
-                        "id", game.getPlayer1().getId(),
-                        "name", game.getPlayer1().getName(),
-                        "symbol", game.getPlayer1().getSymbol()
-                    ),
-                    "player2", Map.of(
-                        "id", game.getPlayer2().getId(),
-                        "name", game.getPlayer2().getName(),
-                        "symbol", game.getPlayer2().getSymbol()
-                    )
-                ),
-                "scoreboard", scoreboard
-            )
-        );
+    private void startNewAiGame(CaroGame oldGame, Long userId) throws IOException {
+        if (!userId.equals(oldGame.getPlayer1().getId())) {
+            return;
+        }
         
-        String messageJson = objectMapper.writeValueAsString(message);
+        CaroGame newGame = gameService.createAiGame(userId, oldGame.getPlayer1().getName(), oldGame.getRules());
+        broadcastGameStart(newGame);
         
-        // Send to both players
-        WebSocketSession player1Session = getUserSession(game.getPlayer1().getId());
-        WebSocketSession player2Session = getUserSession(game.getPlayer2().getId());
-        
-        if (player1Session != null) {
-            player1Session.sendMessage(new TextMessage(messageJson));
-        }
-        if (player2Session != null) {
-            player2Session.sendMessage(new TextMessage(messageJson));
-        }
+        logger.info("New game {} started between user {} and the computer with scoreboard",
+            newGame.getGameId(), userId);
     }
     
-    private void updateScoreboardAndBroadcastGameEnd(CaroGame game) throws IOException {
+    // Sent at once when the score is cached; otherwise once it has loaded, back on the game's lane
+    private void broadcastGameStart(CaroGame game) throws IOException {
+        CompletableFuture<Map<String, Integer>> scoreboard = gameHistoryService.getScoreboard(game);
+        if (scoreboard.isDone()) {
+            broadcastGameStartWithScoreboard(game, scoreboard.join());
+            return;
+        }
         String gameId = game.getGameId();
-        Map<String, Integer> scoreboard = gameScoreboards.computeIfAbsent(gameId, k -> {
-            Map<String, Integer> newScoreboard = new HashMap<>();
-            newScoreboard.put("player1Wins", 0);
-            newScoreboard.put("player2Wins", 0);
-            newScoreboard.put("draws", 0);
-            return newScoreboard;
-        });
-        
-        // Update scoreboard based on winner
-        String winner = game.getWinner();
-        if (winner != null) {
-            if ("X".equals(winner)) {
-                scoreboard.put("player1Wins", scoreboard.get("player1Wins") + 1);
-            } else if ("O".equals(winner)) {
-                scoreboard.put("player2Wins", scoreboard.get("player2Wins") + 1);
+        scoreboard.thenAccept(loaded -> gameCommandExecutor.execute(gameId, () -> {
+            try {
+                broadcastGameStartWithScoreboard(game, loaded);
+            } catch (IOException e) {
+                logger.error("Error starting game {}: ", gameId, e);
             }
-        } else {
-            // Draw
-            scoreboard.put("draws", scoreboard.get("draws") + 1);
-        }
-        
-        // Broadcast game end with updated scoreboard
-        Map<String, Object> gameData = new HashMap<>();
-        gameData.put("gameId", game.getGameId());
-        gameData.put("winner", game.getWinner());
-        gameData.put("winningLine", game.getWinningLine());
-        gameData.put("status", "finished");
-        gameData.put("scoreboard", scoreboard);
-        
-        Map<String, Object> message = Map.of(
-            "type", "game_end",
-            "data", gameData
+        }));
+    }
+    
+    private void broadcastGameStartWithScoreboard(CaroGame game, Map<String, Integer> scoreboard) throws IOException {
+        GameStartData gameStart = new GameStartData(
+            game.getGameId(),
+            game.getCurrentPlayer(),
+            playersOf(game),
+            game.getRules(),
+            scoreboard
         );
-        
-        String messageJson = objectMapper.writeValueAsString(message);
+        OutboundFrame frame = gameFrame("game_start", gameStart);
         
         // Send to both players
-        WebSocketSession player1Session = getUserSession(game.getPlayer1().getId());
-        WebSocketSession player2Session = getUserSession(game.getPlayer2().getId());
-        
-        if (player1Session != null) {
-            player1Session.sendMessage(new TextMessage(messageJson));
-        }
-        if (player2Session != null) {
-            player2Session.sendMessage(new TextMessage(messageJson));
-        }
+        sendToUser(game.getPlayer1().getId(), frame);
+        sendToUser(game.getPlayer2().getId(), frame);
     }
     
-    private void broadcastGameStart(CaroGame game) throws IOException {
-        Map<String, Object> message = Map.of(
-            "type", "game_start",
-            "data", Map.of(
-                "gameId", game.getGameId(),
-                "currentPlayer", game.getCurrentPlayer(),
-                "players", Map.of(
-                    "player1", Map.of(
-                        "id", game.getPlayer1().getId(),
-                        "name", game.getPlayer1().getName(),
-                        "symbol", game.getPlayer1().getSymbol()
-                    ),
-                    "player2", Map.of(
-                        "id", game.getPlayer2().getId(),
-                        "name", game.getPlayer2().getName(),
-                        "symbol", game.getPlayer2().getSymbol()
-                    )
-                )
-            )
+    private static Players playersOf(CaroGame game) {
+        return new Players(
+            new PlayerInfo(game.getPlayer1().getId(), game.getPlayer1().getName(), game.getPlayer1().getSymbol()),
+            new PlayerInfo(game.getPlayer2().getId(), game.getPlayer2().getName(), game.getPlayer2().getSymbol())
         );
-        
-        String messageJson = objectMapper.writeValueAsString(message);
-        
-        // Send to both players
-        WebSocketSession player1Session = getUserSession(game.getPlayer1().getId());
-        WebSocketSession player2Session = getUserSession(game.getPlayer2().getId());
-        
-        if (player1Session != null) {
-            player1Session.sendMessage(new TextMessage(messageJson));
-        }
-        if (player2Session != null) {
-            player2Session.sendMessage(new TextMessage(messageJson));
+    }
+    
+    private void updateScoreboardAndBroadcastGameEnd(CaroGame game) throws IOException {
+        CompletableFuture<Map<String, Integer>> scoreboard = gameHistoryService.recordFinishedGame(game, "finished");
+        if (scoreboard.isDone()) {
+            broadcastGameEnd(game, scoreboard.join());
+            return;
         }
+        // The score had to be loaded; the game is over, so nothing else on the lane depends on this frame
+        String gameId = game.getGameId();
+        scoreboard.thenAccept(updated -> gameCommandExecutor.execute(gameId, () -> {
+            try {
+                broadcastGameEnd(game, updated);
+            } catch (IOException e) {
+                logger.error("Error ending game {}: ", gameId, e);
+            }
+        }));
     }
     
-    private void broadcastGameMove(CaroGame game, int row, int col) throws IOException {
-        Map<String, Object> gameData = new HashMap<>();
-        gameData.put("gameId", game.getGameId());
-        gameData.put("board", game.getBoard());
-        gameData.put("currentPlayer", game.getCurrentPlayer());
-        gameData.put("status", game.getStatus().toString());
-        gameData.put("winner", game.getWinner());
-        gameData.put("winningLine", game.getWinningLine());
-        
-        Map<String, Object> lastMove = new HashMap<>();
-        lastMove.put("row", row);
-        lastMove.put("col", col);
-        gameData.put("lastMove", lastMove);
-        
-        Map<String, Object> message = Map.of(
-            "type", "game_move",
-            "data", gameData
-        );
-        
-        String messageJson = objectMapper.writeValueAsString(message);
+    private void broadcastGameEnd(CaroGame game, Map<String, Integer> scoreboard) throws IOException {
+        // Broadcast game end with updated scoreboard
+        GameEndData gameEnd = new GameEndData(game.getGameId(), game.getWinner(), game.getWinningLine(),
+            "finished", null, scoreboard);
+        OutboundFrame frame = gameFrame("game_end", gameEnd);
         
         // Send to both players
-        WebSocketSession player1Session = getUserSession(game.getPlayer1().getId());
-        WebSocketSession player2Session = getUserSession(game.getPlayer2().getId());
-        
-        if (player1Session != null) {
-            player1Session.sendMessage(new TextMessage(messageJson));
-        }
-        if (player2Session != null) {
-            player2Session.sendMessage(new TextMessage(messageJson));
-        }
+        sendToUser(game.getPlayer1().getId(), frame);
+        sendToUser(game.getPlayer2().getId(), frame);
+        gameSpectators.multicast(game.getGameId(), frame);
     }
     
-    private void broadcastGameEnd(CaroGame game) throws IOException {
-        Map<String, Object> gameData = new HashMap<>();
-        gameData.put("gameId", game.getGameId());
-        gameData.put("winner", game.getWinner());
-        gameData.put("winningLine", game.getWinningLine());
-        gameData.put("status", "finished");
-        
-        Map<String, Object> message = Map.of(
-            "type", "game_end",
-            "data", gameData
+    /**
+     * Tells both players and any spectators that the lifecycle sweeper evicted
+     * their game.
+     */
+    @EventListener
+    public void onGameExpired(GameExpiredEvent event) {
+        CaroGame game = event.game();
+        OutboundFrame frame = gameFrame("game_expired",
+            new GameExpiredData(game.getGameId(), event.reason().name().toLowerCase()));
+        sendToUser(game.getPlayer1().getId(), frame);
+        sendToUser(game.getPlayer2().getId(), frame);
+        gameSpectators.multicast(game.getGameId(), frame);
+        gameSpectators.removeGame(game.getGameId());
+    }
+    
+    private void broadcastGameMove(CaroGame game, int row, int col) throws IOException {
+        // Only the move itself; the outcome is included on the move that ends the game
+        boolean finished = game.getStatus() == CaroGame.GameStatus.FINISHED;
+        GameMoveData gameMove = new GameMoveData(
+            game.getGameId(),
+            game.getMoveNumber(),
+            row,
+            col,
+            game.getCell(row, col),
+            game.getCurrentPlayer(),
+            finished ? game.getStatus().toString() : null,
+            finished ? game.getWinner() : null,
+            finished ? game.getWinningLine() : null
         );
-        
-        String messageJson = objectMapper.writeValueAsString(message);
+        OutboundFrame frame = gameFrame("game_move", gameMove);
         
         // Send to both players
-        WebSocketSession player1Session = getUserSession(game.getPlayer1().getId());
-        WebSocketSession player2Session = getUserSession(game.getPlayer2().getId());
+        sendToUser(game.getPlayer1().getId(), frame);
+        sendToUser(game.getPlayer2().getId(), frame);
         
-        if (player1Session != null) {
-            player1Session.sendMessage(new TextMessage(messageJson));
-        }
-        if (player2Session != null) {
-            player2Session.sendMessage(new TextMessage(messageJson));
-        }
+        // One frame, encoded once per wire format, for the players and every spectator
+        gameSpectators.multicast(game.getGameId(), frame);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,245 @@
+package com.example.chatservice.websocket;
+
+import com.example.chatservice.cluster.ClusterBus;
+import com.example.chatservice.cluster.ClusterMessage;
+import com.example.chatservice.service.ChatMessageSentEvent;
+import com.example.chatservice.service.ChatService;
+import com.example.chatservice.service.OnlineUserService;
+import com.example.chatservice.service.ReadReceiptEvent;
+import com.example.chatservice.websocket.protocol.FrameCodec;
+import com.example.chatservice.websocket.protocol.InboundFrame;
+import com.example.chatservice.websocket.protocol.OutboundFrame;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Makes the nodes of a cluster look like one chat server to their clients.
+ *
+ * Every node announces the users connected to it over the {@link ClusterBus},
+ * so presence covers the whole cluster: a user is online while any node has a
+ * session for them. Frames for a user go to their local sessions and to each
+ * node they are connected to. Game commands are forwarded to the node that
+ * owns the game and handled there as {@link ForwardedGameCommandEvent}s.
+ * Messages sent and read marks made on one node are applied to the
+ * conversation caches and unread counts of every other node, so a node never
+ * serves history or counts that miss what happened elsewhere.
+ *
+ * When a node goes down, its users are dropped; those not connected anywhere
+ * else go offline and are announced with a {@link UserLeftClusterEvent}.
+ */
+@Component
+public class ClusterRouter implements ClusterBus.Listener {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRouter.class);
+
+    private final ClusterBus clusterBus;
+    private final SessionRegistry sessionRegistry;
+    private final OnlineUserService onlineUserService;
+    private final ChatService chatService;
+    private final FrameCodec frameCodec;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper mapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    // userId -> other nodes the user is connected to, and the reverse; both changed under this
+    private final Map<Long, Set<Integer>> remoteNodes = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Long>> remoteUsers = new ConcurrentHashMap<>();
+    private final Set<Integer> upNodes = ConcurrentHashMap.newKeySet();
+
+    public ClusterRouter(ClusterBus clusterBus, SessionRegistry sessionRegistry, OnlineUserService onlineUserService,
+                         ChatService chatService, FrameCodec frameCodec, ApplicationEventPublisher eventPublisher,
+                         MeterRegistry meterRegistry) {
+        this.clusterBus = clusterBus;
+        this.sessionRegistry = sessionRegistry;
+        this.onlineUserService = onlineUserService;
+        this.chatService = chatService;
+        this.frameCodec = frameCodec;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("chat.cluster.nodes", upNodes, Set::size)
+            .description("Other cluster nodes this node can reach")
+            .register(meterRegistry);
+        Gauge.builder("chat.cluster.remote-users", remoteNodes, Map::size)
+            .description("Users connected to other nodes")
+            .register(meterRegistry);
+
+        clusterBus.start(this);
+    }
+
+    public int getNodeId() {
+        return clusterBus.getNodeId();
+    }
+
+    /**
+     * Called for each session a user opens on this node.
+     */
+    public void userConnected(Long userId) {
+        // Already listed if another node has them
+        if (!remoteNodes.containsKey(userId)) {
+            onlineUserService.addOnlineUser(userId);
+        }
+        publish(null, ClusterMessage.presenceUp(getNodeId(), userId));
+    }
+
+    /**
+     * Called once the user's last session on this node has closed. Returns
+     * true if they are not connected to any other node either, in which case
+     * they have gone offline.
+     */
+    public boolean userDisconnected(Long userId) {
+        publish(null, ClusterMessage.presenceDown(getNodeId(), userId));
+        if (remoteNodes.containsKey(userId)) {
+            return false;
+        }
+        onlineUserService.removeOnlineUser(userId);
+        return true;
+    }
+
+    public boolean isReachable(Long userId) {
+        return sessionRegistry.hasSessions(userId) || remoteNodes.containsKey(userId);
+    }
+
+    /**
+     * Sends the frame to every session the user has, on this node or any other.
+     */
+    public void sendToUser(Long userId, OutboundFrame frame) {
+        for (SessionSendQueue queue : sessionRegistry.getUserSessions(userId)) {
+            queue.send(frame);
+        }
+        Set<Integer> nodes = remoteNodes.get(userId);
+        if (nodes != null && !nodes.isEmpty()) {
+            // Converted once, however many nodes the user is on
+            JsonNode data = mapper.valueToTree(frame.getPayload());
+            for (Integer node : nodes) {
+                publish(node, ClusterMessage.deliver(getNodeId(), userId, frame.getType(), data));
+            }
+        }
+    }
+
+    public void forwardGameCommand(int ownerNode, Long userId, InboundFrame frame) {
+        publish(ownerNode, ClusterMessage.gameCommand(getNodeId(), userId, frame));
+    }
+
+    @EventListener
+    public void onMessageSent(ChatMessageSentEvent event) {
+        publish(null, ClusterMessage.messageSent(getNodeId(), event.message()));
+    }
+
+    @EventListener
+    public void onReadReceipt(ReadReceiptEvent event) {
+        publish(null, ClusterMessage.readMark(getNodeId(), event.readerId(), event.senderId(), event.readUpTo()));
+    }
+
+    // Broadcast when node is null
+    private void publish(Integer node, ClusterMessage message) {
+        meterRegistry.counter("chat.cluster.messages", "type", message.type(), "direction", "sent").increment();
+        if (node == null) {
+            clusterBus.broadcast(message);
+        } else {
+            clusterBus.send(node, message);
+        }
+    }
+
+    @Override
+    public void onMessage(ClusterMessage message) {
+        meterRegistry.counter("chat.cluster.messages", "type", message.type(), "direction", "received").increment();
+        switch (message.type()) {
+            case "presence_up" -> remoteUp(message.sourceNode(), message.userId());
+            case "presence_down" -> remoteDown(message.sourceNode(), message.userId());
+            case "presence_sync" -> remoteSync(message.sourceNode(), message.userIds());
+            case "deliver" -> {
+                // Local sessions only: the sending node already reached the user's other nodes
+                OutboundFrame frame = frameCodec.frame(message.frameType(), message.data());
+                for (SessionSendQueue queue : sessionRegistry.getUserSessions(message.userId())) {
+                    queue.send(frame);
+                }
+            }
+            case "game_command" -> eventPublisher.publishEvent(
+                new ForwardedGameCommandEvent(message.userId(), message.command()));
+            case "message_sent" -> chatService.applyRemoteMessage(message.message());
+            case "read_mark" -> chatService.applyRemoteRead(message.senderId(), message.userId(), message.readUpTo());
+            default -> logger.warn("Unknown cluster message type {} from node {}", message.type(), message.sourceNode());
+        }
+    }
+
+    @Override
+    public void onNodeUp(int nodeId) {
+        upNodes.add(nodeId);
+        publish(nodeId, ClusterMessage.presenceSync(getNodeId(), new ArrayList<>(sessionRegistry.getUserIds())));
+        logger.info("Cluster node {} is up", nodeId);
+    }
+
+    @Override
+    public void onNodeDown(int nodeId) {
+        upNodes.remove(nodeId);
+        remoteSync(nodeId, Collections.emptyList());
+        logger.info("Cluster node {} is down", nodeId);
+    }
+
+    private void remoteUp(int nodeId, Long userId) {
+        boolean appeared;
+        synchronized (this) {
+            remoteUsers.computeIfAbsent(nodeId, k -> ConcurrentHashMap.newKeySet()).add(userId);
+            Set<Integer> nodes = remoteNodes.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet());
+            appeared = nodes.isEmpty();
+            nodes.add(nodeId);
+        }
+        if (appeared && !sessionRegistry.hasSessions(userId)) {
+            onlineUserService.addOnlineUser(userId);
+        }
+    }
+
+    private void remoteDown(int nodeId, Long userId) {
+        boolean gone;
+        synchronized (this) {
+            Set<Long> users = remoteUsers.get(nodeId);
+            if (users != null) {
+                users.remove(userId);
+            }
+            Set<Integer> nodes = remoteNodes.get(userId);
+            if (nodes == null || !nodes.remove(nodeId)) {
+                return;
+            }
+            gone = nodes.isEmpty();
+            if (gone) {
+                remoteNodes.remove(userId);
+            }
+        }
+        if (gone && !sessionRegistry.hasSessions(userId)) {
+            onlineUserService.removeOnlineUser(userId);
+            eventPublisher.publishEvent(new UserLeftClusterEvent(userId));
+        }
+    }
+
+    // Replaces everything known about the node's users
+    private void remoteSync(int nodeId, List<Long> userIds) {
+        Set<Long> current = new HashSet<>(userIds);
+        List<Long> left = new ArrayList<>();
+        for (Long userId : remoteUsers.getOrDefault(nodeId, Collections.emptySet())) {
+            if (!current.contains(userId)) {
+                left.add(userId);
+            }
+        }
+        left.forEach(userId -> remoteDown(nodeId, userId));
+        current.forEach(userId -> remoteUp(nodeId, userId));
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.chatservice.websocket;
+
+import com.example.chatservice.websocket.protocol.InboundFrame;
+
+/**
+ * Published by {@link ClusterRouter} when another node forwards a game frame
+ * from one of its users for a game this node owns.
+ */
+public record ForwardedGameCommandEvent(Long userId, InboundFrame frame) {
+}
@@ -0,0 +1,132 @@
+package com.example.chatservice.websocket;
+
+import com.example.chatservice.websocket.protocol.OutboundFrame;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sessions watching games they do not play in.
+ *
+ * A game's frames are multicast to its spectators by handing the same
+ * {@link OutboundFrame} to every subscribed send queue, so a move is encoded
+ * once per wire format however many sessions watch it. Subscribing and
+ * multicasting both happen on the game's command lane: a spectator's snapshot
+ * is queued before any move made after it, and moves follow in order.
+ *
+ * A reverse session -> games index lets a closing session be dropped from
+ * every game it watched without scanning all games.
+ */
+@Component
+public class GameSpectators {
+
+    private final Map<String, Set<SessionSendQueue>> spectators = new ConcurrentHashMap<>();
+    private final Map<SessionSendQueue, Set<String>> watchedGames = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+    private final int maxPerGame;
+
+    public GameSpectators(MeterRegistry meterRegistry,
+                          @Value("${chat.game.spectators.max-per-game:1000}") int maxPerGame) {
+        this.maxPerGame = maxPerGame;
+        Gauge.builder("chat.game.spectators", subscriptionCount, AtomicInteger::get)
+            .description("Spectator subscriptions across all games")
+            .register(meterRegistry);
+        Gauge.builder("chat.game.spectated", spectators, Map::size)
+            .description("Games with at least one spectator")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Subscribes the session to the game. Returns false if the game already
+     * has as many spectators as allowed.
+     */
+    public boolean subscribe(String gameId, SessionSendQueue queue) {
+        boolean[] added = new boolean[1];
+        spectators.compute(gameId, (id, queues) -> {
+            Set<SessionSendQueue> target = queues != null ? queues : ConcurrentHashMap.newKeySet();
+            if (target.size() < maxPerGame && target.add(queue)) {
+                added[0] = true;
+            }
+            return target.isEmpty() ? null : target;
+        });
+        if (!added[0]) {
+            return spectators.getOrDefault(gameId, Collections.emptySet()).contains(queue);
+        }
+        subscriptionCount.incrementAndGet();
+        watchedGames.computeIfAbsent(queue, k -> ConcurrentHashMap.newKeySet()).add(gameId);
+        return true;
+    }
+
+    public void unsubscribe(String gameId, SessionSendQueue queue) {
+        if (removeSpectator(gameId, queue)) {
+            watchedGames.computeIfPresent(queue, (q, games) -> {
+                games.remove(gameId);
+                return games.isEmpty() ? null : games;
+            });
+        }
+    }
+
+    // Called when the session closes
+    public void unsubscribeAll(SessionSendQueue queue) {
+        Set<String> games = watchedGames.remove(queue);
+        if (games != null) {
+            games.forEach(gameId -> removeSpectator(gameId, queue));
+        }
+    }
+
+    /**
+     * Sends the frame to every spectator of the game.
+     */
+    public void multicast(String gameId, OutboundFrame frame) {
+        Set<SessionSendQueue> queues = spectators.get(gameId);
+        if (queues != null) {
+            for (SessionSendQueue queue : queues) {
+                queue.send(frame);
+            }
+        }
+    }
+
+    public boolean isSpectating(String gameId, SessionSendQueue queue) {
+        return spectators.getOrDefault(gameId, Collections.emptySet()).contains(queue);
+    }
+
+    public int getSpectatorCount(String gameId) {
+        return spectators.getOrDefault(gameId, Collections.emptySet()).size();
+    }
+
+    /**
+     * Drops every subscription to a game that no longer exists.
+     */
+    public void removeGame(String gameId) {
+        Set<SessionSendQueue> queues = spectators.remove(gameId);
+        if (queues == null) {
+            return;
+        }
+        subscriptionCount.addAndGet(-queues.size());
+        for (SessionSendQueue queue : queues) {
+            watchedGames.computeIfPresent(queue, (q, games) -> {
+                games.remove(gameId);
+                return games.isEmpty() ? null : games;
+            });
+        }
+    }
+
+    private boolean removeSpectator(String gameId, SessionSendQueue queue) {
+        boolean[] removed = new boolean[1];
+        spectators.computeIfPresent(gameId, (id, queues) -> {
+            removed[0] = queues.remove(queue);
+            return queues.isEmpty() ? null : queues;
+        });
+        if (removed[0]) {
+            subscriptionCount.decrementAndGet();
+        }
+        return removed[0];
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.chatservice.websocket;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authenticates /ws handshakes with the access token issued by auth-service.
+ *
+ * The token is taken from the {@code token} query parameter (browsers cannot
+ * set headers on a WebSocket) or an {@code Authorization: Bearer} header. It
+ * is verified once, when the connection opens, with a parser built once
+ * around the key from {@code jwt.secret}. The user id from its claims is kept
+ * in the session's attributes for {@link #getUserId(WebSocketSession)}.
+ * Handshakes without a valid access token are refused with 401; refresh
+ * tokens are signed with the same key but do not open a connection.
+ */
+@Component
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(JwtHandshakeInterceptor.class);
+
+    static final String USER_ID_ATTRIBUTE = "chat.userId";
+    private static final String TOKEN_PARAMETER = "token";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String REFRESH_TOKEN_TYPE = "refresh";
+
+    // Immutable and thread-safe, so one instance serves every handshake
+    private final JwtParser parser;
+
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+    private final Timer verifyTimer;
+
+    public JwtHandshakeInterceptor(@Value("${jwt.secret}") String secret, MeterRegistry meterRegistry) {
+        this.parser = Jwts.parserBuilder()
+            .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)))
+            .build();
+
+        this.acceptedCounter = Counter.builder("chat.ws.handshakes").tag("outcome", "accepted")
+            .description("WebSocket handshakes by whether their token was valid")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("chat.ws.handshakes").tag("outcome", "rejected")
+            .description("WebSocket handshakes by whether their token was valid")
+            .register(meterRegistry);
+        this.verifyTimer = Timer.builder("chat.ws.handshake.verify").register(meterRegistry);
+    }
+
+    /**
+     * The authenticated user of a session, or null if it was not opened through this interceptor.
+     */
+    public static Long getUserId(WebSocketSession session) {
+        return session.getAttributes().get(USER_ID_ATTRIBUTE) instanceof Long userId ? userId : null;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Long userId = verify(extractToken(request));
+        if (userId == null) {
+            rejectedCounter.increment();
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        acceptedCounter.increment();
+        attributes.put(USER_ID_ATTRIBUTE, userId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private static String extractToken(ServerHttpRequest request) {
+        String header = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            return header.substring(BEARER_PREFIX.length());
+        }
+        if (request instanceof ServletServerHttpRequest servletRequest) {
+            // Already parsed by the container
+            return servletRequest.getServletRequest().getParameter(TOKEN_PARAMETER);
+        }
+        return UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(TOKEN_PARAMETER);
+    }
+
+    // The token's userId claim, or null if the token is missing, invalid, expired or not an access token
+    private Long verify(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (REFRESH_TOKEN_TYPE.equals(claims.get("tokenType", String.class))) {
+                logger.debug("Refusing WebSocket handshake with a refresh token");
+                return null;
+            }
+            return claims.get("userId", Long.class);
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.debug("Refusing WebSocket handshake: {}", e.getMessage());
+            return null;
+        } finally {
+            verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.chatservice.websocket;
+
+import com.example.chatservice.model.PresenceDelta;
+import com.example.chatservice.service.OnlineUserService;
+import com.example.chatservice.service.PresenceChangedEvent;
+import com.example.chatservice.websocket.protocol.FrameCodec;
+import com.example.chatservice.websocket.protocol.OutboundFrame;
+import com.example.chatservice.websocket.protocol.Frames.PresenceUpdateFrame;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans presence changes out to every connected session.
+ *
+ * Join/leave events are coalesced over a short window and sent as a single
+ * presence_update frame, so a burst of N reconnects costs one frame per
+ * recipient rather than N. The frame is serialized once per wire format and
+ * the result is shared by every recipient's send queue, and the fan-out runs
+ * on its own threads instead of the common ForkJoinPool.
+ *
+ * Every session belongs to one fan-out lane, picked from its send queue, and each lane
+ * is a single thread. A flush hands each lane its share of the recipients in
+ * one task, so lanes work in parallel while a session still receives the
+ * deltas in the order they were flushed.
+ *
+ * Each frame carries the presence sequence range it covers (fromSeq..toSeq),
+ * pulled from {@link OnlineUserService}'s change log, so clients can apply it
+ * on top of a snapshot and notice when they have missed an update.
+ */
+@Component
+public class PresenceBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(PresenceBroadcaster.class);
+
+    private final SessionRegistry sessionRegistry;
+    private final OnlineUserService onlineUserService;
+    private final FrameCodec frameCodec;
+    private final ScheduledExecutorService coalescer;
+    private final ExecutorService[] fanoutLanes;
+
+    private final Object lock = new Object();
+    private boolean flushScheduled;
+    
+    // Only touched from the coalescer thread
+    private long lastBroadcastSeq;
+
+    @Value("${chat.websocket.presence.coalesce-window-ms:50}")
+    private long coalesceWindowMs;
+
+    public PresenceBroadcaster(SessionRegistry sessionRegistry, OnlineUserService onlineUserService, FrameCodec frameCodec,
+                               @Value("${chat.websocket.presence.fanout-threads:2}") int fanoutThreads) {
+        this.sessionRegistry = sessionRegistry;
+        this.onlineUserService = onlineUserService;
+        this.frameCodec = frameCodec;
+        this.lastBroadcastSeq = onlineUserService.getPresenceSeq();
+        this.coalescer = Executors.newSingleThreadScheduledExecutor(daemonThreads("presence-coalescer"));
+        this.fanoutLanes = new ExecutorService[fanoutThreads];
+        ThreadFactory fanoutThreadFactory = daemonThreads("presence-fanout");
+        for (int i = 0; i < fanoutThreads; i++) {
+            fanoutLanes[i] = Executors.newSingleThreadExecutor(fanoutThreadFactory);
+        }
+    }
+
+    /**
+     * Signals that the online user list changed; the change is picked up from
+     * the presence log at the end of the current coalescing window.
+     */
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        synchronized (lock) {
+            scheduleFlush();
+        }
+    }
+
+    // Must be called while holding lock
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            coalescer.schedule(this::flush, coalesceWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        synchronized (lock) {
+            flushScheduled = false;
+        }
+
+        PresenceDelta delta = onlineUserService.getPresenceChangesSince(lastBroadcastSeq);
+        if (delta.isEmpty()) {
+            return;
+        }
+        lastBroadcastSeq = delta.toSeq();
+
+        OutboundFrame frame = toPresenceUpdate(delta, onlineUserService.getPresenceEpoch());
+
+        List<List<SessionSendQueue>> recipientsByLane = new ArrayList<>(fanoutLanes.length);
+        for (int i = 0; i < fanoutLanes.length; i++) {
+            recipientsByLane.add(new ArrayList<>());
+        }
+        int recipients = 0;
+        for (SessionSendQueue queue : sessionRegistry.getAllSessions()) {
+            recipientsByLane.get(laneOf(queue)).add(queue);
+            recipients++;
+        }
+        for (int i = 0; i < fanoutLanes.length; i++) {
+            List<SessionSendQueue> lane = recipientsByLane.get(i);
+            if (!lane.isEmpty()) {
+                fanoutLanes[i].execute(() -> lane.forEach(queue -> queue.sendPresence(frame)));
+            }
+        }
+
+        logger.debug("Presence update {}..{} with {} joins and {} leaves sent to {} sessions",
+            delta.fromSeq(), delta.toSeq(), delta.joined().size(), delta.left().size(), recipients);
+    }
+
+    // A session keeps its send queue for life, so all of its deltas go through the same thread
+    private int laneOf(SessionSendQueue queue) {
+        return Math.floorMod(System.identityHashCode(queue), fanoutLanes.length);
+    }
+
+    public OutboundFrame toPresenceUpdate(PresenceDelta delta, String epoch) {
+        return frameCodec.frame("presence_update", PresenceUpdateFrame.of(
+            epoch, delta.fromSeq(), delta.toSeq(), delta.joined(), delta.left()));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coalescer.shutdown();
+        for (ExecutorService lane : fanoutLanes) {
+            lane.shutdown();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.chatservice.websocket;
+
+/**
+ * What a {@link SessionSendQueue} does when a frame arrives and the queue is full.
+ */
+public enum SendOverflowPolicy {
+    // Discard the oldest queued frame to make room for the new one
+    DROP_OLDEST,
+    // Discard queued presence updates first, falling back to the oldest frame
+    DROP_PRESENCE,
+    // Give up on the client and close its session
+    DISCONNECT
+}
@@ -0,0 +1,131 @@
+package com.example.chatservice.websocket;
+
+import com.example.chatservice.websocket.protocol.WireFormat;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates {@link SessionSendQueue}s backed by a shared writer pool and
+ * registers per-session queue depth and drop metrics.
+ *
+ * Writes to the transport block, so a client that stops reading holds a
+ * writer thread until its send fails. Two things keep that from stalling
+ * everyone else: every send has a time limit, after which it fails and the
+ * session is closed, and the pool grows with the number of sessions, so a
+ * handful of stuck clients cannot take every writer.
+ */
+@Component
+public class SendQueueFactory {
+
+    // Read by Tomcat's WebSocket implementation on every blocking send
+    private static final String BLOCKING_SEND_TIMEOUT_PROPERTY = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor writerPool;
+    private final int minWriterThreads;
+    private final int maxWriterThreads;
+    private final int sessionsPerWriter;
+    private final long sendTimeoutMs;
+    private final Map<String, List<Meter>> sessionMeters = new ConcurrentHashMap<>();
+
+    @Value("${chat.websocket.send-queue.capacity:256}")
+    private int capacity;
+
+    @Value("${chat.websocket.send-queue.batch-size:32}")
+    private int batchSize;
+
+    @Value("${chat.websocket.send-queue.buffer-size-limit-bytes:524288}")
+    private long bufferSizeLimit;
+
+    @Value("${chat.websocket.send-queue.overflow-policy:DROP_PRESENCE}")
+    private SendOverflowPolicy overflowPolicy;
+
+    public SendQueueFactory(MeterRegistry meterRegistry,
+                            @Value("${chat.websocket.send-queue.writer-threads:4}") int minWriterThreads,
+                            @Value("${chat.websocket.send-queue.max-writer-threads:64}") int maxWriterThreads,
+                            @Value("${chat.websocket.send-queue.sessions-per-writer:50}") int sessionsPerWriter,
+                            @Value("${chat.websocket.send-timeout-ms:5000}") long sendTimeoutMs) {
+        this.meterRegistry = meterRegistry;
+        this.minWriterThreads = minWriterThreads;
+        this.maxWriterThreads = Math.max(minWriterThreads, maxWriterThreads);
+        this.sessionsPerWriter = sessionsPerWriter;
+        this.sendTimeoutMs = sendTimeoutMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.writerPool = new ThreadPoolExecutor(minWriterThreads, this.maxWriterThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "ws-send-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        Gauge.builder("chat.ws.send.writer-threads", writerPool, ThreadPoolExecutor::getCorePoolSize)
+            .description("Writer threads sized for the current number of sessions")
+            .register(meterRegistry);
+    }
+
+    public SessionSendQueue create(WebSocketSession session) {
+        limitSendTime(session);
+        SessionSendQueue queue = new SessionSendQueue(session, writerPool, capacity, batchSize, bufferSizeLimit,
+            overflowPolicy, WireFormat.fromSubprotocol(session.getAcceptedProtocol()));
+
+        Meter depth = Gauge.builder("chat.ws.send.queue.depth", queue, SessionSendQueue::size)
+            .tag("session", session.getId())
+            .description("Frames waiting to be written to the session")
+            .register(meterRegistry);
+        Meter dropped = FunctionCounter.builder("chat.ws.send.dropped", queue, SessionSendQueue::getDroppedCount)
+            .tag("session", session.getId())
+            .description("Frames dropped because the session's send queue was full")
+            .register(meterRegistry);
+        sessionMeters.put(session.getId(), List.of(depth, dropped));
+        resizeWriterPool();
+
+        return queue;
+    }
+
+    private void limitSendTime(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            jakarta.websocket.Session standard = nativeSession.getNativeSession(jakarta.websocket.Session.class);
+            if (standard != null) {
+                standard.getUserProperties().put(BLOCKING_SEND_TIMEOUT_PROPERTY, sendTimeoutMs);
+            }
+        }
+    }
+
+    // One writer per sessionsPerWriter sessions, within the configured bounds
+    private synchronized void resizeWriterPool() {
+        int wanted = (sessionMeters.size() + sessionsPerWriter - 1) / sessionsPerWriter;
+        int size = Math.min(maxWriterThreads, Math.max(minWriterThreads, wanted));
+        if (size != writerPool.getCorePoolSize()) {
+            writerPool.setCorePoolSize(size);
+        }
+    }
+
+    public void release(SessionSendQueue queue) {
+        queue.close();
+        List<Meter> meters = sessionMeters.remove(queue.getSession().getId());
+        if (meters != null) {
+            meters.forEach(meterRegistry::remove);
+            resizeWriterPool();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writerPool.shutdown();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.chatservice.websocket;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds connections that are dead but were never closed.
+ *
+ * At every interval each session is sent a ping. Browsers answer pings with
+ * a pong by themselves, and any frame from the client counts as a sign of
+ * life. A session that has not been heard from within the timeout is reaped.
+ * So is a session whose current write has been blocked for longer than the
+ * send time limit, which means the client stopped reading. Reaping closes the
+ * session and runs the same cleanup as a normal close right away, so the
+ * user's presence, games and sessions do not wait for the transport to notice.
+ */
+@Component
+public class SessionHeartbeat {
+    private static final Logger logger = LoggerFactory.getLogger(SessionHeartbeat.class);
+
+    private final SessionRegistry sessionRegistry;
+    private final ChatWebSocketHandler chatWebSocketHandler;
+    private final MeterRegistry meterRegistry;
+    private final long timeoutNanos;
+    private final long sendTimeLimitNanos;
+    private final ScheduledExecutorService heartbeat;
+    private final Timer detectTimer;
+
+    public SessionHeartbeat(SessionRegistry sessionRegistry, ChatWebSocketHandler chatWebSocketHandler,
+                            MeterRegistry meterRegistry,
+                            @Value("${chat.websocket.heartbeat.interval-ms:25000}") long intervalMs,
+                            @Value("${chat.websocket.heartbeat.timeout-ms:60000}") long timeoutMs,
+                            @Value("${chat.websocket.send-time-limit-ms:10000}") long sendTimeLimitMs) {
+        this.sessionRegistry = sessionRegistry;
+        this.chatWebSocketHandler = chatWebSocketHandler;
+        this.meterRegistry = meterRegistry;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs);
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::beatSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+
+        this.detectTimer = Timer.builder("chat.ws.reaped.detect-time")
+            .description("How long a reaped session had been silent or stuck before it was found")
+            .register(meterRegistry);
+    }
+
+    private void beatSafely() {
+        try {
+            beat();
+        } catch (RuntimeException e) {
+            logger.error("Error checking WebSocket sessions: ", e);
+        }
+    }
+
+    private void beat() {
+        long now = System.nanoTime();
+        for (SessionSendQueue queue : sessionRegistry.getAllSessions()) {
+            long silentFor = now - queue.getLastSeenAt();
+            long sendStartedAt = queue.getSendStartedAt();
+            if (silentFor > timeoutNanos) {
+                reap(queue, "missed_pongs", silentFor);
+            } else if (sendStartedAt != 0 && now - sendStartedAt > sendTimeLimitNanos) {
+                reap(queue, "send_timeout", now - sendStartedAt);
+            } else {
+                queue.send(new PingMessage());
+            }
+        }
+    }
+
+    private void reap(SessionSendQueue queue, String reason, long detectNanos) {
+        meterRegistry.counter("chat.ws.reaped", "reason", reason).increment();
+        detectTimer.record(detectNanos, TimeUnit.NANOSECONDS);
+        logger.info("Reaping session {} of user {} ({} after {} ms)", queue.getSession().getId(),
+            sessionRegistry.getUserId(queue), reason, TimeUnit.NANOSECONDS.toMillis(detectNanos));
+
+        queue.abort();
+        try {
+            // A later close callback from the transport finds the session gone and does nothing
+            chatWebSocketHandler.afterConnectionClosed(queue.getSession(), CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (Exception e) {
+            logger.error("Error cleaning up reaped session {}: ", queue.getSession().getId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.chatservice.websocket;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of open WebSocket sessions and which user owns them.
+ *
+ * Besides the sessionId -> queue and sessionId -> userId maps, a reverse
+ * userId -> queues index is maintained so that routing a frame to a user is a
+ * single hash lookup instead of a scan over every connected session. A user may
+ * have several sessions open (one per browser tab).
+ *
+ * Sessions are never written to directly; every frame goes through the
+ * session's {@link SessionSendQueue}.
+ */
+@Component
+public class SessionRegistry {
+
+    private final Map<String, SessionSendQueue> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Long> sessionUserMap = new ConcurrentHashMap<>();
+    private final Map<Long, Set<SessionSendQueue>> userSessions = new ConcurrentHashMap<>();
+
+    private final SendQueueFactory sendQueueFactory;
+
+    public SessionRegistry(SendQueueFactory sendQueueFactory) {
+        this.sendQueueFactory = sendQueueFactory;
+    }
+
+    public SessionSendQueue register(WebSocketSession session, Long userId) {
+        SessionSendQueue queue = sendQueueFactory.create(session);
+        sessions.put(session.getId(), queue);
+        sessionUserMap.put(session.getId(), userId);
+        // Added inside compute so a concurrent unregister() cannot drop the set between lookup and add
+        userSessions.compute(userId, (id, userSet) -> {
+            Set<SessionSendQueue> sessionsOfUser = userSet != null ? userSet : ConcurrentHashMap.newKeySet();
+            sessionsOfUser.add(queue);
+            return sessionsOfUser;
+        });
+        return queue;
+    }
+
+    /**
+     * Removes the session and returns the user that owned it, or null if the
+     * session was never registered.
+     */
+    public Long unregister(WebSocketSession session) {
+        SessionSendQueue queue = sessions.remove(session.getId());
+        Long userId = sessionUserMap.remove(session.getId());
+        if (queue != null) {
+            sendQueueFactory.release(queue);
+            if (userId != null) {
+                // Both sides change the set inside the map's compute, so an emptied set is only
+                // removed while no register() for the same user is adding to it
+                userSessions.computeIfPresent(userId, (id, userSet) -> {
+                    userSet.remove(queue);
+                    return userSet.isEmpty() ? null : userSet;
+                });
+            }
+        }
+        return userId;
+    }
+
+    public Long getUserId(WebSocketSession session) {
+        return sessionUserMap.get(session.getId());
+    }
+
+    public Long getUserId(SessionSendQueue queue) {
+        return sessionUserMap.get(queue.getSession().getId());
+    }
+
+    public SessionSendQueue getQueue(WebSocketSession session) {
+        return sessions.get(session.getId());
+    }
+
+    public Set<SessionSendQueue> getUserSessions(Long userId) {
+        Set<SessionSendQueue> userSet = userSessions.get(userId);
+        return userSet != null ? userSet : Collections.emptySet();
+    }
+
+    public boolean hasSessions(Long userId) {
+        return userSessions.containsKey(userId);
+    }
+
+    // Users with at least one session open
+    public Set<Long> getUserIds() {
+        return userSessions.keySet();
+    }
+
+    public Collection<SessionSendQueue> getAllSessions() {
+        return sessions.values();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public int getUserCount() {
+        return userSessions.size();
+    }
+}
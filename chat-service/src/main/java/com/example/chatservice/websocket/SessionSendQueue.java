@@ -0,0 +1,252 @@
+package com.example.chatservice.websocket;
+
+import com.example.chatservice.websocket.protocol.OutboundFrame;
+import com.example.chatservice.websocket.protocol.WireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded outbound queue for a single WebSocket session.
+ *
+ * Callers enqueue frames without blocking; a single writer task drains the
+ * queue in batches on the shared writer pool, so the underlying session is
+ * never written to concurrently and a slow client only backs up its own queue.
+ *
+ * The queue is bounded both in frames and in payload bytes. It also records
+ * when the client was last heard from and when the write in progress started,
+ * so {@link SessionHeartbeat} can close sessions that went silent or stopped
+ * reading.
+ */
+public class SessionSendQueue {
+    private static final Logger logger = LoggerFactory.getLogger(SessionSendQueue.class);
+
+    private final WebSocketSession session;
+    private final Executor writer;
+    private final int capacity;
+    private final int batchSize;
+    private final long bufferSizeLimit;
+    private final SendOverflowPolicy overflowPolicy;
+    private final WireFormat wireFormat;
+
+    private final Deque<Entry> queue = new ArrayDeque<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile boolean closed;
+    // Payload bytes of the queued frames, guarded by queue
+    private long bufferedBytes;
+    // System.nanoTime() readings; sendStartedAt is 0 while no write is in progress
+    private volatile long lastSeenAt = System.nanoTime();
+    private volatile long sendStartedAt;
+
+    private record Entry(WebSocketMessage<?> message, boolean presence, int bytes) {}
+
+    public SessionSendQueue(WebSocketSession session, Executor writer, int capacity, int batchSize,
+                            long bufferSizeLimit, SendOverflowPolicy overflowPolicy, WireFormat wireFormat) {
+        this.session = session;
+        this.writer = writer;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.overflowPolicy = overflowPolicy;
+        this.wireFormat = wireFormat;
+    }
+
+    public boolean send(WebSocketMessage<?> message) {
+        return enqueue(message, false);
+    }
+
+    public boolean send(OutboundFrame frame) {
+        return send(frame.messageFor(wireFormat));
+    }
+
+    public boolean sendPresence(OutboundFrame frame) {
+        return sendPresence(frame.messageFor(wireFormat));
+    }
+
+    // Presence frames are the first to go when the queue overflows under DROP_PRESENCE
+    public boolean sendPresence(WebSocketMessage<?> message) {
+        return enqueue(message, true);
+    }
+
+    /**
+     * Enqueues several frames back to back, so that no other frame for this
+     * session can be interleaved between them.
+     */
+    public void sendAll(List<? extends WebSocketMessage<?>> messages) {
+        synchronized (queue) {
+            for (WebSocketMessage<?> message : messages) {
+                enqueue(message, false);
+            }
+        }
+    }
+
+    private boolean enqueue(WebSocketMessage<?> message, boolean presence) {
+        if (closed) {
+            return false;
+        }
+
+        int bytes = message.getPayloadLength();
+        boolean disconnect = false;
+        synchronized (queue) {
+            // A frame larger than the byte limit is still let through once the queue is empty
+            while (!queue.isEmpty() && (queue.size() >= capacity || bufferedBytes + bytes > bufferSizeLimit)) {
+                if (overflowPolicy == SendOverflowPolicy.DISCONNECT) {
+                    disconnect = true;
+                    break;
+                }
+                Entry dropped = overflowPolicy == SendOverflowPolicy.DROP_PRESENCE ? removeOldestPresence() : null;
+                if (dropped == null) {
+                    if (presence && overflowPolicy == SendOverflowPolicy.DROP_PRESENCE) {
+                        droppedCount.incrementAndGet();
+                        return false;
+                    }
+                    dropped = queue.pollFirst();
+                }
+                bufferedBytes -= dropped.bytes();
+                droppedCount.incrementAndGet();
+            }
+            if (!disconnect) {
+                queue.addLast(new Entry(message, presence, bytes));
+                bufferedBytes += bytes;
+            }
+        }
+
+        if (disconnect) {
+            droppedCount.incrementAndGet();
+            closeForOverflow();
+            return false;
+        }
+
+        scheduleDrain();
+        return true;
+    }
+
+    private Entry removeOldestPresence() {
+        Iterator<Entry> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.presence()) {
+                iterator.remove();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            writer.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            List<Entry> batch = new ArrayList<>(batchSize);
+            synchronized (queue) {
+                for (int i = 0; i < batchSize && !queue.isEmpty(); i++) {
+                    Entry entry = queue.pollFirst();
+                    bufferedBytes -= entry.bytes();
+                    batch.add(entry);
+                }
+            }
+
+            for (Entry entry : batch) {
+                if (closed || !session.isOpen()) {
+                    break;
+                }
+                sendStartedAt = System.nanoTime();
+                try {
+                    session.sendMessage(entry.message());
+                } catch (IOException e) {
+                    logger.error("Error sending message to session {}: ", session.getId(), e);
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error draining send queue for session {}: ", session.getId(), e);
+        } finally {
+            draining.set(false);
+        }
+
+        // Yield the writer thread between batches so one busy session cannot hog it
+        if (!closed && size() > 0) {
+            scheduleDrain();
+        }
+    }
+
+    private void closeForOverflow() {
+        if (closed) {
+            return;
+        }
+        logger.warn("Send queue for session {} overflowed, disconnecting", session.getId());
+        abort();
+    }
+
+    /**
+     * Drops whatever is queued and closes the session from the writer pool, so
+     * the caller is not held up by a connection that has stopped reading.
+     */
+    public void abort() {
+        close();
+        writer.execute(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                logger.error("Error closing session {}: ", session.getId(), e);
+            }
+        });
+    }
+
+    public void close() {
+        closed = true;
+        synchronized (queue) {
+            queue.clear();
+            bufferedBytes = 0;
+        }
+    }
+
+    // Called for every frame the client sends, pongs included
+    public void markAlive() {
+        lastSeenAt = System.nanoTime();
+    }
+
+    public long getLastSeenAt() {
+        return lastSeenAt;
+    }
+
+    public long getSendStartedAt() {
+        return sendStartedAt;
+    }
+
+    public int size() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+}
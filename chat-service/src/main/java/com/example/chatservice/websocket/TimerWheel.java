@@ -0,0 +1,56 @@
+package com.example.chatservice.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hashed timer wheel: items are dropped into the slot of their deadline
+ * tick, and each tick hands back the items in the next slot. Deadlines more
+ * than one turn of the wheel away come back early; the caller checks the
+ * deadline and schedules the item again. Scheduling and ticking are O(1) per
+ * item, with no timer task per item.
+ */
+final class TimerWheel<T> {
+    private final List<T>[] slots;
+    private final int mask;
+    // Guarded by this
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(int slotCount) {
+        if (Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("Slot count must be a power of two: " + slotCount);
+        }
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.mask = slotCount - 1;
+    }
+
+    synchronized long currentTick() {
+        return tick;
+    }
+
+    /**
+     * Schedules the item for the deadline tick, or the next tick if that has passed.
+     */
+    synchronized void schedule(T item, long deadlineTick) {
+        long at = Math.max(deadlineTick, tick + 1);
+        slots[(int) (at & mask)].add(item);
+    }
+
+    /**
+     * Moves to the next tick and returns the items scheduled in its slot.
+     */
+    synchronized List<T> advance() {
+        tick++;
+        int slot = (int) (tick & mask);
+        List<T> due = slots[slot];
+        if (due.isEmpty()) {
+            return List.of();
+        }
+        slots[slot] = new ArrayList<>();
+        return due;
+    }
+}
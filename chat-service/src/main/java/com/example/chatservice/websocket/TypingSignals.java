@@ -0,0 +1,207 @@
+package com.example.chatservice.websocket;
+
+import com.example.chatservice.websocket.protocol.FrameCodec;
+import com.example.chatservice.websocket.protocol.Frames.TypingFrame;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typing indicators. They are relayed from user to user in memory and are
+ * never stored.
+ *
+ * Each sender has a token bucket, so a client that signals on every keystroke
+ * is held to a steady rate and the excess is dropped. Signals are coalesced
+ * per conversation. The receiver is told once when the sender starts typing
+ * and once when they stop, either explicitly or by going quiet for the ttl.
+ * The signals in between only push the deadline back.
+ *
+ * Deadlines are kept in a {@link TimerWheel} ticked by one thread, so no
+ * timer is scheduled per signal.
+ */
+@Component
+public class TypingSignals {
+    private static final Logger logger = LoggerFactory.getLogger(TypingSignals.class);
+
+    private record Conversation(Long senderId, Long receiverId) {}
+
+    private static final class Signal {
+        final Conversation conversation;
+        // Changed under the map's lock for the conversation
+        long deadlineTick;
+
+        Signal(Conversation conversation) {
+            this.conversation = conversation;
+        }
+    }
+
+    private static final class TokenBucket {
+        // Guarded by this
+        double tokens;
+        long refilledAt;
+
+        TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+
+        synchronized boolean tryTake(double capacity, double tokensPerNano, long now) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+
+    private final ClusterRouter clusterRouter;
+    private final FrameCodec frameCodec;
+    private final double burst;
+    private final double tokensPerNano;
+    private final long ttlTicks;
+    private final Map<Long, TokenBucket> buckets = new ConcurrentHashMap<>();
+    // Conversations whose receiver has been told the sender is typing
+    private final Map<Conversation, Signal> active = new ConcurrentHashMap<>();
+    private final TimerWheel<Signal> wheel;
+    private final ScheduledExecutorService ticker;
+
+    private final Counter relayedCounter;
+    private final Counter coalescedCounter;
+    private final Counter throttledCounter;
+
+    public TypingSignals(ClusterRouter clusterRouter, FrameCodec frameCodec, MeterRegistry meterRegistry,
+                         @Value("${chat.typing.burst:3}") int burst,
+                         @Value("${chat.typing.rate-per-second:1}") double ratePerSecond,
+                         @Value("${chat.typing.ttl-ms:5000}") long ttlMs,
+                         @Value("${chat.typing.tick-ms:250}") long tickMs,
+                         @Value("${chat.typing.wheel-slots:64}") int wheelSlots) {
+        this.clusterRouter = clusterRouter;
+        this.frameCodec = frameCodec;
+        this.burst = burst;
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.ttlTicks = Math.max(1, ttlMs / tickMs);
+        this.wheel = new TimerWheel<>(wheelSlots);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "typing-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tickSafely, tickMs, tickMs, TimeUnit.MILLISECONDS);
+
+        this.relayedCounter = Counter.builder("chat.typing.signals").tag("outcome", "relayed")
+            .description("Typing signals by what became of them")
+            .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("chat.typing.signals").tag("outcome", "coalesced")
+            .description("Typing signals by what became of them")
+            .register(meterRegistry);
+        this.throttledCounter = Counter.builder("chat.typing.signals").tag("outcome", "throttled")
+            .description("Typing signals by what became of them")
+            .register(meterRegistry);
+        Gauge.builder("chat.typing.active", active, Map::size)
+            .description("Conversations with someone typing")
+            .register(meterRegistry);
+    }
+
+    /**
+     * The sender is typing to the receiver.
+     */
+    public void typing(Long senderId, Long receiverId) {
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.computeIfAbsent(senderId, k -> new TokenBucket(burst, now));
+        if (!bucket.tryTake(burst, tokensPerNano, now)) {
+            throttledCounter.increment();
+            return;
+        }
+        long deadline = wheel.currentTick() + ttlTicks;
+        boolean[] started = new boolean[1];
+        Signal signal = active.compute(new Conversation(senderId, receiverId), (conversation, current) -> {
+            if (current == null) {
+                current = new Signal(conversation);
+                started[0] = true;
+            }
+            current.deadlineTick = deadline;
+            return current;
+        });
+        if (!started[0]) {
+            coalescedCounter.increment();
+            return;
+        }
+        wheel.schedule(signal, deadline);
+        relayedCounter.increment();
+        send(signal.conversation, true);
+    }
+
+    /**
+     * The sender stopped typing to the receiver, or sent them the message.
+     */
+    public void stopped(Long senderId, Long receiverId) {
+        // The signal's wheel entry is left behind and skipped when its slot comes up
+        if (active.remove(new Conversation(senderId, receiverId)) != null) {
+            relayedCounter.increment();
+            send(new Conversation(senderId, receiverId), false);
+        }
+    }
+
+    /**
+     * Forgets the user's rate limit once their last session here has closed.
+     * Anything they were typing expires on its own.
+     */
+    public void userDisconnected(Long userId) {
+        buckets.remove(userId);
+    }
+
+    private void send(Conversation conversation, boolean typing) {
+        clusterRouter.sendToUser(conversation.receiverId(),
+            frameCodec.frame("typing", TypingFrame.of(conversation.senderId(), typing)));
+    }
+
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            logger.error("Error expiring typing signals: ", e);
+        }
+    }
+
+    private void tick() {
+        for (Signal signal : wheel.advance()) {
+            long now = wheel.currentTick();
+            boolean[] expired = new boolean[1];
+            boolean[] pushedBack = new boolean[1];
+            active.computeIfPresent(signal.conversation, (conversation, current) -> {
+                if (current != signal) {
+                    return current; // Stopped and started again; the new signal has its own entry
+                }
+                if (current.deadlineTick > now) {
+                    pushedBack[0] = true;
+                    return current;
+                }
+                expired[0] = true;
+                return null;
+            });
+            if (pushedBack[0]) {
+                wheel.schedule(signal, signal.deadlineTick);
+            } else if (expired[0]) {
+                send(signal.conversation, false);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.chatservice.websocket;
+
+/**
+ * Published by {@link ClusterRouter} when a user connected only through other
+ * nodes has gone offline, so games this node owns can let them go.
+ */
+public record UserLeftClusterEvent(Long userId) {
+}
@@ -0,0 +1,122 @@
+package com.example.chatservice.websocket.protocol;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes outbound frames and decodes inbound ones for every {@link WireFormat}.
+ *
+ * Encoding size and time are recorded per frame type and format
+ * ({@code chat.ws.frame.bytes}, {@code chat.ws.frame.encode}), which is where
+ * the formats can be compared on real traffic.
+ */
+@Component
+public class FrameCodec {
+
+    private record MeterKey(String type, WireFormat format) {}
+
+    private record FrameMeters(Timer encodeTimer, DistributionSummary bytes) {}
+
+    private final ObjectMapper jsonMapper = configure(new ObjectMapper());
+    private final ObjectMapper cborMapper = configure(new ObjectMapper(new CBORFactory()));
+
+    private final MeterRegistry meterRegistry;
+    private final Map<MeterKey, FrameMeters> meters = new ConcurrentHashMap<>();
+
+    public FrameCodec(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        return mapper.registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    /**
+     * Wraps a typed frame for sending; nothing is serialized until a recipient
+     * asks for a particular format.
+     */
+    public OutboundFrame frame(String type, Object payload) {
+        return new OutboundFrame(this, type, payload);
+    }
+
+    public InboundFrame decode(WebSocketMessage<?> message) throws IOException {
+        JsonParser parser;
+        if (message instanceof BinaryMessage binaryMessage) {
+            ByteBuffer buffer = binaryMessage.getPayload();
+            if (buffer.hasArray()) {
+                parser = cborMapper.getFactory().createParser(
+                    buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.duplicate().get(bytes);
+                parser = cborMapper.getFactory().createParser(bytes);
+            }
+        } else if (message instanceof TextMessage textMessage) {
+            parser = jsonMapper.getFactory().createParser(textMessage.getPayload());
+        } else {
+            throw new IllegalArgumentException("Unsupported message type: " + message.getClass().getSimpleName());
+        }
+        try (parser) {
+            return InboundFrame.read(parser);
+        }
+    }
+
+    byte[] encodeJson(String type, Object payload) {
+        long start = System.nanoTime();
+        try {
+            byte[] json = jsonMapper.writeValueAsBytes(payload);
+            record(type, WireFormat.JSON, start, json.length);
+            return json;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error encoding " + type + " frame as JSON", e);
+        }
+    }
+
+    byte[] encodeCbor(String type, Object payload) {
+        long start = System.nanoTime();
+        try {
+            byte[] bytes = cborMapper.writeValueAsBytes(payload);
+            record(type, WireFormat.CBOR, start, bytes.length);
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error encoding " + type + " frame as CBOR", e);
+        }
+    }
+
+    private void record(String type, WireFormat format, long startNanos, int size) {
+        long elapsed = System.nanoTime() - startNanos;
+        FrameMeters frameMeters = meters.computeIfAbsent(new MeterKey(type, format), key -> new FrameMeters(
+            Timer.builder("chat.ws.frame.encode")
+                .tag("type", key.type())
+                .tag("format", key.format().name().toLowerCase())
+                .description("Time spent serializing an outbound frame")
+                .register(meterRegistry),
+            DistributionSummary.builder("chat.ws.frame.bytes")
+                .tag("type", key.type())
+                .tag("format", key.format().name().toLowerCase())
+                .baseUnit("bytes")
+                .description("Encoded size of outbound frames")
+                .register(meterRegistry)
+        ));
+        frameMeters.encodeTimer().record(elapsed, TimeUnit.NANOSECONDS);
+        frameMeters.bytes().record(size);
+    }
+}
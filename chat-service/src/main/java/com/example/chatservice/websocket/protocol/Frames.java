@@ -0,0 +1,137 @@
+package com.example.chatservice.websocket.protocol;
+
+import com.example.chatservice.model.ChatMessage;
+import com.example.chatservice.model.GameRules;
+import com.example.chatservice.model.OnlineUser;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed outbound frames. Component names are the wire field names, so each
+ * record serializes to the same shape in every {@link WireFormat}.
+ */
+public final class Frames {
+
+    private Frames() {
+    }
+
+    public record ChatMessageFrame(String type, ChatMessageBody message) {
+        public static ChatMessageFrame of(ChatMessage chatMessage) {
+            return new ChatMessageFrame("chat_message", ChatMessageBody.of(chatMessage));
+        }
+    }
+
+    public record ChatMessageBody(Long id, Long senderId, Long receiverId, String message, String timestamp,
+                                  Boolean read) {
+        public static ChatMessageBody of(ChatMessage chatMessage) {
+            return new ChatMessageBody(
+                chatMessage.getId(),
+                chatMessage.getSenderId(),
+                chatMessage.getReceiverId(),
+                chatMessage.getMessage(),
+                chatMessage.getTimestamp().toString(),
+                chatMessage.getIsRead()
+            );
+        }
+    }
+
+    /**
+     * Sent when a session opens: unread counts (total and per sender), and on
+     * the user's first session the messages that arrived while they were offline.
+     */
+    public record UnreadStateFrame(String type, long total, Map<Long, Integer> conversations,
+                                   List<ChatMessageBody> messages) {
+        public static UnreadStateFrame of(long total, Map<Long, Integer> conversations,
+                                          List<ChatMessageBody> messages) {
+            return new UnreadStateFrame("unread_state", total, conversations, messages);
+        }
+    }
+
+    // The reader has read the receiver's messages up to and including readUpTo
+    public record ReadReceiptFrame(String type, Long readerId, long readUpTo) {
+        public static ReadReceiptFrame of(Long readerId, long readUpTo) {
+            return new ReadReceiptFrame("read_receipt", readerId, readUpTo);
+        }
+    }
+
+    public record TypingFrame(String type, Long senderId, boolean typing) {
+        public static TypingFrame of(Long senderId, boolean typing) {
+            return new TypingFrame("typing", senderId, typing);
+        }
+    }
+
+    public record OnlineUsersFrame(String type, String epoch, long seq, int page, int totalPages,
+                                   List<OnlineUser> users) {
+        public static OnlineUsersFrame of(String epoch, long seq, int page, int totalPages, List<OnlineUser> users) {
+            return new OnlineUsersFrame("online_users", epoch, seq, page, totalPages, users);
+        }
+    }
+
+    public record PresenceUpdateFrame(String type, String epoch, long fromSeq, long toSeq, List<OnlineUser> joined,
+                                      List<Long> left) {
+        public static PresenceUpdateFrame of(String epoch, long fromSeq, long toSeq, List<OnlineUser> joined,
+                                             List<Long> left) {
+            return new PresenceUpdateFrame("presence_update", epoch, fromSeq, toSeq, joined, left);
+        }
+    }
+
+    // Game frames wrap their payload in a "data" field
+    public record GameFrame(String type, Object data) {
+    }
+
+    public record UserRef(Long id, String name) {
+    }
+
+    public record GameInvitationData(String gameId, UserRef fromUser, UserRef toUser, GameRules rules,
+                                     String timestamp) {
+    }
+
+    public record PlayerInfo(Long id, String name, String symbol) {
+    }
+
+    public record Players(PlayerInfo player1, PlayerInfo player2) {
+    }
+
+    public record GameStartData(String gameId, String currentPlayer, Players players, GameRules rules,
+                                Map<String, Integer> scoreboard) {
+    }
+
+    public record Move(int row, int col) {
+    }
+
+    /**
+     * A single move. status, winner and winningLine are only present when the
+     * move ended the game; clients that see a gap in moveNumber send game_sync.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record GameMoveData(String gameId, int moveNumber, int row, int col, String symbol, String currentPlayer,
+                               String status, String winner, List<int[]> winningLine) {
+    }
+
+    // Full game state, sent in reply to game_sync and to new spectators
+    public record GameSnapshotData(String gameId, int moveNumber, String[][] board, String currentPlayer,
+                                   String status, String winner, List<int[]> winningLine, Move lastMove) {
+    }
+
+    // Sent to a new spectator: who is playing under which rules, then the board so far
+    public record GameWatchData(String gameId, Players players, GameRules rules, Map<String, Integer> scoreboard,
+                                GameSnapshotData snapshot, int spectators) {
+    }
+
+    public record GameEndData(String gameId, String winner, List<int[]> winningLine, String status, String reason,
+                              Map<String, Integer> scoreboard) {
+    }
+
+    // reason is one of invitation_expired, idle_timeout, retention_ended
+    public record GameExpiredData(String gameId, String reason) {
+    }
+
+    // status is queued or left; waiting is the pool size when the frame was sent
+    public record MatchmakingStatusData(String status, int rating, int waiting) {
+    }
+
+    public record PlayAgainData(String gameId, Long requesterUserId) {
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.chatservice.websocket.protocol;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * A client frame, flattened. Fields nested under "data" (game frames) and
+ * "data.rules" (game invitations) are lifted to the top level; anything the
+ * server does not use is skipped while streaming, so no tree is built for the
+ * payload.
+ */
+public record InboundFrame(
+    String type,
+    Long receiverId,
+    Long senderId,
+    String message,
+    Long messageId,
+    String epoch,
+    Long lastSeq,
+    String gameId,
+    Long toUserId,
+    Integer row,
+    Integer col,
+    Integer boardSize,
+    Integer winLength,
+    Boolean exactLength,
+    Boolean blockedEnds
+) {
+
+    private static final class Fields {
+        String type;
+        Long receiverId;
+        Long senderId;
+        String message;
+        Long messageId;
+        String epoch;
+        Long lastSeq;
+        String gameId;
+        Long toUserId;
+        Integer row;
+        Integer col;
+        Integer boardSize;
+        Integer winLength;
+        Boolean exactLength;
+        Boolean blockedEnds;
+    }
+
+    static InboundFrame read(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Frame must be an object");
+        }
+        Fields fields = new Fields();
+        readObject(parser, fields, 0);
+        return new InboundFrame(fields.type, fields.receiverId, fields.senderId, fields.message, fields.messageId,
+            fields.epoch, fields.lastSeq, fields.gameId, fields.toUserId, fields.row, fields.col, fields.boardSize,
+            fields.winLength, fields.exactLength, fields.blockedEnds);
+    }
+
+    // Game frames nest their fields under "data", and an invitation's rules under "data.rules"
+    private static void readObject(JsonParser parser, Fields fields, int depth) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (name) {
+                case "type" -> fields.type = readText(parser, token);
+                case "receiverId" -> fields.receiverId = readLong(parser, token);
+                case "senderId" -> fields.senderId = readLong(parser, token);
+                case "message" -> fields.message = readText(parser, token);
+                case "messageId" -> fields.messageId = readLong(parser, token);
+                case "epoch" -> fields.epoch = readText(parser, token);
+                case "lastSeq" -> fields.lastSeq = readLong(parser, token);
+                case "gameId" -> fields.gameId = readText(parser, token);
+                case "toUserId" -> fields.toUserId = readLong(parser, token);
+                case "row" -> fields.row = toInteger(readLong(parser, token));
+                case "col" -> fields.col = toInteger(readLong(parser, token));
+                case "boardSize" -> fields.boardSize = toInteger(readLong(parser, token));
+                case "winLength" -> fields.winLength = toInteger(readLong(parser, token));
+                case "exactLength" -> fields.exactLength = readBoolean(parser, token);
+                case "blockedEnds" -> fields.blockedEnds = readBoolean(parser, token);
+                case "data", "rules" -> {
+                    if (depth < 2 && token == JsonToken.START_OBJECT) {
+                        readObject(parser, fields, depth + 1);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static String readText(JsonParser parser, JsonToken token) throws IOException {
+        if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+            return parser.getValueAsString();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static Long readLong(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Long.parseLong(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static Boolean readBoolean(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+            return token == JsonToken.VALUE_TRUE;
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static Integer toInteger(Long value) {
+        return value != null ? Math.toIntExact(value) : null;
+    }
+}
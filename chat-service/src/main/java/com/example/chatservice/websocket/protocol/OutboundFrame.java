@@ -0,0 +1,48 @@
+package com.example.chatservice.websocket.protocol;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+/**
+ * A frame on its way to one or more sessions. Each encoding is produced at most
+ * once, the first time a recipient using that {@link WireFormat} asks for it,
+ * so fanning a frame out to many sessions serializes it once per format.
+ */
+public final class OutboundFrame {
+
+    private final FrameCodec codec;
+    private final String type;
+    private final Object payload;
+
+    private TextMessage json;
+    private byte[] cbor;
+
+    OutboundFrame(FrameCodec codec, String type, Object payload) {
+        this.codec = codec;
+        this.type = type;
+        this.payload = payload;
+    }
+
+    public synchronized WebSocketMessage<?> messageFor(WireFormat format) {
+        if (format == WireFormat.CBOR) {
+            if (cbor == null) {
+                cbor = codec.encodeCbor(type, payload);
+            }
+            // Sending a BinaryMessage consumes its ByteBuffer, so every session gets its own wrapper
+            return new BinaryMessage(cbor);
+        }
+        if (json == null) {
+            json = new TextMessage(codec.encodeJson(type, payload));
+        }
+        return json;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Object getPayload() {
+        return payload;
+    }
+}
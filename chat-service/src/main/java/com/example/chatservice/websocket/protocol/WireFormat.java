@@ -0,0 +1,29 @@
+package com.example.chatservice.websocket.protocol;
+
+/**
+ * Encodings a client can negotiate for the /ws endpoint through the
+ * Sec-WebSocket-Protocol header. Clients that ask for no subprotocol get JSON.
+ */
+public enum WireFormat {
+    JSON("chat.v1.json"),
+    CBOR("chat.v1.cbor");
+
+    private final String subprotocol;
+
+    WireFormat(String subprotocol) {
+        this.subprotocol = subprotocol;
+    }
+
+    public String getSubprotocol() {
+        return subprotocol;
+    }
+
+    public static WireFormat fromSubprotocol(String subprotocol) {
+        for (WireFormat format : values()) {
+            if (format.subprotocol.equals(subprotocol)) {
+                return format;
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.chatservice.ai;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlphaBetaSearchTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(AlphaBetaSearchTest.class);
+	private static final int SIZE = 20;
+
+	@Test
+	void completesOwnFiveBeforeBlocking() {
+		byte[] cells = new byte[SIZE * SIZE];
+		// O has four in a row on row 5, X has four in a row on row 10
+		for (int col = 3; col < 7; col++) {
+			cells[5 * SIZE + col] = 2;
+			cells[10 * SIZE + col] = 1;
+		}
+
+		SearchResult result = search(cells, 2, 4, 1000);
+
+		assertEquals(5, result.row());
+		assertTrue(result.col() == 2 || result.col() == 7);
+	}
+
+	@Test
+	void blocksOpenFour() {
+		byte[] cells = new byte[SIZE * SIZE];
+		for (int col = 8; col < 12; col++) {
+			cells[10 * SIZE + col] = 1;
+		}
+		cells[3 * SIZE + 3] = 2;
+		cells[3 * SIZE + 4] = 2;
+		cells[15 * SIZE + 15] = 2;
+
+		SearchResult result = search(cells, 2, 4, 1000);
+
+		assertEquals(10, result.row());
+		assertTrue(result.col() == 7 || result.col() == 12);
+	}
+
+	@Test
+	void stopsAtTimeBudget() {
+		// Deep enough that no budget below is sufficient to finish
+		for (long budgetMs : new long[]{20, 100, 250}) {
+			SearchResult result = search(middleGame(), 1, 30, budgetMs);
+			long elapsedMs = TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos());
+			assertTrue(elapsedMs < budgetMs + 50, "search ran " + elapsedMs + "ms on a " + budgetMs + "ms budget");
+			logger.info("budget {}ms: depth {}, {} nodes, {} nodes/s",
+				budgetMs, result.depth(), result.nodes(), nodesPerSecond(result));
+		}
+	}
+
+	@Test
+	void reportsThroughputByDepth() {
+		for (int depth = 2; depth <= 6; depth += 2) {
+			SearchResult result = search(middleGame(), 1, depth, 10_000);
+			assertEquals(depth, result.depth());
+			logger.info("depth {}: {} nodes in {}ms, {} nodes/s", depth, result.nodes(),
+				TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos()), nodesPerSecond(result));
+		}
+	}
+
+	private static SearchResult search(byte[] cells, int player, int maxDepth, long budgetMs) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+		AlphaBetaSearch search = new AlphaBetaSearch(SIZE, 5, cells, new TranspositionTable(16), deadline, maxDepth);
+		return search.search(player);
+	}
+
+	// A quiet position of eight stones around the centre, X to move
+	private static byte[] middleGame() {
+		byte[] cells = new byte[SIZE * SIZE];
+		int[][] moves = {
+			{10, 10}, {10, 11}, {11, 12}, {9, 10}, {8, 9}, {12, 11}, {13, 8}, {7, 12}
+		};
+		for (int i = 0; i < moves.length; i++) {
+			cells[moves[i][0] * SIZE + moves[i][1]] = (byte) (i % 2 == 0 ? 1 : 2);
+		}
+		return cells;
+	}
+
+	private static long nodesPerSecond(SearchResult result) {
+		return result.elapsedNanos() > 0 ? result.nodes() * 1_000_000_000L / result.elapsedNanos() : 0;
+	}
+}
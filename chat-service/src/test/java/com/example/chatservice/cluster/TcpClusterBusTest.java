@@ -0,0 +1,187 @@
+package com.example.chatservice.cluster;
+
+import com.example.chatservice.model.ChatMessage;
+import com.example.chatservice.websocket.protocol.InboundFrame;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TcpClusterBusTest {
+
+	private static final String TOKEN = "cluster-token";
+
+	private static final class RecordingListener implements ClusterBus.Listener {
+		final BlockingQueue<ClusterMessage> messages = new LinkedBlockingQueue<>();
+		final BlockingQueue<Integer> up = new LinkedBlockingQueue<>();
+		final BlockingQueue<Integer> down = new LinkedBlockingQueue<>();
+
+		@Override
+		public void onMessage(ClusterMessage message) {
+			messages.add(message);
+		}
+
+		@Override
+		public void onNodeUp(int nodeId) {
+			up.add(nodeId);
+		}
+
+		@Override
+		public void onNodeDown(int nodeId) {
+			down.add(nodeId);
+		}
+	}
+
+	private final RecordingListener listener1 = new RecordingListener();
+	private final RecordingListener listener2 = new RecordingListener();
+	private TcpClusterBus node1;
+	private TcpClusterBus node2;
+
+	@AfterEach
+	void shutdown() {
+		if (node1 != null) {
+			node1.shutdown();
+		}
+		if (node2 != null) {
+			node2.shutdown();
+		}
+	}
+
+	@Test
+	void nodesExchangeMessagesAndNoticeEachOtherGoingDown() throws Exception {
+		int port1 = freePort();
+		int port2 = freePort();
+		String peers = "1@localhost:" + port1 + ",2@localhost:" + port2;
+		node1 = node(1, port1, peers);
+		node2 = node(2, port2, peers);
+		node1.start(listener1);
+		node2.start(listener2);
+
+		assertEquals(2, listener1.up.poll(5, TimeUnit.SECONDS));
+		assertEquals(1, listener2.up.poll(5, TimeUnit.SECONDS));
+
+		ObjectNode data = JsonNodeFactory.instance.objectNode().put("gameId", "n1-x").put("row", 3);
+		node1.send(2, ClusterMessage.deliver(1, 7L, "game_move", data));
+		InboundFrame move = new InboundFrame("game_move", null, null, null, null, null, null, "n2-y", null, 4, 5,
+			null, null, null, null);
+		node1.send(2, ClusterMessage.gameCommand(1, 7L, move));
+		node2.broadcast(ClusterMessage.presenceSync(2, List.of(8L, 9L)));
+		ChatMessage chatMessage = new ChatMessage(7L, 8L, "hello");
+		chatMessage.setId(42L);
+		node2.broadcast(ClusterMessage.messageSent(2, chatMessage));
+
+		ClusterMessage delivered = listener2.messages.poll(5, TimeUnit.SECONDS);
+		assertNotNull(delivered);
+		assertEquals("deliver", delivered.type());
+		assertEquals(data, delivered.data());
+		ClusterMessage command = listener2.messages.poll(5, TimeUnit.SECONDS);
+		assertNotNull(command);
+		assertEquals(move, command.command());
+		ClusterMessage sync = listener1.messages.poll(5, TimeUnit.SECONDS);
+		assertNotNull(sync);
+		assertEquals(List.of(8L, 9L), sync.userIds());
+		ClusterMessage sent = listener1.messages.poll(5, TimeUnit.SECONDS);
+		assertNotNull(sent);
+		assertEquals(42L, sent.message().getId());
+		assertEquals(chatMessage.getTimestamp(), sent.message().getTimestamp());
+
+		node2.shutdown();
+		node2 = null;
+		assertEquals(2, listener1.down.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void connectionWithTheWrongTokenIsRefused() throws Exception {
+		int port = freePort();
+		node1 = node(1, port, "1@localhost:" + port + ",2@localhost:" + freePort());
+		node1.start(listener1);
+
+		assertRefused(port, 2, "not-the-token");
+	}
+
+	@Test
+	void connectionFromANodeThatIsNotAPeerIsRefused() throws Exception {
+		int port = freePort();
+		node1 = node(1, port, "1@localhost:" + port + ",2@localhost:" + freePort());
+		node1.start(listener1);
+
+		assertRefused(port, 3, TOKEN);
+	}
+
+	// Dials the node as nodeId and checks the connection is closed without any message getting through
+	private void assertRefused(int port, int nodeId, String token) throws Exception {
+		try (Socket socket = new Socket("localhost", port)) {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeInt(nodeId);
+			out.writeUTF(token);
+			byte[] forged = ("{\"type\":\"game_command\",\"sourceNode\":" + nodeId + ",\"userId\":7}")
+				.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(forged.length);
+			out.write(forged);
+			out.flush();
+
+			socket.setSoTimeout(5000);
+			assertEquals(-1, new DataInputStream(socket.getInputStream()).read());
+		}
+		assertNull(listener1.messages.poll(100, TimeUnit.MILLISECONDS));
+		assertNull(listener1.up.poll(0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void missingTokenIsAConfigurationError() {
+		assertThrows(IllegalArgumentException.class, () -> new TcpClusterBus(1, "127.0.0.1", 0, "", " ", 50, 16));
+	}
+
+	@Test
+	void peerThatStopsReadingDoesNotBlockSenders() throws Exception {
+		try (ServerSocket stalled = new ServerSocket(0)) {
+			node1 = new TcpClusterBus(1, "127.0.0.1", freePort(), "2@localhost:" + stalled.getLocalPort(), TOKEN, 50, 16);
+			node1.start(listener1);
+			// Accepted but never read, like a peer that hung
+			Socket first = stalled.accept();
+			assertEquals(2, listener1.up.poll(5, TimeUnit.SECONDS));
+
+			ObjectNode data = JsonNodeFactory.instance.objectNode().put("text", "x".repeat(64 * 1024));
+			long start = System.nanoTime();
+			for (int i = 0; i < 2_000; i++) {
+				node1.send(2, ClusterMessage.deliver(1, 7L, "chat_message", data));
+			}
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+			// The full queue dropped the connection, so the node dials again
+			stalled.setSoTimeout(5000);
+			try (Socket second = stalled.accept()) {
+				assertNotNull(second);
+			} finally {
+				first.close();
+			}
+		}
+	}
+
+	private static TcpClusterBus node(int nodeId, int port, String peers) {
+		return new TcpClusterBus(nodeId, "127.0.0.1", port, peers, TOKEN, 50, 16);
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,266 @@
+package com.example.chatservice.model;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CaroGameTest {
+	private static final Logger logger = LoggerFactory.getLogger(CaroGameTest.class);
+
+	private static final int LIMIT = GameRules.MAX_UNBOUNDED_COORDINATE;
+
+	@Test
+	void exactLengthWinsWithFive() {
+		CaroGame game = game(GameRules.gomoku());
+
+		play(game,
+			new int[][]{{7, 0}, {7, 1}, {7, 2}, {7, 3}, {7, 4}},
+			new int[][]{{0, 0}, {0, 2}, {0, 4}, {0, 6}});
+
+		assertWon(game, "X", 5);
+	}
+
+	@Test
+	void exactLengthOverlineDoesNotWin() {
+		CaroGame game = game(GameRules.gomoku());
+
+		// The last stone joins three and two into six
+		play(game,
+			new int[][]{{7, 0}, {7, 1}, {7, 2}, {7, 4}, {7, 5}, {7, 3}},
+			new int[][]{{0, 0}, {0, 2}, {0, 4}, {0, 6}, {0, 8}});
+
+		assertNotWon(game);
+	}
+
+	@Test
+	void blockedEndsWinsWithOneEndOpen() {
+		CaroGame game = game(new GameRules(15, 5, false, true));
+
+		play(game,
+			new int[][]{{7, 1}, {7, 2}, {7, 3}, {7, 4}, {7, 5}},
+			new int[][]{{7, 0}, {0, 0}, {0, 2}, {0, 4}});
+
+		assertWon(game, "X", 5);
+	}
+
+	@Test
+	void blockedEndsRunClosedAtBothEndsDoesNotWin() {
+		CaroGame game = game(new GameRules(15, 5, false, true));
+
+		play(game,
+			new int[][]{{7, 1}, {7, 2}, {7, 3}, {7, 4}, {7, 5}},
+			new int[][]{{7, 0}, {7, 6}, {0, 0}, {0, 2}});
+
+		assertNotWon(game);
+	}
+
+	@Test
+	void unboundedBoardWinsAwayFromTheOrigin() {
+		CaroGame game = game(new GameRules(GameRules.UNBOUNDED, 5, false, false));
+
+		play(game,
+			new int[][]{{-3, -1000}, {-2, -999}, {-1, -998}, {0, -997}, {1, -996}},
+			new int[][]{{0, 0}, {0, 2}, {0, 4}, {0, 6}});
+
+		assertWon(game, "X", 5);
+		assertEquals(-3, game.getWinningLine().get(0)[0]);
+		assertEquals(-1000, game.getWinningLine().get(0)[1]);
+	}
+
+	@Test
+	void unboundedBoardFourIsNotAWin() {
+		CaroGame game = game(new GameRules(GameRules.UNBOUNDED, 5, false, false));
+
+		play(game,
+			new int[][]{{500, 500}, {500, 501}, {500, 502}, {500, 503}, {500, 505}},
+			new int[][]{{0, 0}, {0, 2}, {0, 4}, {0, 6}});
+
+		assertNotWon(game);
+	}
+
+	@Test
+	void unboundedBoardWinsAtTheCoordinateLimit() {
+		CaroGame game = game(new GameRules(GameRules.UNBOUNDED, 5, false, false));
+
+		play(game,
+			new int[][]{{LIMIT, LIMIT - 4}, {LIMIT, LIMIT - 3}, {LIMIT, LIMIT - 2}, {LIMIT, LIMIT - 1}, {LIMIT, LIMIT}},
+			new int[][]{{-LIMIT, -LIMIT}, {-LIMIT, 0}, {0, -LIMIT}, {0, LIMIT}});
+
+		assertWon(game, "X", 5);
+	}
+
+	@Test
+	void unboundedBoardRefusesCoordinatesPastTheLimit() {
+		CaroGame game = game(new GameRules(GameRules.UNBOUNDED, 5, false, false));
+
+		assertFalse(game.makeMove(LIMIT + 1, 0, "X"));
+		assertFalse(game.makeMove(0, -LIMIT - 1, "X"));
+		assertFalse(game.makeMove(Integer.MIN_VALUE, 0, "X"));
+		assertFalse(game.makeMove(Integer.MAX_VALUE, Integer.MAX_VALUE, "X"));
+		assertEquals(0, game.getMoveNumber());
+		assertNull(game.getCell(Integer.MIN_VALUE, 0));
+	}
+
+	@Test
+	void horizontalWinAtTheRightEdge() {
+		CaroGame game = game(GameRules.standard());
+
+		play(game,
+			new int[][]{{0, 15}, {0, 16}, {0, 17}, {0, 18}, {0, 19}},
+			new int[][]{{5, 5}, {5, 7}, {5, 9}, {5, 11}});
+
+		assertWon(game, "X", 5);
+	}
+
+	@Test
+	void verticalWinAtTheBottomEdge() {
+		CaroGame game = game(GameRules.standard());
+
+		play(game,
+			new int[][]{{19, 19}, {18, 19}, {17, 19}, {16, 19}, {15, 19}},
+			new int[][]{{5, 5}, {5, 7}, {5, 9}, {5, 11}});
+
+		assertWon(game, "X", 5);
+	}
+
+	@Test
+	void diagonalWinIntoTheCorner() {
+		CaroGame game = game(GameRules.standard());
+
+		play(game,
+			new int[][]{{15, 15}, {16, 16}, {18, 18}, {19, 19}, {17, 17}},
+			new int[][]{{5, 5}, {5, 7}, {5, 9}, {5, 11}});
+
+		assertWon(game, "X", 5);
+		assertEquals(15, game.getWinningLine().get(0)[0]);
+	}
+
+	@Test
+	void antiDiagonalWinBetweenTwoEdges() {
+		CaroGame game = game(GameRules.standard());
+
+		play(game,
+			new int[][]{{0, 4}, {1, 3}, {3, 1}, {4, 0}, {2, 2}},
+			new int[][]{{5, 5}, {5, 7}, {5, 9}, {5, 11}});
+
+		assertWon(game, "X", 5);
+	}
+
+	@Test
+	void runWrappingOntoTheNextRowIsNotAWin() {
+		CaroGame game = game(GameRules.standard());
+
+		// Consecutive bits (row * 20 + col 77..81), but not a line on the board
+		play(game,
+			new int[][]{{3, 17}, {3, 18}, {3, 19}, {4, 0}, {4, 1}},
+			new int[][]{{10, 5}, {10, 7}, {10, 9}, {10, 11}});
+
+		assertNotWon(game);
+	}
+
+	@Test
+	void diagonalWrappingOntoTheNextRowsIsNotAWin() {
+		CaroGame game = game(GameRules.standard());
+
+		// Bits 21 apart, the same stride as a diagonal, but the line leaves the board after (2, 19)
+		play(game,
+			new int[][]{{0, 17}, {1, 18}, {2, 19}, {4, 0}, {5, 1}},
+			new int[][]{{10, 5}, {10, 7}, {10, 9}, {10, 11}});
+
+		assertNotWon(game);
+	}
+
+	@Test
+	void runAcrossALongWordBoundaryWins() {
+		CaroGame game = game(GameRules.standard());
+
+		// Cells 61..65: the run straddles bit 63 of the first long and bit 0 of the second
+		play(game,
+			new int[][]{{3, 1}, {3, 2}, {3, 4}, {3, 5}, {3, 3}},
+			new int[][]{{10, 5}, {10, 7}, {10, 9}, {10, 11}});
+
+		assertWon(game, "X", 5);
+	}
+
+	@Test
+	void oddBoardSizeWinsOnTheLastRow() {
+		CaroGame game = game(new GameRules(7, 4, false, false));
+
+		play(game,
+			new int[][]{{6, 3}, {6, 4}, {6, 5}, {6, 6}},
+			new int[][]{{0, 0}, {0, 2}, {0, 4}});
+
+		assertWon(game, "X", 4);
+	}
+
+	@Test
+	void moveThroughput() {
+		// Warm-up
+		measureRandomGames(GameRules.standard(), 0, 200);
+		measureRandomGames(GameRules.standard(), 0, 2_000);
+		measureRandomGames(new GameRules(GameRules.UNBOUNDED, 5, false, false), -10, 2_000);
+	}
+
+	// Plays random games over a 20x20 area starting at (origin, origin) and logs the time per move
+	private static void measureRandomGames(GameRules rules, int origin, int games) {
+		Random random = new Random(42);
+		int[] cells = new int[400];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = i;
+		}
+
+		long moves = 0;
+		long start = System.nanoTime();
+		for (int g = 0; g < games; g++) {
+			CaroGame game = game(rules);
+			for (int i = cells.length - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int swap = cells[i];
+				cells[i] = cells[j];
+				cells[j] = swap;
+			}
+			for (int i = 0; i < cells.length && game.getStatus() == CaroGame.GameStatus.PLAYING; i++) {
+				assertTrue(game.makeMove(origin + cells[i] / 20, origin + cells[i] % 20, game.getCurrentPlayer()));
+				moves++;
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+
+		logger.info("{} random games on {}: {} moves in {}ms, {}ns per move", games,
+			rules.isUnbounded() ? "an unbounded board" : rules.boardSize() + "x" + rules.boardSize(), moves,
+			TimeUnit.NANOSECONDS.toMillis(elapsed), elapsed / moves);
+	}
+
+	private static CaroGame game(GameRules rules) {
+		return new CaroGame(new GamePlayer(1L, "Alice", "X"), new GamePlayer(2L, "Bob", "O"), rules);
+	}
+
+	// Plays X and O alternately, starting and ending with X
+	private static void play(CaroGame game, int[][] xMoves, int[][] oMoves) {
+		for (int i = 0; i < xMoves.length; i++) {
+			assertTrue(game.makeMove(xMoves[i][0], xMoves[i][1], "X"));
+			if (i < oMoves.length) {
+				assertTrue(game.makeMove(oMoves[i][0], oMoves[i][1], "O"));
+			}
+		}
+	}
+
+	private static void assertWon(CaroGame game, String winner, int lineLength) {
+		assertEquals(CaroGame.GameStatus.FINISHED, game.getStatus());
+		assertEquals(winner, game.getWinner());
+		assertEquals(lineLength, game.getWinningLine().size());
+	}
+
+	private static void assertNotWon(CaroGame game) {
+		assertEquals(CaroGame.GameStatus.PLAYING, game.getStatus());
+		assertNull(game.getWinner());
+	}
+}
@@ -0,0 +1,136 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.ChatMessage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatMessageJournalTest {
+	private static final Logger logger = LoggerFactory.getLogger(ChatMessageJournalTest.class);
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private ChatMessageJournal journal;
+
+	@TempDir
+	Path dir;
+
+	@AfterEach
+	void shutdown() throws Exception {
+		journal.shutdown();
+	}
+
+	@Test
+	void loggedAppendThroughputWithGroupCommit() throws Exception {
+		AtomicLong stored = new AtomicLong();
+		when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+			stored.addAndGet(invocation.getArguments().length - 1);
+			return 0;
+		});
+		journal = journal(ChatMessageJournal.Durability.LOG);
+
+		int threads = 8;
+		int appendsPerThread = 2_000;
+		ConcurrentLinkedQueue<CompletableFuture<ChatMessage>> synced = new ConcurrentLinkedQueue<>();
+		AtomicLong ids = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			long senderId = t;
+			new Thread(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < appendsPerThread; i++) {
+						synced.add(journal.append(message(ids.incrementAndGet(), senderId)));
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		CompletableFuture.allOf(synced.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+		long elapsed = System.nanoTime() - begin;
+
+		int appends = threads * appendsPerThread;
+		DistributionSummary groups = meterRegistry.get("chat.journal.log.group.size").summary();
+		assertEquals(appends, (long) groups.totalAmount());
+		logger.info("{} logged appends from {} threads in {}ms: {} per second, {} fsyncs, {} records each",
+			appends, threads, TimeUnit.NANOSECONDS.toMillis(elapsed), appends * TimeUnit.SECONDS.toNanos(1) / elapsed,
+			groups.count(), String.format("%.1f", groups.mean()));
+
+		journal.flush();
+		assertEquals(appends * 6L, stored.get());
+	}
+
+	@Test
+	void ackAfterFlushCompletesOnceTheDatabaseIsBack() throws Exception {
+		AtomicBoolean databaseUp = new AtomicBoolean();
+		AtomicLong stored = new AtomicLong();
+		when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+			if (!databaseUp.get()) {
+				throw new CannotGetJdbcConnectionException("down");
+			}
+			stored.incrementAndGet();
+			return 1;
+		});
+		journal = journal(ChatMessageJournal.Durability.ACK_AFTER_FLUSH);
+
+		ChatMessage message = message(1L, 1L);
+		CompletableFuture<ChatMessage> acked = journal.append(message);
+		assertThrows(TimeoutException.class, () -> acked.get(300, TimeUnit.MILLISECONDS));
+		assertEquals(1, meterRegistry.counter("chat.journal.ack.late").count());
+
+		// Still queued past the ack timeout, so it is written, and acked, once the database answers again
+		databaseUp.set(true);
+		journal.flush();
+		assertEquals(1, stored.get());
+		assertEquals(message, acked.get(5, TimeUnit.SECONDS));
+	}
+
+	private ChatMessageJournal journal(ChatMessageJournal.Durability durability) throws Exception {
+		ChatMessageJournal journal = new ChatMessageJournal(jdbcTemplate, meterRegistry);
+		ReflectionTestUtils.setField(journal, "durability", durability);
+		ReflectionTestUtils.setField(journal, "batchSize", 500);
+		ReflectionTestUtils.setField(journal, "flushIntervalMs", 20L);
+		ReflectionTestUtils.setField(journal, "logPath", dir.resolve("chat-journal.log").toString());
+		ReflectionTestUtils.setField(journal, "ackTimeoutMs", 100L);
+		journal.start();
+		return journal;
+	}
+
+	private static ChatMessage message(long id, long senderId) {
+		ChatMessage message = new ChatMessage(senderId, senderId + 100, "hello " + id);
+		message.setId(id);
+		return message;
+	}
+}
@@ -0,0 +1,148 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.CaroGame;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameCommandExecutorTest {
+
+	private final GameCommandExecutor executor = new GameCommandExecutor(new SimpleMeterRegistry(), 8);
+	private final GameService gameService = new GameService(0);
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	void racingMovesKeepGameInvariants() throws InterruptedException {
+		CaroGame game = gameService.createGameInvitation(1L, "Alice", 2L, "Bob");
+		String gameId = game.getGameId();
+		gameService.acceptGameInvitation(gameId, 2L);
+
+		// Moves recorded from inside the game's lane, in the order they were applied
+		ConcurrentLinkedQueue<int[]> applied = new ConcurrentLinkedQueue<>();
+		AtomicInteger concurrentCommands = new AtomicInteger();
+		AtomicInteger overlaps = new AtomicInteger();
+
+		int threads = 16;
+		int movesPerThread = 500;
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch submitted = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			long userId = t % 2 == 0 ? 1L : 2L;
+			new Thread(() -> {
+				try {
+					start.await();
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for (int i = 0; i < movesPerThread; i++) {
+						int row = random.nextInt(20);
+						int col = random.nextInt(20);
+						executor.execute(gameId, () -> {
+							if (concurrentCommands.incrementAndGet() > 1) {
+								overlaps.incrementAndGet();
+							}
+							if (gameService.makeMove(gameId, userId, row, col) != null) {
+								applied.add(new int[]{game.getMoveNumber(), row, col, (int) userId});
+							}
+							concurrentCommands.decrementAndGet();
+						});
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					submitted.countDown();
+				}
+			}).start();
+		}
+		start.countDown();
+		assertTrue(submitted.await(30, TimeUnit.SECONDS));
+		drain(gameId);
+
+		assertEquals(0, overlaps.get(), "commands for one game overlapped");
+
+		List<int[]> moves = new ArrayList<>(applied);
+		assertEquals(game.getMoveNumber(), moves.size());
+
+		Set<Integer> cells = new HashSet<>();
+		int xCount = 0;
+		int oCount = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			int[] move = moves.get(i);
+			assertEquals(i + 1, move[0], "move numbers must be consecutive");
+			assertTrue(cells.add(move[1] * 20 + move[2]), "cell played twice");
+			// X (user 1) moves first, then players alternate
+			assertEquals(i % 2 == 0 ? 1 : 2, move[3], "players must alternate");
+			String symbol = game.getCell(move[1], move[2]);
+			if ("X".equals(symbol)) {
+				xCount++;
+			} else {
+				oCount++;
+			}
+		}
+		assertTrue(xCount == oCount || xCount == oCount + 1);
+		if (game.getStatus() != CaroGame.GameStatus.FINISHED) {
+			assertEquals(xCount == oCount ? "X" : "O", game.getCurrentPlayer());
+		}
+	}
+
+	@Test
+	void differentGamesRunInParallel() throws InterruptedException {
+		CountDownLatch firstRunning = new CountDownLatch(1);
+		CountDownLatch secondRan = new CountDownLatch(1);
+		AtomicInteger firstSawSecond = new AtomicInteger();
+
+		executor.execute("game-a", () -> {
+			firstRunning.countDown();
+			try {
+				// Blocks game-a's lane until game-b has run
+				if (secondRan.await(5, TimeUnit.SECONDS)) {
+					firstSawSecond.incrementAndGet();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(firstRunning.await(5, TimeUnit.SECONDS));
+		executor.execute("game-b", secondRan::countDown);
+
+		drain("game-a");
+		assertEquals(1, firstSawSecond.get());
+	}
+
+	@Test
+	void commandsForOneGameRunInSubmissionOrder() throws InterruptedException {
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			int n = i;
+			executor.execute("game", () -> order.add(n));
+		}
+		drain("game");
+
+		assertEquals(1000, order.size());
+		for (int i = 0; i < order.size(); i++) {
+			assertEquals(i, order.get(i));
+		}
+	}
+
+	// Everything submitted before this call has run once the marker command runs
+	private void drain(String gameId) throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(1);
+		executor.execute(gameId, done::countDown);
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+	}
+}
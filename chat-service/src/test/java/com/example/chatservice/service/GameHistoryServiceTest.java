@@ -0,0 +1,91 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.CaroGame;
+import com.example.chatservice.model.GamePlayer;
+import com.example.chatservice.model.HeadToHead;
+import com.example.chatservice.repository.GameRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GameHistoryServiceTest {
+
+	private final GameRecordRepository repository = mock(GameRecordRepository.class);
+	private final GameRecordWriter writer = mock(GameRecordWriter.class);
+	private final GameHistoryService historyService = new GameHistoryService(repository, writer,
+		mock(RatingService.class), new SimpleMeterRegistry(), 100);
+	// Threads that touched the database
+	private final Set<String> databaseThreads = ConcurrentHashMap.newKeySet();
+
+	@AfterEach
+	void shutdown() {
+		historyService.shutdown();
+	}
+
+	@Test
+	void uncachedScoreIsLoadedOffTheCallingThread() throws Exception {
+		storedScore(new HeadToHead(1L, 2L, 3, 1, 0));
+
+		CompletableFuture<Map<String, Integer>> scoreboard = historyService.getScoreboard(game());
+
+		assertEquals(3, scoreboard.get(5, TimeUnit.SECONDS).get("player1Wins"));
+		assertEquals(Set.of("head-to-head-loader"), databaseThreads);
+	}
+
+	@Test
+	void finishedGameUpdatesThePrefetchedScoreWithoutTheDatabase() throws Exception {
+		storedScore(new HeadToHead(1L, 2L, 3, 1, 0));
+		historyService.prefetch(1L, 2L);
+		historyService.getScoreboard(game()).get(5, TimeUnit.SECONDS);
+
+		CaroGame game = game();
+		game.setWinner("O");
+		CompletableFuture<Map<String, Integer>> scoreboard = historyService.recordFinishedGame(game, "finished");
+
+		assertTrue(scoreboard.isDone());
+		assertEquals(2, scoreboard.join().get("player2Wins"));
+		verify(writer, times(1)).flush();
+		verify(repository, times(1)).findHeadToHead(1L, 2L);
+		verify(writer).append(any());
+	}
+
+	@Test
+	void finishedGameOnACacheMissIsCountedAfterTheLoad() throws Exception {
+		storedScore(new HeadToHead(1L, 2L, 3, 1, 0));
+
+		CaroGame game = game();
+		game.setWinner("X");
+		Map<String, Integer> scoreboard = historyService.recordFinishedGame(game, "finished").get(5, TimeUnit.SECONDS);
+
+		assertEquals(4, scoreboard.get("player1Wins"));
+		assertEquals(Set.of("head-to-head-loader"), databaseThreads);
+	}
+
+	private void storedScore(HeadToHead score) {
+		doAnswer(invocation -> databaseThreads.add(Thread.currentThread().getName())).when(writer).flush();
+		when(repository.findHeadToHead(score.playerLowId(), score.playerHighId())).thenAnswer(invocation -> {
+			databaseThreads.add(Thread.currentThread().getName());
+			return Optional.of(score);
+		});
+	}
+
+	private static CaroGame game() {
+		return new CaroGame(new GamePlayer(1L, "Alice", "X"), new GamePlayer(2L, "Bob", "O"));
+	}
+}
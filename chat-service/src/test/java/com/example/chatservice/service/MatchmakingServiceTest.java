@@ -0,0 +1,96 @@
+package com.example.chatservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MatchmakingServiceTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(MatchmakingServiceTest.class);
+
+	private final List<MatchFoundEvent> matches = new ArrayList<>();
+	// Window 50 widening by 100 per second; the scheduled pass is pushed out so tests drive it
+	private final MatchmakingService matchmaking = new MatchmakingService(
+		event -> matches.add((MatchFoundEvent) event), new SimpleMeterRegistry(), 50, 100, 400, 3_600_000);
+
+	@AfterEach
+	void shutdown() {
+		matchmaking.shutdown();
+	}
+
+	@Test
+	void pairsClosestRatingWithinWindow() {
+		matchmaking.join(1L, "a", 1000);
+		matchmaking.join(2L, "b", 1100);
+		assertTrue(matches.isEmpty());
+
+		matchmaking.join(3L, "c", 1060);
+
+		assertEquals(1, matches.size());
+		assertEquals(2L, matches.get(0).first().userId());
+		assertEquals(3L, matches.get(0).second().userId());
+		assertTrue(matchmaking.isWaiting(1L));
+	}
+
+	@Test
+	void windowWidensWhilePlayersWait() {
+		matchmaking.join(1L, "a", 1000);
+		matchmaking.join(2L, "b", 1200);
+		assertEquals(0, matchmaking.pass(System.nanoTime()));
+
+		// After two seconds both windows are 250 wide
+		assertEquals(1, matchmaking.pass(System.nanoTime() + TimeUnit.SECONDS.toNanos(2)));
+		assertEquals(0, matchmaking.getWaitingCount());
+	}
+
+	@Test
+	void pairingLatencyWith50kPlayersQueued() {
+		// Ratings further apart than the widest window: nobody pairs on joining
+		int queued = 50_000;
+		for (int i = 0; i < queued; i++) {
+			matchmaking.join((long) i, "p" + i, i * 1000);
+		}
+		assertEquals(queued, matchmaking.getWaitingCount());
+		assertTrue(matches.isEmpty());
+
+		// Each newcomer lands 10 points above a waiting player and is paired on join
+		int joins = 10_000;
+		long[] latencies = new long[joins];
+		for (int i = 0; i < joins; i++) {
+			long start = System.nanoTime();
+			matchmaking.join((long) (queued + i), "n" + i, i * 5 * 1000 + 10);
+			latencies[i] = System.nanoTime() - start;
+		}
+		assertEquals(joins, matches.size());
+		assertEquals(queued - joins, matchmaking.getWaitingCount());
+
+		Set<Long> paired = new HashSet<>();
+		for (MatchFoundEvent match : matches) {
+			assertEquals(10, match.second().rating() - match.first().rating());
+			assertTrue(paired.add(match.first().userId()));
+			assertTrue(paired.add(match.second().userId()));
+		}
+
+		// A full pass over everyone still waiting, none of whom can pair yet
+		long passStart = System.nanoTime();
+		assertEquals(0, matchmaking.pass(System.nanoTime()));
+		long passNanos = System.nanoTime() - passStart;
+
+		Arrays.sort(latencies);
+		logger.info("{} queued: join-to-pair p50 {}us, p99 {}us, max {}us; pass over {} waiting took {}ms",
+			queued, latencies[joins / 2] / 1000, latencies[joins * 99 / 100] / 1000, latencies[joins - 1] / 1000,
+			matchmaking.getWaitingCount(), TimeUnit.NANOSECONDS.toMillis(passNanos));
+	}
+}
@@ -0,0 +1,53 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.OnlineUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OnlineUserServiceTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final UserProfileBatchClient batchClient = mock(UserProfileBatchClient.class);
+	private final UserProfileResolver resolver = new UserProfileResolver(meterRegistry, batchClient, 100, 60_000);
+	private final OnlineUserService onlineUserService = new OnlineUserService(resolver,
+		mock(ApplicationEventPublisher.class), 4096, 2);
+
+	@Test
+	void userUnknownToAuthServiceIsNotListed() {
+		CompletableFuture<OnlineUser> lookup = new CompletableFuture<>();
+		when(batchClient.fetch(7L)).thenReturn(lookup);
+
+		onlineUserService.addOnlineUser(7L);
+		lookup.complete(null);
+
+		assertFalse(onlineUserService.isUserOnline(7L));
+		assertTrue(onlineUserService.getPresenceChangesSince(0).joined().isEmpty());
+	}
+
+	@Test
+	void reconnectingUserIsACacheHit() {
+		OnlineUser alice = new OnlineUser();
+		alice.setId(1L);
+		alice.setName("Alice");
+		when(batchClient.fetch(1L)).thenReturn(CompletableFuture.completedFuture(alice));
+
+		onlineUserService.addOnlineUser(1L);
+		onlineUserService.removeOnlineUser(1L);
+		onlineUserService.addOnlineUser(1L);
+
+		assertEquals(alice, onlineUserService.getOnlineUser(1L));
+		verify(batchClient, times(1)).fetch(1L);
+		assertEquals(0.5, meterRegistry.get("chat.profile.cache.hit.ratio").gauge().value());
+	}
+}
@@ -0,0 +1,65 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.model.CaroGame;
+import com.example.chatservice.model.GamePlayer;
+import com.example.chatservice.model.PlayerRating;
+import com.example.chatservice.repository.PlayerRatingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RatingServiceTest {
+
+	private final PlayerRatingRepository repository = mock(PlayerRatingRepository.class);
+	private RatingService ratingService;
+
+	@AfterEach
+	void shutdown() {
+		ratingService.shutdown();
+	}
+
+	@Test
+	void gameIsNotRatedWhenARatingCannotBeRead() {
+		ratingService = new RatingService(repository, new SimpleMeterRegistry(), 60_000, 100);
+		when(repository.findRating(1L)).thenThrow(new QueryTimeoutException("down"));
+		when(repository.findRating(2L)).thenReturn(Optional.of(new PlayerRating(2L, 1500, 40)));
+
+		ratingService.recordResult(finishedGame("X"));
+		ratingService.flush();
+
+		verify(repository, never()).saveAll(any());
+		assertEquals(new PlayerRating(2L, 1500, 40), ratingService.getRating(2L));
+	}
+
+	@Test
+	void writtenRatingsAreEvictedOverTheLimit() {
+		ratingService = new RatingService(repository, new SimpleMeterRegistry(), 60_000, 1);
+		when(repository.findRating(1L)).thenReturn(Optional.of(new PlayerRating(1L, 1200, 0)));
+		when(repository.findRating(2L)).thenReturn(Optional.of(new PlayerRating(2L, 1200, 0)));
+
+		ratingService.recordResult(finishedGame("X"));
+		ratingService.flush();
+		verify(repository).saveAll(any());
+
+		// Evicted once written, so read from the database again
+		ratingService.getRating(1L);
+		verify(repository, times(2)).findRating(1L);
+	}
+
+	private static CaroGame finishedGame(String winner) {
+		CaroGame game = new CaroGame(new GamePlayer(1L, "Alice", "X"), new GamePlayer(2L, "Bob", "O"));
+		game.setWinner(winner);
+		return game;
+	}
+}
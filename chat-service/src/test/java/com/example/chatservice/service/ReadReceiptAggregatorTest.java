@@ -0,0 +1,77 @@
+package com.example.chatservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class ReadReceiptAggregatorTest {
+
+	private final MessageIdGenerator messageIdGenerator = new MessageIdGenerator(0);
+	private final ReadReceiptAggregator aggregator = new ReadReceiptAggregator(mock(JdbcTemplate.class),
+		mock(ChatMessageJournal.class), messageIdGenerator, mock(ApplicationEventPublisher.class),
+		new SimpleMeterRegistry(), 60_000, 1000);
+
+	@AfterEach
+	void shutdown() {
+		aggregator.shutdown();
+	}
+
+	@Test
+	void markPastTheLastIssuedIdIsClamped() throws Exception {
+		Long clamped = aggregator.markRead(1L, 2L, Long.MAX_VALUE);
+		assertNotNull(clamped);
+		assertTrue(clamped < Long.MAX_VALUE);
+
+		// A message sent afterwards can still be marked read
+		Thread.sleep(2);
+		long later = messageIdGenerator.nextId();
+		assertTrue(later > clamped);
+		assertEquals(later, aggregator.markRead(1L, 2L, later));
+	}
+
+	@Test
+	void markOfAnIssuedIdIsKept() {
+		long id = messageIdGenerator.nextId();
+		assertEquals(id, aggregator.markRead(1L, 2L, id));
+	}
+
+	@Test
+	void markWithoutAnIdCoversMessagesSentThroughOtherNodes() {
+		long sentElsewhere = new MessageIdGenerator(3).nextId();
+
+		Long mark = aggregator.markRead(1L, 2L, null);
+
+		assertNotNull(mark);
+		assertTrue(mark >= sentElsewhere);
+	}
+
+	@Test
+	void trimForgetsTheOldestWrittenMarksFirst() {
+		ReadReceiptAggregator small = new ReadReceiptAggregator(mock(JdbcTemplate.class),
+			mock(ChatMessageJournal.class), messageIdGenerator, mock(ApplicationEventPublisher.class),
+			new SimpleMeterRegistry(), 60_000, 2);
+		try {
+			long oldest = messageIdGenerator.nextId();
+			long middle = messageIdGenerator.nextId();
+			long newest = messageIdGenerator.nextId();
+			small.markRead(1L, 10L, oldest);
+			small.markRead(2L, 10L, middle);
+			small.markRead(3L, 10L, newest);
+			small.flush();
+
+			// Forgotten, so the same mark counts as new again
+			assertEquals(oldest, small.markRead(1L, 10L, oldest));
+			assertNull(small.markRead(3L, 10L, newest));
+		} finally {
+			small.shutdown();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.example.chatservice.service;
+
+import com.example.chatservice.dto.UnreadCounts;
+import com.example.chatservice.dto.UnreadFromSender;
+import com.example.chatservice.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UnreadStateServiceTest {
+
+	private final ChatMessageRepository repository = mock(ChatMessageRepository.class);
+	private final ChatMessageJournal journal = mock(ChatMessageJournal.class);
+	private final UnreadStateService unreadStateService = new UnreadStateService(repository, journal,
+		new SimpleMeterRegistry(), 100, 100, 1);
+	// Threads that flushed the journal or queried the database
+	private final Set<String> databaseThreads = ConcurrentHashMap.newKeySet();
+
+	@AfterEach
+	void shutdown() {
+		unreadStateService.shutdown();
+	}
+
+	@Test
+	void uncachedCountsAreLoadedOffTheCallingThread() throws Exception {
+		storedCounts(2L, new UnreadFromSender(1L, 3L, 30L));
+
+		CompletableFuture<UnreadCounts> counts = unreadStateService.loadUnreadCounts(2L);
+
+		assertEquals(3, counts.get(5, TimeUnit.SECONDS).total());
+		assertEquals(Set.of("unread-loader-1"), databaseThreads);
+	}
+
+	@Test
+	void cachedCountsAreCompleteWithoutTheDatabase() throws Exception {
+		storedCounts(2L, new UnreadFromSender(1L, 3L, 30L));
+		unreadStateService.loadUnreadCounts(2L).get(5, TimeUnit.SECONDS);
+
+		CompletableFuture<UnreadCounts> counts = unreadStateService.loadUnreadCounts(2L);
+
+		assertTrue(counts.isDone());
+		assertEquals(3, counts.join().bySender().get(1L));
+		verify(repository, times(1)).countUnreadBySender(2L);
+	}
+
+	private void storedCounts(Long userId, UnreadFromSender... rows) {
+		doAnswer(invocation -> databaseThreads.add(Thread.currentThread().getName())).when(journal).flush();
+		when(repository.countUnreadBySender(userId)).thenAnswer(invocation -> {
+			databaseThreads.add(Thread.currentThread().getName());
+			return List.of(rows);
+		});
+	}
+}
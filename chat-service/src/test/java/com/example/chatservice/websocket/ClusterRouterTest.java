@@ -0,0 +1,81 @@
+package com.example.chatservice.websocket;
+
+import com.example.chatservice.cluster.LoopbackClusterBus;
+import com.example.chatservice.model.ChatMessage;
+import com.example.chatservice.repository.ChatMessageRepository;
+import com.example.chatservice.service.ChatMessageJournal;
+import com.example.chatservice.service.ChatMessageSentEvent;
+import com.example.chatservice.service.ChatService;
+import com.example.chatservice.service.ConversationCache;
+import com.example.chatservice.service.MessageIdGenerator;
+import com.example.chatservice.service.OnlineUserService;
+import com.example.chatservice.service.ReadReceiptAggregator;
+import com.example.chatservice.service.ReadReceiptEvent;
+import com.example.chatservice.service.UnreadStateService;
+import com.example.chatservice.websocket.protocol.FrameCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class ClusterRouterTest {
+
+	private static final class Node {
+		final ConversationCache conversationCache = new ConversationCache(new SimpleMeterRegistry(), 100, 100);
+		final UnreadStateService unreadStateService = new UnreadStateService(mock(ChatMessageRepository.class),
+			mock(ChatMessageJournal.class), new SimpleMeterRegistry(), 100, 100, 1);
+		final ChatService chatService;
+		final ClusterRouter router;
+
+		Node(LoopbackClusterBus.Hub hub, int nodeId) {
+			chatService = new ChatService(mock(ChatMessageRepository.class), mock(ChatMessageJournal.class),
+				new MessageIdGenerator(nodeId), conversationCache, unreadStateService,
+				mock(ReadReceiptAggregator.class), mock(ApplicationEventPublisher.class));
+			router = new ClusterRouter(new LoopbackClusterBus(hub, nodeId), mock(SessionRegistry.class),
+				mock(OnlineUserService.class), chatService, mock(FrameCodec.class),
+				mock(ApplicationEventPublisher.class), new SimpleMeterRegistry());
+		}
+	}
+
+	private final LoopbackClusterBus.Hub hub = new LoopbackClusterBus.Hub();
+	private final Node node1 = new Node(hub, 1);
+	private final Node node2 = new Node(hub, 2);
+
+	@Test
+	void messageSentOnOneNodeIsInTheOtherNodesCachedHistory() {
+		LocalDateTime since = LocalDateTime.now().minusMinutes(1);
+		// Cached on node 2 before the message is sent
+		assertEquals(List.of(), node2.conversationCache.hydrate(1L, 2L, since, List.of()));
+
+		ChatMessage message = message(1L, 2L);
+		node1.conversationCache.append(message);
+		node1.router.onMessageSent(new ChatMessageSentEvent(message));
+
+		List<ChatMessage> cached = node2.conversationCache.getMessagesSince(1L, 2L, since);
+		assertEquals(1, cached.size());
+		assertEquals(message.getId(), cached.get(0).getId());
+	}
+
+	@Test
+	void unreadCountsFollowSendsAndReadsOnOtherNodes() {
+		assertEquals(0, node2.unreadStateService.getUnreadCounts(2L).total());
+
+		ChatMessage message = message(1L, 2L);
+		node1.router.onMessageSent(new ChatMessageSentEvent(message));
+		assertEquals(1, node2.unreadStateService.getUnreadCounts(2L).total());
+
+		node1.router.onReadReceipt(new ReadReceiptEvent(1L, 2L, message.getId()));
+		assertEquals(0, node2.unreadStateService.getUnreadCounts(2L).total());
+	}
+
+	private static ChatMessage message(Long senderId, Long receiverId) {
+		ChatMessage message = new ChatMessage(senderId, receiverId, "hello");
+		message.setId(new MessageIdGenerator(1).nextId());
+		return message;
+	}
+}
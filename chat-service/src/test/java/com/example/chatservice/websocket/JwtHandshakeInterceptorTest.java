@@ -0,0 +1,101 @@
+package com.example.chatservice.websocket;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtHandshakeInterceptorTest {
+	private static final Logger logger = LoggerFactory.getLogger(JwtHandshakeInterceptorTest.class);
+
+	private static final String SECRET = "myVerySecretKeyThatIs32CharsLong123456789ABC";
+	private static final SecretKey KEY = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+
+	private final JwtHandshakeInterceptor interceptor = new JwtHandshakeInterceptor(SECRET, new SimpleMeterRegistry());
+
+	@Test
+	void acceptsAValidTokenAndKeepsTheUserId() {
+		Map<String, Object> attributes = new HashMap<>();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(handshake(token(42L, KEY, 60_000), response, attributes));
+		assertEquals(42L, attributes.get(JwtHandshakeInterceptor.USER_ID_ATTRIBUTE));
+	}
+
+	@Test
+	void refusesMissingForgedExpiredAndRefreshTokens() {
+		SecretKey otherKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode("c29tZU90aGVyU2VjcmV0VGhhdElzTG9uZ0Vub3VnaDEyMzQ="));
+		String refreshToken = Jwts.builder()
+			.setSubject("user42@example.com")
+			.claim("userId", 42L)
+			.claim("tokenType", "refresh")
+			.setExpiration(new Date(System.currentTimeMillis() + 60_000))
+			.signWith(KEY)
+			.compact();
+		for (String token : new String[] {null, "not-a-jwt", token(42L, otherKey, 60_000), token(42L, KEY, -60_000),
+				refreshToken}) {
+			Map<String, Object> attributes = new HashMap<>();
+			MockHttpServletResponse response = new MockHttpServletResponse();
+
+			assertFalse(handshake(token, response, attributes));
+			assertEquals(HttpStatus.UNAUTHORIZED.value(), response.getStatus());
+			assertTrue(attributes.isEmpty());
+		}
+	}
+
+	@Test
+	void handshakeThroughputWithVerification() {
+		String token = token(42L, KEY, 60_000);
+		for (int i = 0; i < 2_000; i++) {
+			handshake(token, new MockHttpServletResponse(), new HashMap<>());
+		}
+
+		int handshakes = 20_000;
+		long start = System.nanoTime();
+		for (int i = 0; i < handshakes; i++) {
+			assertTrue(handshake(token, new MockHttpServletResponse(), new HashMap<>()));
+		}
+		long elapsed = System.nanoTime() - start;
+
+		logger.info("{} verified handshakes in {}ms: {} per second, {}us each", handshakes,
+			TimeUnit.NANOSECONDS.toMillis(elapsed), handshakes * TimeUnit.SECONDS.toNanos(1) / elapsed,
+			elapsed / handshakes / 1000);
+	}
+
+	private boolean handshake(String token, MockHttpServletResponse response, Map<String, Object> attributes) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws");
+		if (token != null) {
+			request.setParameter("token", token);
+		}
+		return interceptor.beforeHandshake(new ServletServerHttpRequest(request), new ServletServerHttpResponse(response),
+			null, attributes);
+	}
+
+	private static String token(long userId, SecretKey key, long expiresInMs) {
+		return Jwts.builder()
+			.setSubject("user" + userId + "@example.com")
+			.claim("userId", userId)
+			.setIssuedAt(new Date())
+			.setExpiration(new Date(System.currentTimeMillis() + expiresInMs))
+			.signWith(key)
+			.compact();
+	}
+}
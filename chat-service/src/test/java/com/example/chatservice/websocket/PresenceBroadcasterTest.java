@@ -0,0 +1,177 @@
+package com.example.chatservice.websocket;
+
+import com.example.chatservice.model.OnlineUser;
+import com.example.chatservice.model.PresenceDelta;
+import com.example.chatservice.service.OnlineUserService;
+import com.example.chatservice.service.UserProfileBatchClient;
+import com.example.chatservice.service.UserProfileResolver;
+import com.example.chatservice.websocket.protocol.FrameCodec;
+import com.example.chatservice.websocket.protocol.Frames.PresenceUpdateFrame;
+import com.example.chatservice.websocket.protocol.OutboundFrame;
+import com.example.chatservice.websocket.protocol.WireFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PresenceBroadcasterTest {
+	private static final Logger logger = LoggerFactory.getLogger(PresenceBroadcasterTest.class);
+
+	private final SessionRegistry sessionRegistry = mock(SessionRegistry.class);
+	private final OnlineUserService onlineUserService = mock(OnlineUserService.class);
+	private final FrameCodec frameCodec = mock(FrameCodec.class);
+	// Frames in the order flush() produced them
+	private final List<OutboundFrame> flushed = Collections.synchronizedList(new ArrayList<>());
+	private PresenceBroadcaster broadcaster;
+
+	@AfterEach
+	void shutdown() {
+		broadcaster.shutdown();
+	}
+
+	@Test
+	void everySessionSeesDeltasInFlushOrder() throws Exception {
+		List<List<OutboundFrame>> received = new ArrayList<>();
+		List<SessionSendQueue> sessions = new ArrayList<>();
+		for (int i = 0; i < 64; i++) {
+			List<OutboundFrame> frames = Collections.synchronizedList(new ArrayList<>());
+			received.add(frames);
+			SessionSendQueue queue = mock(SessionSendQueue.class);
+			when(queue.sendPresence(any(OutboundFrame.class))).thenAnswer(invocation -> {
+				// Uneven send times, so a later delta could overtake an earlier one on another thread
+				if (ThreadLocalRandom.current().nextInt(8) == 0) {
+					Thread.sleep(1);
+				}
+				frames.add(invocation.getArgument(0));
+				return true;
+			});
+			sessions.add(queue);
+		}
+		broadcaster = broadcaster(sessions, 4);
+
+		int flushes = 100;
+		for (int i = 0; i < flushes; i++) {
+			ReflectionTestUtils.invokeMethod(broadcaster, "flush");
+		}
+		awaitDelivered(() -> received.stream().mapToLong(List::size).sum(), (long) flushes * sessions.size());
+
+		for (List<OutboundFrame> frames : received) {
+			assertEquals(flushed, frames);
+		}
+	}
+
+	@Test
+	void fanoutThroughput() throws Exception {
+		int sessionCount = 10_000;
+		int flushes = 100;
+		// Real send queues whose writer never drains, so every frame stays queued and can be counted
+		Executor parked = runnable -> {};
+		List<SessionSendQueue> sessions = new ArrayList<>(sessionCount);
+		for (int i = 0; i < sessionCount; i++) {
+			sessions.add(new SessionSendQueue(mock(WebSocketSession.class), parked, flushes, 32, Long.MAX_VALUE,
+				SendOverflowPolicy.DROP_PRESENCE, WireFormat.JSON));
+		}
+		broadcaster = broadcaster(sessions, 2);
+		FrameCodec realCodec = new FrameCodec(new SimpleMeterRegistry());
+		when(frameCodec.frame(eq("presence_update"), any())).thenAnswer(invocation ->
+			realCodec.frame("presence_update", invocation.getArgument(1)));
+
+		long start = System.nanoTime();
+		for (int i = 0; i < flushes; i++) {
+			ReflectionTestUtils.invokeMethod(broadcaster, "flush");
+		}
+		awaitDelivered(() -> sessions.stream().mapToLong(SessionSendQueue::size).sum(), (long) flushes * sessionCount);
+		long elapsed = System.nanoTime() - start;
+
+		logger.info("{} presence updates to {} sessions in {}ms: {} frames per second", flushes, sessionCount,
+			TimeUnit.NANOSECONDS.toMillis(elapsed), (long) flushes * sessionCount * TimeUnit.SECONDS.toNanos(1) / elapsed);
+	}
+
+	@Test
+	void reconnectStormLargerThanTheMinimumLogIsOneDelta() {
+		int minCapacity = 64;
+		int users = 1_000;
+		// Profiles answer only after every user has joined, so each join starts with a placeholder
+		Map<Long, CompletableFuture<OnlineUser>> lookups = new ConcurrentHashMap<>();
+		UserProfileBatchClient batchClient = mock(UserProfileBatchClient.class);
+		when(batchClient.fetch(anyLong())).thenAnswer(invocation ->
+			lookups.computeIfAbsent(invocation.getArgument(0), userId -> new CompletableFuture<>()));
+		OnlineUserService presence = new OnlineUserService(
+			new UserProfileResolver(new SimpleMeterRegistry(), batchClient, users, 60_000),
+			mock(ApplicationEventPublisher.class), minCapacity, 2);
+
+		List<PresenceUpdateFrame> updates = new ArrayList<>();
+		when(sessionRegistry.getAllSessions()).thenReturn(List.of(mock(SessionSendQueue.class)));
+		when(frameCodec.frame(eq("presence_update"), any())).thenAnswer(invocation -> {
+			updates.add(invocation.getArgument(1));
+			return mock(OutboundFrame.class);
+		});
+		broadcaster = new PresenceBroadcaster(sessionRegistry, presence, frameCodec, 2);
+
+		for (long userId = 1; userId <= users; userId++) {
+			presence.addOnlineUser(userId);
+		}
+		lookups.forEach((userId, lookup) -> {
+			OnlineUser user = new OnlineUser();
+			user.setId(userId);
+			user.setName("Player " + userId);
+			lookup.complete(user);
+		});
+		ReflectionTestUtils.invokeMethod(broadcaster, "flush");
+
+		assertTrue(users > minCapacity);
+		assertEquals(1, updates.size());
+		PresenceUpdateFrame update = updates.get(0);
+		// Starts right after the last broadcast, so no client sees a gap and asks for a snapshot
+		assertEquals(1, update.fromSeq());
+		assertEquals(users, update.joined().size());
+		assertTrue(update.joined().stream().allMatch(user -> user.getName().startsWith("Player ")));
+	}
+
+	private PresenceBroadcaster broadcaster(List<SessionSendQueue> sessions, int fanoutThreads) {
+		when(sessionRegistry.getAllSessions()).thenReturn(sessions);
+		when(onlineUserService.getPresenceEpoch()).thenReturn("epoch");
+		// Every flush finds exactly one new change
+		when(onlineUserService.getPresenceChangesSince(anyLong())).thenAnswer(invocation -> {
+			long seq = invocation.getArgument(0);
+			return new PresenceDelta(seq + 1, seq + 1, List.of(), List.of(seq + 1));
+		});
+		when(frameCodec.frame(eq("presence_update"), any())).thenAnswer(invocation -> {
+			OutboundFrame frame = mock(OutboundFrame.class);
+			flushed.add(frame);
+			return frame;
+		});
+		return new PresenceBroadcaster(sessionRegistry, onlineUserService, frameCodec, fanoutThreads);
+	}
+
+	private static void awaitDelivered(LongSupplier delivered, long expected) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (delivered.getAsLong() < expected && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		assertEquals(expected, delivered.getAsLong());
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.chatservice.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SessionRegistryTest {
+	private static final Logger logger = LoggerFactory.getLogger(SessionRegistryTest.class);
+
+	private final SendQueueFactory sendQueueFactory = new SendQueueFactory(new SimpleMeterRegistry(), 1, 1, 50, 5000);
+	private final SessionRegistry registry = new SessionRegistry(sendQueueFactory);
+
+	@AfterEach
+	void shutdown() {
+		sendQueueFactory.shutdown();
+	}
+
+	@Test
+	void reloadingTabNeverLosesTheNewSession() throws Exception {
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		WebSocketSession previous = session("s0");
+		registry.register(previous, 1L);
+
+		for (int i = 1; i <= 500; i++) {
+			WebSocketSession closing = previous;
+			Thread closer = new Thread(() -> {
+				await(barrier);
+				registry.unregister(closing);
+			});
+			closer.start();
+			WebSocketSession opened = session("s" + i);
+			await(barrier);
+			SessionSendQueue queue = registry.register(opened, 1L);
+			closer.join();
+
+			assertTrue(registry.hasSessions(1L));
+			assertTrue(registry.getUserSessions(1L).contains(queue));
+			assertEquals(1, registry.getUserSessions(1L).size());
+			previous = opened;
+		}
+	}
+
+	@Test
+	void routingLookupTiming() {
+		int users = 5_000;
+		for (int i = 0; i < users * 2; i++) {
+			registry.register(session("t" + i), (long) (i % users));
+		}
+
+		int lookups = 2_000_000;
+		long routed = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < lookups; i++) {
+			routed += registry.getUserSessions((long) (i % users)).size();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		assertEquals(2L * lookups, routed);
+		logger.info("{} sessions of {} users: {} lookups in {}ms, {}ns each", users * 2, users, lookups,
+			TimeUnit.NANOSECONDS.toMillis(elapsed), elapsed / lookups);
+	}
+
+	private static WebSocketSession session(String id) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(id);
+		return session;
+	}
+
+	private static void await(CyclicBarrier barrier) {
+		try {
+			barrier.await();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.example.chatservice.websocket;
+
+import com.example.chatservice.websocket.protocol.WireFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SessionSendQueueTest {
+
+	// Holds drain tasks back so frames stay queued until the test runs them
+	private final List<Runnable> pending = new ArrayList<>();
+	private final Executor writer = pending::add;
+	private final WebSocketSession session = mock(WebSocketSession.class);
+
+	@Test
+	void dropsOldestFramesOnceTheByteLimitIsReached() {
+		SessionSendQueue queue = new SessionSendQueue(session, writer, 100, 32, 10, SendOverflowPolicy.DROP_OLDEST,
+			WireFormat.JSON);
+
+		assertTrue(queue.send(new TextMessage("aaaa")));
+		assertTrue(queue.send(new TextMessage("bbbb")));
+		assertTrue(queue.send(new TextMessage("cccc")));
+
+		assertEquals(2, queue.size());
+		assertEquals(1, queue.getDroppedCount());
+	}
+
+	@Test
+	void presenceFramesAreDroppedBeforeOthers() {
+		SessionSendQueue queue = new SessionSendQueue(session, writer, 100, 32, 10, SendOverflowPolicy.DROP_PRESENCE,
+			WireFormat.JSON);
+
+		assertTrue(queue.send(new TextMessage("chat")));
+		assertTrue(queue.sendPresence(new TextMessage("pres")));
+		assertTrue(queue.send(new TextMessage("move")));
+		assertFalse(queue.sendPresence(new TextMessage("late")));
+
+		assertEquals(2, queue.size());
+		assertEquals(2, queue.getDroppedCount());
+	}
+
+	@Test
+	void anOversizedFrameStillGoesOutAlone() {
+		SessionSendQueue queue = new SessionSendQueue(session, writer, 100, 32, 10, SendOverflowPolicy.DISCONNECT,
+			WireFormat.JSON);
+
+		assertTrue(queue.send(new TextMessage("far more than ten bytes")));
+		assertEquals(1, queue.size());
+		assertEquals(0, queue.getDroppedCount());
+	}
+
+	@Test
+	void stalledSessionsDoNotDelayAHealthyOne() throws Exception {
+		SendQueueFactory factory = new SendQueueFactory(new SimpleMeterRegistry(), 2, 16, 1, 5000);
+		ReflectionTestUtils.setField(factory, "capacity", 256);
+		ReflectionTestUtils.setField(factory, "batchSize", 32);
+		ReflectionTestUtils.setField(factory, "bufferSizeLimit", 524288L);
+		ReflectionTestUtils.setField(factory, "overflowPolicy", SendOverflowPolicy.DROP_PRESENCE);
+		CountDownLatch unstall = new CountDownLatch(1);
+		try {
+			// More clients that stopped reading than the minimum number of writers
+			for (int i = 0; i < 4; i++) {
+				WebSocketSession stalled = session("stalled-" + i);
+				doAnswer(invocation -> {
+					unstall.await(10, TimeUnit.SECONDS);
+					return null;
+				}).when(stalled).sendMessage(any(WebSocketMessage.class));
+				factory.create(stalled).send(new TextMessage("to a client that stopped reading"));
+			}
+
+			CountDownLatch delivered = new CountDownLatch(1);
+			WebSocketSession healthy = session("healthy");
+			doAnswer(invocation -> {
+				delivered.countDown();
+				return null;
+			}).when(healthy).sendMessage(any(WebSocketMessage.class));
+			factory.create(healthy).send(new TextMessage("hello"));
+
+			assertTrue(delivered.await(2, TimeUnit.SECONDS));
+		} finally {
+			unstall.countDown();
+			factory.shutdown();
+		}
+	}
+
+	private static WebSocketSession session(String id) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(id);
+		when(session.isOpen()).thenReturn(true);
+		return session;
+	}
+}
@@ -0,0 +1,51 @@
+package com.example.chatservice.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+	@Test
+	void itemsComeDueOnTheirTick() {
+		TimerWheel<String> wheel = new TimerWheel<>(8);
+		wheel.schedule("a", 2);
+		wheel.schedule("b", 3);
+		wheel.schedule("c", 3);
+
+		assertTrue(wheel.advance().isEmpty());
+		assertEquals(List.of("a"), wheel.advance());
+		assertEquals(List.of("b", "c"), wheel.advance());
+		assertTrue(wheel.advance().isEmpty());
+	}
+
+	@Test
+	void pastDeadlinesFireOnTheNextTick() {
+		TimerWheel<String> wheel = new TimerWheel<>(8);
+		wheel.advance();
+		wheel.advance();
+		wheel.schedule("late", 1);
+
+		assertEquals(List.of("late"), wheel.advance());
+	}
+
+	@Test
+	void deadlinesBeyondOneTurnComeBackEarly() {
+		TimerWheel<String> wheel = new TimerWheel<>(4);
+		wheel.schedule("far", 6);
+
+		assertTrue(wheel.advance().isEmpty());
+		// Slot 2 is reached at tick 2, one turn before the deadline
+		assertEquals(List.of("far"), wheel.advance());
+		assertEquals(2, wheel.currentTick());
+	}
+
+	@Test
+	void slotCountMustBeAPowerOfTwo() {
+		assertThrows(IllegalArgumentException.class, () -> new TimerWheel<String>(6));
+	}
+}
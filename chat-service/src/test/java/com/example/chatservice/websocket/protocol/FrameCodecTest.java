@@ -0,0 +1,78 @@
+package com.example.chatservice.websocket.protocol;
+
+import com.example.chatservice.model.ChatMessage;
+import com.example.chatservice.model.OnlineUser;
+import com.example.chatservice.websocket.protocol.Frames.ChatMessageFrame;
+import com.example.chatservice.websocket.protocol.Frames.GameFrame;
+import com.example.chatservice.websocket.protocol.Frames.GameMoveData;
+import com.example.chatservice.websocket.protocol.Frames.OnlineUsersFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCodecTest {
+	private static final Logger logger = LoggerFactory.getLogger(FrameCodecTest.class);
+
+	private final FrameCodec codec = new FrameCodec(new SimpleMeterRegistry());
+
+	@Test
+	void chatMessageSizeAndEncodeTime() throws Exception {
+		ChatMessage message = new ChatMessage(1L, 2L, "Are we still on for a game tonight?");
+		message.setId(7_318_126_993_408L);
+		compare("chat_message", ChatMessageFrame.of(message), 100_000);
+	}
+
+	@Test
+	void gameMoveSizeAndEncodeTime() throws Exception {
+		GameMoveData move = new GameMoveData("3f2b8c1e-9d4a-4f6e-a2b7-5c8d1e0f9a3b", 42, 9, 11, "X", "O",
+			null, null, null);
+		compare("game_move", new GameFrame("game_move", move), 100_000);
+	}
+
+	@Test
+	void onlineUsersPageSizeAndEncodeTime() throws Exception {
+		// One full page of the presence snapshot
+		List<OnlineUser> users = new ArrayList<>();
+		for (long id = 1; id <= 500; id++) {
+			users.add(new OnlineUser(id, "User " + id, "user" + id + "@example.com",
+				"https://cdn.example.com/avatars/" + id + ".png"));
+		}
+		compare("online_users", OnlineUsersFrame.of("18f3a2c4b91", 1234, 0, 1, users), 500);
+	}
+
+	private void compare(String type, Object payload, int frames) throws Exception {
+		byte[] json = codec.encodeJson(type, payload);
+		byte[] cbor = codec.encodeCbor(type, payload);
+
+		// Same frame either way, just a different encoding
+		assertEquals(new ObjectMapper().readTree(json), new ObjectMapper(new CBORFactory()).readTree(cbor));
+		assertTrue(cbor.length < json.length, type + ": CBOR " + cbor.length + " bytes, JSON " + json.length);
+
+		// Warm up both paths before timing either
+		encode(WireFormat.JSON, type, payload, frames);
+		encode(WireFormat.CBOR, type, payload, frames);
+		long jsonNanos = encode(WireFormat.JSON, type, payload, frames) / frames;
+		long cborNanos = encode(WireFormat.CBOR, type, payload, frames) / frames;
+
+		logger.info("{}: JSON {} bytes, {}ns per frame; CBOR {} bytes ({}% of JSON), {}ns per frame", type,
+			json.length, jsonNanos, cbor.length, cbor.length * 100 / json.length, cborNanos);
+	}
+
+	private long encode(WireFormat format, String type, Object payload, int frames) {
+		long start = System.nanoTime();
+		for (int i = 0; i < frames; i++) {
+			// A fresh frame each time, since a frame caches its encoding
+			codec.frame(type, payload).messageFor(format);
+		}
+		return System.nanoTime() - start;
+	}
+}
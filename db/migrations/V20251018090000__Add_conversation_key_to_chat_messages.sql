@@ -0,0 +1,6 @@
+-- Canonical conversation key: the same (low, high) pair whichever way a message was sent.
+-- Lets a conversation be read with one index range scan instead of an OR of two predicates.
+ALTER TABLE chat_messages
+    ADD COLUMN conversation_low BIGINT AS (LEAST(sender_id, receiver_id)) STORED,
+    ADD COLUMN conversation_high BIGINT AS (GREATEST(sender_id, receiver_id)) STORED,
+    ADD INDEX idx_conversation_id (conversation_low, conversation_high, id);
@@ -0,0 +1,36 @@
+-- Finished Caro games, kept for replay. Moves are packed two bytes per move
+-- (one per coordinate) on bounded boards, zigzag varints on unbounded ones.
+-- No foreign keys on the players: the computer opponent plays as user -1.
+CREATE TABLE game_records (
+    game_id VARCHAR(64) PRIMARY KEY,
+    player1_id BIGINT NOT NULL,
+    player1_name VARCHAR(255),
+    player2_id BIGINT NOT NULL,
+    player2_name VARCHAR(255),
+    board_size SMALLINT NOT NULL,
+    win_length TINYINT NOT NULL,
+    exact_length BOOLEAN NOT NULL DEFAULT FALSE,
+    blocked_ends BOOLEAN NOT NULL DEFAULT FALSE,
+    winner CHAR(1),
+    end_reason VARCHAR(20) NOT NULL,
+    move_count INT NOT NULL,
+    moves MEDIUMBLOB NOT NULL,
+    started_at DATETIME(3) NOT NULL,
+    finished_at DATETIME(3) NOT NULL,
+    duration_ms BIGINT NOT NULL,
+
+    INDEX idx_game_records_player1 (player1_id, finished_at),
+    INDEX idx_game_records_player2 (player2_id, finished_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Running head-to-head score per unordered player pair, player_low_id < player_high_id
+CREATE TABLE game_head_to_head (
+    player_low_id BIGINT NOT NULL,
+    player_high_id BIGINT NOT NULL,
+    low_wins INT NOT NULL DEFAULT 0,
+    high_wins INT NOT NULL DEFAULT 0,
+    draws INT NOT NULL DEFAULT 0,
+    updated_at DATETIME(3) NOT NULL,
+
+    PRIMARY KEY (player_low_id, player_high_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
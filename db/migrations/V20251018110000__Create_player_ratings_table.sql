@@ -0,0 +1,7 @@
+-- Elo rating per player, used by matchmaking and updated after every rated game
+CREATE TABLE player_ratings (
+    user_id BIGINT PRIMARY KEY,
+    rating INT NOT NULL,
+    games_played INT NOT NULL DEFAULT 0,
+    updated_at DATETIME(3) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -68,6 +68,22 @@ export class ChatWindowComponent implements OnInit, OnDestroy, OnChanges {
         this.scrollToBottom();
       })
     );
+
+    this.subscriptions.push(
+      this.websocketService.typingUsers$.subscribe(typingUsers => {
+        this.isTyping = typingUsers.has(this.chatUser.id);
+      })
+    );
+  }
+
+  onMessageInput(): void {
+    if (!this.chatUser) return;
+
+    if (this.newMessage.trim()) {
+      this.websocketService.sendTyping(this.chatUser.id);
+    } else {
+      this.websocketService.sendTypingStopped(this.chatUser.id);
+    }
   }
 
   sendMessage(): void {
@@ -2,8 +2,16 @@ import { Injectable } from '@angular/core';
 import { BehaviorSubject, Observable } from 'rxjs';
 import { WebSocketService } from './websocket.service';
 
+export interface GameRules {
+  boardSize: number;
+  winLength: number;
+  exactLength: boolean;
+  blockedEnds: boolean;
+}
+
 export interface GameState {
   gameId: string;
+  rules: GameRules;
   board: (string | null)[][];
   currentPlayer: string;
   players: {
@@ -14,17 +22,27 @@ export interface GameState {
   winner: string | null;
   winningLine: number[][] | null;
   lastMove: { row: number; col: number } | null;
+  moveNumber: number;
   scoreboard: {
     player1Wins: number;
     player2Wins: number;
     draws: number;
   };
+  // Set when watching someone else's game
+  spectating?: boolean;
+}
+
+export interface MatchmakingStatus {
+  status: 'queued' | 'left';
+  rating: number;
+  waiting: number;
 }
 
 export interface GameInvitation {
   gameId: string;
   fromUser: { id: number; name: string };
   toUser: { id: number; name: string };
+  rules: GameRules;
   timestamp: Date;
 }
 
@@ -35,10 +53,12 @@ export class GameService {
   private currentGameSubject = new BehaviorSubject<GameState | null>(null);
   private gameInvitationsSubject = new BehaviorSubject<GameInvitation[]>([]);
   private playAgainRequestsSubject = new BehaviorSubject<{requesterUserId: number, gameId: string} | null>(null);
+  private matchmakingSubject = new BehaviorSubject<MatchmakingStatus | null>(null);
 
   public currentGame$ = this.currentGameSubject.asObservable();
   public gameInvitations$ = this.gameInvitationsSubject.asObservable();
   public playAgainRequests$ = this.playAgainRequestsSubject.asObservable();
+  public matchmaking$ = this.matchmakingSubject.asObservable();
 
   constructor(private websocketService: WebSocketService) {
     this.setupGameListeners();
@@ -55,19 +75,51 @@ export class GameService {
         this.handleGameStart(message.data);
       } else if (message.type === 'game_move') {
         this.handleGameMove(message.data);
+      } else if (message.type === 'game_watch') {
+        this.handleGameWatch(message.data);
+      } else if (message.type === 'game_snapshot') {
+        this.handleGameSnapshot(message.data);
       } else if (message.type === 'game_end') {
         this.handleGameEnd(message.data);
+      } else if (message.type === 'game_expired') {
+        this.handleGameExpired(message.data);
       } else if (message.type === 'play_again_request') {
         this.handlePlayAgainRequest(message.data);
+      } else if (message.type === 'matchmaking_status') {
+        this.matchmakingSubject.next(message.data);
       }
     });
   }
 
   // Send game invitation
-  sendGameInvitation(toUserId: number) {
+  // Rules left out fall back to the server's standard 20x20, five-in-a-row game
+  sendGameInvitation(toUserId: number, rules?: Partial<GameRules>) {
     this.websocketService.sendMessage({
       type: 'send_game_invitation',
-      data: { toUserId }
+      data: { toUserId, rules }
+    });
+  }
+
+  // Start a single-player game against the computer (bounded boards only)
+  startAiGame(rules?: Partial<GameRules>) {
+    this.websocketService.sendMessage({
+      type: 'start_ai_game',
+      data: { rules }
+    });
+  }
+
+  // Wait for an opponent of similar rating
+  joinMatchmaking() {
+    this.websocketService.sendMessage({
+      type: 'join_matchmaking',
+      data: {}
+    });
+  }
+
+  leaveMatchmaking() {
+    this.websocketService.sendMessage({
+      type: 'leave_matchmaking',
+      data: {}
     });
   }
 
@@ -120,6 +172,7 @@ export class GameService {
       gameId: data.gameId,
       fromUser: data.fromUser,
       toUser: data.toUser,
+      rules: data.rules,
       timestamp: new Date(data.timestamp)
     };
 
@@ -128,15 +181,20 @@ export class GameService {
   }
 
   private handleGameStart(data: any) {
+    // A match found by the queue starts like any other game
+    this.matchmakingSubject.next(null);
+
     const gameState: GameState = {
       gameId: data.gameId,
-      board: this.createEmptyBoard(),
+      rules: data.rules,
+      board: this.createEmptyBoard(data.rules?.boardSize || 20),
       currentPlayer: data.currentPlayer,
       players: data.players,
       status: 'playing',
       winner: null,
       winningLine: null,
       lastMove: null,
+      moveNumber: 0,
       scoreboard: data.scoreboard || {
         player1Wins: 0,
         player2Wins: 0,
@@ -155,12 +213,63 @@ export class GameService {
   private handleGameMove(data: any) {
     console.log('Handling game move:', data);
     const currentGame = this.currentGameSubject.value;
-    if (!currentGame) {
+    if (!currentGame || currentGame.gameId !== data.gameId) {
       console.log('No current game found');
       return;
     }
 
+    if (data.moveNumber <= currentGame.moveNumber) {
+      return; // Already applied
+    }
+    if (data.moveNumber !== currentGame.moveNumber + 1) {
+      // Missed a move, ask the server for the full board
+      this.requestGameSync(currentGame.gameId);
+      return;
+    }
+
+    const board = currentGame.board.map(row => [...row]);
+    board[data.row][data.col] = data.symbol;
+
+    // status, winner and winningLine are only sent on the move that ends the game
     const updatedGame: GameState = {
+      ...currentGame,
+      board,
+      currentPlayer: data.currentPlayer,
+      status: data.status || currentGame.status,
+      winner: data.winner !== undefined ? data.winner : currentGame.winner,
+      winningLine: data.winningLine || currentGame.winningLine,
+      lastMove: { row: data.row, col: data.col },
+      moveNumber: data.moveNumber
+    };
+
+    console.log('Updated game state:', updatedGame);
+    this.currentGameSubject.next(updatedGame);
+  }
+
+  // First frame after watch_game: the game as it stands, followed by its moves as they happen
+  private handleGameWatch(data: any) {
+    const snapshot = data.snapshot;
+    this.currentGameSubject.next({
+      gameId: data.gameId,
+      rules: data.rules,
+      board: snapshot.board,
+      currentPlayer: snapshot.currentPlayer,
+      players: data.players,
+      status: snapshot.status,
+      winner: snapshot.winner,
+      winningLine: snapshot.winningLine,
+      lastMove: snapshot.lastMove || null,
+      moveNumber: snapshot.moveNumber,
+      scoreboard: data.scoreboard,
+      spectating: true
+    });
+  }
+
+  private handleGameSnapshot(data: any) {
+    const currentGame = this.currentGameSubject.value;
+    if (!currentGame || currentGame.gameId !== data.gameId) return;
+
+    this.currentGameSubject.next({
       ...currentGame,
       board: data.board,
       currentPlayer: data.currentPlayer,
@@ -168,11 +277,15 @@ export class GameService {
       winner: data.winner,
       winningLine: data.winningLine,
       lastMove: data.lastMove || null,
-      scoreboard: data.scoreboard || currentGame.scoreboard
-    };
+      moveNumber: data.moveNumber
+    });
+  }
 
-    console.log('Updated game state:', updatedGame);
-    this.currentGameSubject.next(updatedGame);
+  private requestGameSync(gameId: string) {
+    this.websocketService.sendMessage({
+      type: 'game_sync',
+      data: { gameId }
+    });
   }
 
   private handleGameEnd(data: any) {
@@ -190,6 +303,16 @@ export class GameService {
     this.currentGameSubject.next(updatedGame);
   }
 
+  // The server evicted the game: an unanswered invitation, an abandoned game or an old finished one
+  private handleGameExpired(data: any) {
+    this.removeInvitation(data.gameId);
+
+    const currentGame = this.currentGameSubject.value;
+    if (currentGame && currentGame.gameId === data.gameId && data.reason === 'idle_timeout') {
+      this.currentGameSubject.next({ ...currentGame, status: 'finished' });
+    }
+  }
+
   private handlePlayAgainRequest(data: any) {
     this.playAgainRequestsSubject.next({
       requesterUserId: data.requesterUserId,
@@ -197,8 +320,27 @@ export class GameService {
     });
   }
 
-  private createEmptyBoard(): (string | null)[][] {
-    return Array(20).fill(null).map(() => Array(20).fill(null));
+  private createEmptyBoard(size: number): (string | null)[][] {
+    return Array(size).fill(null).map(() => Array(size).fill(null));
+  }
+
+  // Watch a game in progress between other players
+  watchGame(gameId: string) {
+    this.websocketService.sendMessage({
+      type: 'watch_game',
+      data: { gameId }
+    });
+  }
+
+  stopWatching() {
+    const currentGame = this.currentGameSubject.value;
+    if (currentGame?.spectating) {
+      this.websocketService.sendMessage({
+        type: 'unwatch_game',
+        data: { gameId: currentGame.gameId }
+      });
+      this.currentGameSubject.next(null);
+    }
   }
 
   // Remove invitation from list
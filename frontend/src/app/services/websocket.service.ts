@@ -2,6 +2,7 @@ import { Injectable } from '@angular/core';
 import { BehaviorSubject, Observable } from 'rxjs';
 import { HttpClient } from '@angular/common/http';
 import { environment } from '../../environments/environment';
+import { AuthService } from '../auth/auth.service';
 
 export interface OnlineUser {
   id: number;
@@ -31,17 +32,31 @@ export class WebSocketService {
   private reconnectInterval = 5000;
   private currentUserId: number | null = null;
 
+  // Presence stream position; null until a full snapshot has been applied
+  private presenceEpoch: string | null = null;
+  private presenceSeq: number | null = null;
+  private presenceSnapshotBuffer: OnlineUser[] = [];
+
   private onlineUsersSubject = new BehaviorSubject<OnlineUser[]>([]);
   private messagesSubject = new BehaviorSubject<ChatMessage[]>([]);
   private connectionStatusSubject = new BehaviorSubject<boolean>(false);
   private gameMessagesSubject = new BehaviorSubject<any>(null);
+  // Unread message count per sender, kept in step with the server
+  private unreadCountsSubject = new BehaviorSubject<Map<number, number>>(new Map());
+  // Users currently typing to us
+  private typingUsersSubject = new BehaviorSubject<Set<number>>(new Set());
+  // When we last told each receiver we were typing; the server keeps the indicator up for a few seconds
+  private typingSentAt = new Map<number, number>();
+  private static readonly TYPING_RESEND_MS = 2000;
 
   public onlineUsers$ = this.onlineUsersSubject.asObservable();
   public messages$ = this.messagesSubject.asObservable();
   public connectionStatus$ = this.connectionStatusSubject.asObservable();
   public gameMessages$ = this.gameMessagesSubject.asObservable();
+  public unreadCounts$ = this.unreadCountsSubject.asObservable();
+  public typingUsers$ = this.typingUsersSubject.asObservable();
 
-  constructor(private http: HttpClient) {}
+  constructor(private http: HttpClient, private authService: AuthService) {}
 
   connect(userId: number): void {
     this.currentUserId = userId;
@@ -59,19 +74,17 @@ export class WebSocketService {
         return `${protocol}//${host}`;
       };
       
-      const wsUrl = `${getWsUrl()}/ws?userId=${userId}`;
+      // The server identifies the user from the access token, checked once during the handshake
+      const token = this.authService.getToken();
+      const wsUrl = `${getWsUrl()}/ws?token=${encodeURIComponent(token || '')}`;
       this.socket = new WebSocket(wsUrl);
 
       this.socket.onopen = () => {
         console.log('WebSocket connected successfully!');
-        console.log('WebSocket URL:', wsUrl);
         console.log('WebSocket readyState:', this.socket?.readyState);
         this.connectionStatusSubject.next(true);
         this.reconnectAttempts = 0;
-        this.sendMessage({
-          type: 'join',
-          userId: userId
-        });
+        this.sendJoin();
       };
 
       this.socket.onmessage = (event) => {
@@ -85,7 +98,6 @@ export class WebSocketService {
 
       this.socket.onclose = (event) => {
         console.log('WebSocket disconnected!', event.code, event.reason);
-        console.log('WebSocket URL was:', wsUrl);
         console.log('Connection was forced to simulation mode');
         this.connectionStatusSubject.next(false);
         
@@ -126,18 +138,35 @@ export class WebSocketService {
     console.log('WebSocket message received:', data);
     switch (data.type) {
       case 'online_users':
-        console.log('Online users updated:', data.users);
-        this.onlineUsersSubject.next(data.users);
-        break;
-      case 'user_joined':
-        const currentUsers = this.onlineUsersSubject.value;
-        if (!currentUsers.find(u => u.id === data.user.id)) {
-          this.onlineUsersSubject.next([...currentUsers, data.user]);
+        // Snapshots may be split into pages; apply once the last page arrives
+        if (data.page === 0) {
+          this.presenceSnapshotBuffer = [];
+        }
+        this.presenceSnapshotBuffer.push(...data.users);
+        if (data.page === data.totalPages - 1) {
+          console.log('Online users updated:', this.presenceSnapshotBuffer);
+          this.onlineUsersSubject.next(this.withUnreadFlags(this.presenceSnapshotBuffer));
+          this.presenceSnapshotBuffer = [];
+          this.presenceEpoch = data.epoch;
+          this.presenceSeq = data.seq;
         }
         break;
-      case 'user_left':
-        const updatedUsers = this.onlineUsersSubject.value.filter(u => u.id !== data.userId);
-        this.onlineUsersSubject.next(updatedUsers);
+      case 'presence_update':
+        if (this.presenceSeq === null || data.toSeq <= this.presenceSeq) {
+          break;
+        }
+        if (data.epoch !== this.presenceEpoch || data.fromSeq > this.presenceSeq + 1) {
+          // Missed some updates, ask for a fresh snapshot
+          this.presenceSeq = null;
+          this.sendJoin();
+          break;
+        }
+        this.presenceSeq = data.toSeq;
+        // Joins and leaves are coalesced server-side into one frame
+        const leftIds = new Set<number>(data.left);
+        const remainingUsers = this.onlineUsersSubject.value.filter(u => !leftIds.has(u.id));
+        const joinedUsers = (data.joined as OnlineUser[]).filter(j => !remainingUsers.find(u => u.id === j.id));
+        this.onlineUsersSubject.next([...remainingUsers, ...this.withUnreadFlags(joinedUsers)]);
         break;
       case 'chat_message':
         console.log('Chat message received:', data.message);
@@ -149,18 +178,84 @@ export class WebSocketService {
         // Mark sender as having unread messages
         this.markUserAsHavingUnreadMessages(data.message.senderId);
         break;
+      case 'typing':
+        const typingUsers = new Set(this.typingUsersSubject.value);
+        if (data.typing) {
+          typingUsers.add(data.senderId);
+        } else {
+          typingUsers.delete(data.senderId);
+        }
+        this.typingUsersSubject.next(typingUsers);
+        break;
+      case 'read_receipt':
+        // The reader has seen our messages up to readUpTo
+        this.messagesSubject.next(this.messagesSubject.value.map(message =>
+          message.senderId === this.currentUserId && message.receiverId === data.readerId
+            && message.id !== undefined && message.id <= data.readUpTo && !message.read
+            ? { ...message, read: true } : message));
+        break;
+      case 'unread_state':
+        // Sent on connect: counts per sender, and what arrived while we were offline
+        const counts = new Map<number, number>();
+        Object.entries(data.conversations || {}).forEach(([senderId, count]) => counts.set(Number(senderId), count as number));
+        this.unreadCountsSubject.next(counts);
+        if (data.messages?.length) {
+          const knownIds = new Set(this.messagesSubject.value.map(m => m.id));
+          const missed = (data.messages as ChatMessage[]).filter(m => !knownIds.has(m.id));
+          this.messagesSubject.next([...this.messagesSubject.value, ...missed]);
+        }
+        this.onlineUsersSubject.next(this.withUnreadFlags(this.onlineUsersSubject.value));
+        break;
       case 'game_invitation':
       case 'game_start':
       case 'game_move':
+      case 'game_snapshot':
+      case 'game_watch':
       case 'game_end':
+      case 'game_expired':
       case 'play_again_request':
+      case 'matchmaking_status':
         // Forward game messages to any subscribed game services
         this.handleGameMessage(data);
         break;
     }
   }
 
+  private sendJoin(): void {
+    // Resume the presence stream from where we left off when possible
+    this.sendMessage({
+      type: 'join',
+      userId: this.currentUserId,
+      epoch: this.presenceEpoch,
+      lastSeq: this.presenceSeq
+    });
+  }
+
+  sendTyping(receiverId: number): void {
+    const now = Date.now();
+    if (now - (this.typingSentAt.get(receiverId) || 0) < WebSocketService.TYPING_RESEND_MS) {
+      return;
+    }
+    this.typingSentAt.set(receiverId, now);
+    this.sendMessage({
+      type: 'typing',
+      receiverId: receiverId
+    });
+  }
+
+  sendTypingStopped(receiverId: number): void {
+    if (this.typingSentAt.delete(receiverId)) {
+      this.sendMessage({
+        type: 'typing_stopped',
+        receiverId: receiverId
+      });
+    }
+  }
+
   sendChatMessage(receiverId: number, message: string): void {
+    // The server clears the typing indicator when the message arrives
+    this.typingSentAt.delete(receiverId);
+
     console.log('Sending chat message to', receiverId, ':', message);
     console.log('WebSocket state:', this.socket?.readyState);
     
@@ -222,6 +317,8 @@ export class WebSocketService {
     }
     this.connectionStatusSubject.next(false);
     this.onlineUsersSubject.next([]);
+    this.presenceEpoch = null;
+    this.presenceSeq = null;
   }
 
   getMessagesForUser(userId: number): Observable<ChatMessage[]> {
@@ -266,6 +363,16 @@ export class WebSocketService {
 
   markMessagesAsRead(userId: number): void {
     const currentMessages = this.messagesSubject.value;
+    // Read up to the newest message we have from them; the server ignores marks that add nothing
+    const newestId = currentMessages
+      .filter(message => message.senderId === userId && message.id !== undefined)
+      .reduce((newest, message) => Math.max(newest, message.id!), 0);
+    this.sendMessage({
+      type: 'mark_read',
+      senderId: userId,
+      ...(newestId > 0 ? { messageId: newestId } : {})
+    });
+    
     const updatedMessages = currentMessages.map(message => {
       if (message.senderId === userId && !message.read) {
         return { ...message, read: true };
@@ -281,6 +388,10 @@ export class WebSocketService {
       return;
     }
     
+    const counts = new Map(this.unreadCountsSubject.value);
+    counts.set(userId, (counts.get(userId) || 0) + 1);
+    this.unreadCountsSubject.next(counts);
+    
     const currentUsers = this.onlineUsersSubject.value;
     const updatedUsers = currentUsers.map(user => {
       if (user.id === userId) {
@@ -292,6 +403,12 @@ export class WebSocketService {
   }
 
   clearUnreadMessages(userId: number): void {
+    if (this.unreadCountsSubject.value.has(userId)) {
+      const counts = new Map(this.unreadCountsSubject.value);
+      counts.delete(userId);
+      this.unreadCountsSubject.next(counts);
+    }
+    
     const currentUsers = this.onlineUsersSubject.value;
     const updatedUsers = currentUsers.map(user => {
       if (user.id === userId) {
@@ -302,6 +419,11 @@ export class WebSocketService {
     this.onlineUsersSubject.next(updatedUsers);
   }
 
+  private withUnreadFlags(users: OnlineUser[]): OnlineUser[] {
+    const counts = this.unreadCountsSubject.value;
+    return users.map(user => counts.get(user.id) ? { ...user, hasUnreadMessages: true } : user);
+  }
+
   private handleGameMessage(data: any): void {
     console.log('Game message received:', data);
     this.gameMessagesSubject.next(data);